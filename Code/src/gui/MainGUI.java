@@ -24,6 +24,7 @@ import javafx.concurrent.Task;
 import javafx.geometry.Orientation;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
@@ -49,12 +50,18 @@ import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Stage;
+import logger.CoverageTimeSeries;
 import logger.LogFileGenerator;
 import serverDriver.SelendroidServerDriver;
 import testers.AutomatedTester;
+import testers.BanditTester;
 import testers.BreadthFirstTester;
+import testers.CheckpointJournal;
 import testers.DepthFirstTester;
+import testers.EvolutionaryTester;
+import testers.HybridTester;
 import testers.LogReplayTester;
+import testers.PriorityTester;
 import testers.RandomTester;
 
 /**
@@ -69,6 +76,7 @@ public class MainGUI extends Application {
 	private SelendroidServerDriver newDriver;
 	private AutomatedTester automatedTester;
 	private LogFileGenerator logFileGenerator;
+	private CoverageTimeSeries coverageTimeSeries;
 
 	private TextArea console;
 	private TextArea logger;
@@ -85,6 +93,7 @@ public class MainGUI extends Application {
 	private ArrayList<String> testInput = new ArrayList<>();
 	
 	private int speed = 0;
+	private int coverageRefreshMillis = 250;
 
 	private String statusSelRunning = "Selendroid: Running";
     private String statusSelStarting = "Selenroid: Starting...";
@@ -159,15 +168,17 @@ public class MainGUI extends Application {
 		MenuItem openApk = new MenuItem("Open APK File...");
 		MenuItem openInput = new MenuItem("Open Input File...");
 		MenuItem saveExtractSummary = new MenuItem("Save Extraction/Summary...");
+		MenuItem resumeCheckpoint = new MenuItem("Resume From Checkpoint...");
 		MenuItem exit = new MenuItem("Exit");
-		fileMenu.getItems().addAll(openApk, openInput, saveExtractSummary, new SeparatorMenuItem(), exit);
+		fileMenu.getItems().addAll(openApk, openInput, saveExtractSummary, resumeCheckpoint, new SeparatorMenuItem(), exit);
 		
 		// Create edit menu items
 		Menu editMenu = new Menu("Edit");
 		MenuItem logDir = new MenuItem("Log File Directory...");
 		MenuItem navBack = new MenuItem("Navigate Back");
 		MenuItem resumeApp = new MenuItem("Resume App");
-		editMenu.getItems().addAll(logDir, navBack, resumeApp);
+		CheckMenuItem interceptLinks = new CheckMenuItem("Intercept External Links");
+		editMenu.getItems().addAll(logDir, navBack, resumeApp, new SeparatorMenuItem(), interceptLinks);
 		
 		// Create view menu items
 		Menu viewMenu = new Menu("View");
@@ -186,12 +197,20 @@ public class MainGUI extends Application {
 		depthRadio.setSelected(true);
 		RadioMenuItem breadthRadio = new RadioMenuItem("Breadth-First Coverage Tester");
 		breadthRadio.setToggleGroup(testToggle);
+		RadioMenuItem priorityRadio = new RadioMenuItem("Priority Coverage Tester");
+		priorityRadio.setToggleGroup(testToggle);
 		RadioMenuItem randomRadio = new RadioMenuItem("Randomized Coverage Tester");
 		randomRadio.setToggleGroup(testToggle);
+		RadioMenuItem banditRadio = new RadioMenuItem("Bandit Coverage Tester");
+		banditRadio.setToggleGroup(testToggle);
+		RadioMenuItem evolutionaryRadio = new RadioMenuItem("Evolutionary Sequence Tester");
+		evolutionaryRadio.setToggleGroup(testToggle);
+		RadioMenuItem hybridRadio = new RadioMenuItem("Hybrid Coverage Tester");
+		hybridRadio.setToggleGroup(testToggle);
 		RadioMenuItem replayRadio = new RadioMenuItem("Replay Previous Log File");
 		replayRadio.setToggleGroup(testToggle);
 		MenuItem randomSingle = new MenuItem("Random Single Input");
-		testMenu.getItems().addAll(depthRadio, breadthRadio, randomRadio, replayRadio, new SeparatorMenuItem(), randomSingle);
+		testMenu.getItems().addAll(depthRadio, breadthRadio, priorityRadio, randomRadio, banditRadio, evolutionaryRadio, hybridRadio, replayRadio, new SeparatorMenuItem(), randomSingle);
 		
 		// Create extract menu items
 		Menu extractMenu = new Menu("Extract");
@@ -222,6 +241,21 @@ public class MainGUI extends Application {
 		saveExtractSummary.setOnAction(e -> {
 			chooseSaveFile(extraction.getText());
 		});
+		
+		resumeCheckpoint.setOnAction(e -> {
+            if (automatedTester.isTesting()) {
+                toConsole("Stop the tester and let it finish before resuming from a checkpoint.");
+                return;
+            }
+            String checkpointPath = chooseCheckpointFile();
+            if (checkpointPath.equals("")) {return;}
+            try {
+                int restored = automatedTester.enableCheckpoints(new File(checkpointPath), true);
+                toConsole(String.format("Restored %d checkpoints from: %s", restored, checkpointPath));
+            } catch (IOException ex) {
+                toConsole("Could not resume from checkpoint: " + ex.getMessage());
+            }
+        });
 				
 		exit.setOnAction(e -> { // TODO: only close when these entities are running
             logFileGenerator.close();
@@ -237,6 +271,11 @@ public class MainGUI extends Application {
             toConsole("Logging to: " + logDirectory);
         });
 				
+		interceptLinks.setOnAction(e -> {
+            automatedTester.setInterceptExternalLinks(interceptLinks.isSelected());
+            toConsole(interceptLinks.isSelected() ? "Intercepting external links." : "Following external links.");
+        });
+		
 		navBack.setOnAction(e -> {
             newDriver.webviewBack();
             toConsole("Sent navigate back.");
@@ -273,12 +312,36 @@ public class MainGUI extends Application {
             toConsole("Using breadth-first coverage testing.");
         });
 		
+		priorityRadio.setOnAction(e -> {
+            automatedTester.setTester(new PriorityTester(logFileGenerator, testInput, newDriver));
+            currentTesterString = "Priority Coverage Tester";
+            toConsole("Using priority coverage testing.");
+        });
+		
 		randomRadio.setOnAction(e -> {
             automatedTester.setTester(new RandomTester(logFileGenerator, testInput, newDriver));
             currentTesterString = "Random Coverage Tester";
             toConsole("Using randomized coverage testing.");
         });
 		
+		banditRadio.setOnAction(e -> {
+            automatedTester.setTester(new BanditTester(logFileGenerator, testInput, newDriver));
+            currentTesterString = "Bandit Coverage Tester";
+            toConsole("Using bandit coverage testing.");
+        });
+		
+		evolutionaryRadio.setOnAction(e -> {
+            automatedTester.setTester(new EvolutionaryTester(logFileGenerator, testInput, newDriver));
+            currentTesterString = "Evolutionary Sequence Tester";
+            toConsole("Using evolutionary sequence testing.");
+        });
+		
+		hybridRadio.setOnAction(e -> {
+            automatedTester.setTester(new HybridTester(logFileGenerator, testInput, newDriver));
+            currentTesterString = "Hybrid Coverage Tester";
+            toConsole("Using hybrid coverage testing.");
+        });
+		
 		replayRadio.setOnAction(e -> {
             File logToReplay = new File(chooseLogFile());
             automatedTester.setTester(new LogReplayTester(newDriver, logToReplay, logger));
@@ -379,8 +442,13 @@ public class MainGUI extends Application {
 
 		// Listener based on status of testing for the purpose of enabling/disabling elements
 		testStatus.textProperty().addListener((os, old_string, new_string) -> {
-            if (new_string.equals(statusTestRunning)) {testMenu.setDisable(true);}
-            else if (new_string.equals(statusTestStopped)) {testMenu.setDisable(false);}
+            if (new_string.equals(statusTestRunning)) {
+                testMenu.setDisable(true);
+                resumeCheckpoint.setDisable(true);
+            } else if (new_string.equals(statusTestStopped)) {
+                testMenu.setDisable(false);
+                resumeCheckpoint.setDisable(false);
+            }
         });
 				
 		// Create and return menuBar
@@ -431,6 +499,8 @@ public class MainGUI extends Application {
 			// Event handlers for mainToolBar
 			runButton.setOnAction(event -> {
                 automatedTester.startTesting();
+                coverageTimeSeries = new CoverageTimeSeries(newDriver.getStatistics());
+                coverageTimeSeries.start();
                 testStatus.setText(statusTestRunning);
                 toConsole("Tester started.");
                 pi.progressProperty().bind(coverageTask.progressProperty());
@@ -443,9 +513,20 @@ public class MainGUI extends Application {
                 logFileGenerator.logSummaryStatistics(currentTesterString, 
                 		newDriver.getPagesVisited(), newDriver.getLinksClicked(), 
                 		newDriver.getLinksFound(), newDriver.getCoverage());
+                logFileGenerator.logPatternStatistics(newDriver.getPatternsClicked(), 
+                		newDriver.getPatternsFound(), newDriver.getPatternCoverage());
+                logFileGenerator.logRunStatistics(newDriver.getStatistics().snapshot());
                 testStatus.setText(statusTestStopped);
                 toConsole("Tester stopped.");
                 toConsole("Summary statistics written to log file.");
+                if (coverageTimeSeries != null) {
+                    coverageTimeSeries.stop();
+                    File seriesFile = new File(logFileGenerator.getFilePath().getPath() + CoverageTimeSeries.defaultExtension);
+                    try {
+                        coverageTimeSeries.writeCsv(seriesFile);
+                        toConsole("Coverage over time written to " + seriesFile.getName() + ".");
+                    } catch (IOException e) {toConsole("Could not write coverage over time: " + e.getMessage());}
+                }
             });
 			
 			pauseResumeButton.setOnAction(event -> {
@@ -699,6 +780,25 @@ public class MainGUI extends Application {
 		else {return "";}
 	}
 	
+	/**
+	 * Opens a file chooser window and returns the path of the selected checkpoint file.
+	 * 
+	 * @return checkpointFile.getPath() or "" if none selected/found
+	 */
+	private String chooseCheckpointFile() {
+		// Create file chooser for checkpoint files
+		FileChooser checkpointChooser = new FileChooser();
+		checkpointChooser.getExtensionFilters().add(new ExtensionFilter("Exploration Checkpoints (*" + CheckpointJournal.defaultExtension + ")", "*" + CheckpointJournal.defaultExtension));
+		checkpointChooser.setInitialDirectory(new File(System.getProperty("user.dir")));
+		
+		// Import file
+		File checkpointFile = checkpointChooser.showOpenDialog(mainStage);
+		
+		// Return file path if not null
+		if (checkpointFile != null) {return checkpointFile.getPath();}
+		else {return "";}
+	}
+	
 	/**
 	 * Opens a directory chooser window and returns the path of the selected directory.
 	 * 
@@ -825,9 +925,13 @@ public class MainGUI extends Application {
 	private void startSelendroidDriver() {
 		new Thread(() -> {
             newDriver = new SelendroidServerDriver(apkPath, capabilities);
+            newDriver.getStatistics().registerMBean(logFileGenerator.getFileName());
             setGui();
             readInputFile();
             automatedTester = new AutomatedTester(newDriver, new DepthFirstTester(logFileGenerator, testInput, newDriver));
+            try {
+                automatedTester.enableCheckpoints(new File(logFileGenerator.getFilePath().getPath() + CheckpointJournal.defaultExtension), false);
+            } catch (IOException e) {e.printStackTrace();}
 
             Platform.runLater(() -> {
                 selendroidStatus.setText(statusSelRunning); //TODO : set this only on successful load
@@ -839,12 +943,15 @@ public class MainGUI extends Application {
 
 	/**
 	 * Creates a task so that the coverage being recorded in the testing threads may be 
-	 * displayed inside the MainGUI as it is updated. 
+	 * displayed inside the MainGUI as it is updated. The task reads the latest snapshot of
+	 * the driver's link coverage so that it never holds up the testing thread.
 	 */
 	private Task coverageTask = new Task<Void>() {
 	    @Override public Void call() {
 	    	while(newDriver != null && !isCancelled()) {
 		    	updateProgress(newDriver.getCoverage(), 1);
+		    	try {Thread.sleep(coverageRefreshMillis);}
+		    	catch (InterruptedException e) {break;}
 	    	}
 	        return null;
 	    }
@@ -0,0 +1,174 @@
+package logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CoverageTimeSeries samples the statistics of a test run at a fixed interval,
+ * so that runs can be compared by their coverage at minute N rather than only
+ * by their final totals.
+ *
+ * Samples are kept in primitive ring buffers, so a sample allocates nothing
+ * besides the statistics snapshot. Once the buffers are full the oldest samples
+ * are overwritten. The series is written out as a CSV file when the run ends.
+ */
+public final class CoverageTimeSeries {
+    public static long defaultIntervalMillis = 1000;
+    public static int defaultCapacity = 36000;
+    public static String defaultExtension = ".coverage.csv";
+
+    private final RunStatistics statistics;
+    private final long intervalMillis;
+    private final int capacity;
+
+    private final long[] elapsedMillis;
+    private final float[] coverage;
+    private final int[] targetsFound;
+    private final int[] targetsExercised;
+    private final int[] pages;
+    private final float[] stepsPerSecond;
+    private final float[] actionMillis;
+    // the fields below are guarded by this
+    private int next = 0;
+    private int size = 0;
+
+    private long lastSteps = 0;
+    private long lastActions = 0;
+    private long lastActionNanos = 0;
+    private long lastElapsedNanos = 0;
+    private long originNanos = 0;
+
+    private ScheduledExecutorService sampler = null;
+
+    /**
+     * Creates a time series of the given statistics with the default interval and capacity.
+     *
+     * @param statistics - the statistics of the run to sample
+     */
+    public CoverageTimeSeries(RunStatistics statistics) {
+        this(statistics, defaultIntervalMillis, defaultCapacity);
+    }
+
+    /**
+     * Creates a time series of the given statistics.
+     *
+     * @param statistics - the statistics of the run to sample
+     * @param intervalMillis - the time between samples in milliseconds
+     * @param capacity - the number of samples kept before the oldest are overwritten
+     */
+    public CoverageTimeSeries(RunStatistics statistics, long intervalMillis, int capacity) {
+        this.statistics = statistics;
+        this.intervalMillis = intervalMillis;
+        this.capacity = capacity;
+        this.elapsedMillis = new long[capacity];
+        this.coverage = new float[capacity];
+        this.targetsFound = new int[capacity];
+        this.targetsExercised = new int[capacity];
+        this.pages = new int[capacity];
+        this.stepsPerSecond = new float[capacity];
+        this.actionMillis = new float[capacity];
+    }
+
+    /**
+     * Starts sampling on a daemon thread. Times in the series are measured from this call.
+     * Does nothing if sampling already started.
+     */
+    public synchronized void start() {
+        if (sampler != null) {return;}
+        RunStatistics.Snapshot snapshot = statistics.snapshot();
+        originNanos = snapshot.getElapsedNanos();
+        lastElapsedNanos = originNanos;
+        lastSteps = snapshot.getSteps();
+        lastActions = snapshot.getTotalActions();
+        lastActionNanos = snapshot.getActionNanos();
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "coverage-time-series");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sample, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sampling, after taking one last sample of the final state of the run.
+     */
+    public synchronized void stop() {
+        if (sampler == null) {return;}
+        sampler.shutdownNow();
+        sampler = null;
+        sample();
+    }
+
+    /**
+     * Records one sample of the statistics. The step rate and action latency
+     * are those of the interval since the previous sample.
+     */
+    synchronized void sample() {
+        RunStatistics.Snapshot snapshot = statistics.snapshot();
+        long steps = snapshot.getSteps();
+        long actions = snapshot.getTotalActions();
+        long actionNanos = snapshot.getActionNanos();
+        long intervalNanos = snapshot.getElapsedNanos() - lastElapsedNanos;
+
+        elapsedMillis[next] = TimeUnit.NANOSECONDS.toMillis(snapshot.getElapsedNanos() - originNanos);
+        coverage[next] = snapshot.getTargetCoverage();
+        targetsFound[next] = snapshot.getTargetsFound();
+        targetsExercised[next] = snapshot.getTargetsExercised();
+        pages[next] = (int) snapshot.getPagesDiscovered();
+        stepsPerSecond[next] = intervalNanos <= 0 ? 0 : (float) ((steps - lastSteps) * 1e9 / intervalNanos);
+        actionMillis[next] = actions == lastActions ? 0 : (float) ((actionNanos - lastActionNanos) / ((actions - lastActions) * 1e6));
+
+        lastSteps = steps;
+        lastActions = actions;
+        lastActionNanos = actionNanos;
+        lastElapsedNanos = snapshot.getElapsedNanos();
+        next = (next + 1) % capacity;
+        if (size < capacity) {size++;}
+    }
+
+    /**
+     * Returns the number of samples currently held.
+     *
+     * @return the number of samples
+     */
+    public synchronized int size() {return size;}
+
+    /**
+     * Returns the coverage of the last sample taken at or before the given time.
+     *
+     * @param elapsed - the time since sampling started in milliseconds
+     * @return the coverage at that time, or 0 if no sample that early is held
+     */
+    public synchronized float getCoverageAt(long elapsed) {
+        float result = 0;
+        for (int i=0; i<size; i++) {
+            int index = (next - size + i + capacity) % capacity;
+            if (elapsedMillis[index] > elapsed) {break;}
+            result = coverage[index];
+        }
+        return result;
+    }
+
+    /**
+     * Writes the samples held, oldest first, to the given file as CSV.
+     *
+     * @param file - the file to write to
+     * @throws IOException if the file could not be written
+     */
+    public synchronized void writeCsv(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.println("elapsedSeconds,coverage,targetsFound,targetsExercised,pagesDiscovered,stepsPerSecond,actionMillis");
+            for (int i=0; i<size; i++) {
+                int index = (next - size + i + capacity) % capacity;
+                out.printf(Locale.ROOT, "%.3f,%.5f,%d,%d,%d,%.3f,%.2f%n", elapsedMillis[index] / 1000.0, coverage[index],
+                        targetsFound[index], targetsExercised[index], pages[index], stepsPerSecond[index], actionMillis[index]);
+            }
+            if (out.checkError()) {throw new IOException("Could not write " + file);}
+        }
+    }
+}
@@ -3,6 +3,7 @@ package logger;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Map;
 
 import gui.MainGUI;
 
@@ -106,6 +107,57 @@ public class LogFileGenerator {
 		}
 	}
 
+	/**
+	 * Appends the coverage of a given test by href pattern to the logfile, where links
+	 * that differ only in ids or query values count as one pattern.
+	 * 
+	 * @param patternsClicked - the number of href patterns with at least one link clicked
+	 * @param patternsFound - the number of href patterns discovered during the test
+	 * @param patternCoverage - the fraction of patterns found that were clicked
+	 */
+	public void logPatternStatistics(int patternsClicked, int patternsFound, float patternCoverage){
+		writer.println("\tClicked " + patternsClicked + " unique link patterns\n");
+		writer.println("\tFound " + patternsFound + " unique link patterns\n");
+		writer.println("\tYielded an overall pattern coverage of " + patternCoverage + "\n-- --\n");
+		writer.flush();
+		if(mainGui != null) {
+			mainGui.toExtraction(String.format("\tClicked %d unique link patterns\n"
+					+ "\tFound %d unique link patterns\n"
+					+ "\tYielded an overall pattern coverage of %.3f\n"
+					+ "-- --\n", 
+					patternsClicked, patternsFound, patternCoverage));
+		}
+	}
+
+	/**
+	 * Appends the step, action, exception and recovery counts of a given test to the logfile.
+	 * 
+	 * @param statistics - a snapshot of the run statistics taken when the test was stopped
+	 */
+	public void logRunStatistics(RunStatistics.Snapshot statistics){
+		StringBuilder summary = new StringBuilder();
+		summary.append(String.format("\tTook %d steps in %.1f seconds\n\n", 
+				statistics.getSteps(), statistics.getElapsedNanos() / 1e9));
+		for (RunStatistics.Action kind : RunStatistics.Action.values()) {
+			summary.append(String.format("\tPerformed %d %s actions\n\n", statistics.getActions(kind), kind));
+		}
+		summary.append(String.format("\tTook %.1f ms per action on average\n\n", statistics.getAverageActionMillis()));
+		summary.append(String.format("\tDiscovered %d unique states\n\n", statistics.getPagesDiscovered()));
+		summary.append(String.format("\tEscaped %d page cycles\n\n", statistics.getCycleEscapes()));
+		summary.append(String.format("\tCaught %d exceptions\n\n", statistics.getExceptions()));
+		summary.append(String.format("\tTimed out %d device commands\n\n", statistics.getTimeouts()));
+		summary.append(String.format("\tReset the session %d times\n\n", statistics.getSessionResets()));
+		for (Map.Entry<String, Long> recoveries : statistics.getRecoveries().entrySet()) {
+			summary.append(String.format("\tRecovered from %d %s\n\n", recoveries.getValue(), recoveries.getKey()));
+		}
+		summary.append("-- --\n");
+		writer.print(summary);
+		writer.flush();
+		if(mainGui != null) {
+			mainGui.toExtraction(summary.toString().replace("\n\n", "\n"));
+		}
+	}
+
 	/**
 	 * Returns the name of the log file being written to in a particular instance. To be used 
 	 * for comparison purposes in tests.
@@ -0,0 +1,293 @@
+package logger;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * RunStatistics is the central registry of the counters describing a test run.
+ *
+ * The testing thread updates it through striped LongAdder counters, so updates
+ * never block and never contend with readers. The GUI, JMX, log summaries and
+ * benchmarks read it through snapshot(), which copies the counters into an
+ * immutable Snapshot without stopping the writer.
+ */
+public final class RunStatistics implements RunStatisticsMXBean {
+
+    /**
+     * The kinds of actions a tester can carry out.
+     */
+    public enum Action {CLICK, INPUT, FORM_SUBMIT, EXTERNAL_LINK, WEBVIEW_BACK, HARDWARE_BACK, TELEPORT, BRANCH_RESTORE}
+
+    /**
+     * An immutable view of the statistics at one moment.
+     */
+    public static final class Snapshot {
+        private final long elapsedNanos;
+        private final long steps;
+        private final long[] actions;
+        private final long actionNanos;
+        private final long exceptions;
+        private final Map<String, Long> recoveries;
+        private final long pagesDiscovered;
+        private final long cycleEscapes;
+        private final long timeouts;
+        private final long sessionResets;
+        private final int targetsFound;
+        private final int targetsExercised;
+
+        private Snapshot(RunStatistics statistics) {
+            this.elapsedNanos = System.nanoTime() - statistics.startNanos;
+            this.steps = statistics.steps.sum();
+            this.actions = new long[statistics.actions.length];
+            for (int i=0; i<actions.length; i++) {actions[i] = statistics.actions[i].sum();}
+            this.actionNanos = statistics.actionNanos.sum();
+            this.exceptions = statistics.exceptions.sum();
+            TreeMap<String, Long> recoveries = new TreeMap<>();
+            statistics.recoveries.forEach((cause, count) -> recoveries.put(cause, count.sum()));
+            this.recoveries = Collections.unmodifiableMap(recoveries);
+            this.pagesDiscovered = statistics.pagesDiscovered.sum();
+            this.cycleEscapes = statistics.cycleEscapes.sum();
+            this.timeouts = statistics.timeouts.sum();
+            this.sessionResets = statistics.sessionResets.sum();
+            long coverage = statistics.coverage.get();
+            this.targetsFound = (int) (coverage >>> 32);
+            this.targetsExercised = (int) coverage;
+        }
+
+        /**
+         * Returns the time between the start of the run and this snapshot.
+         *
+         * @return the elapsed time in nanoseconds
+         */
+        public long getElapsedNanos() {return elapsedNanos;}
+
+        public long getSteps() {return steps;}
+
+        public long getActions(Action kind) {return actions[kind.ordinal()];}
+
+        public long getTotalActions() {
+            long total = 0;
+            for (long count : actions) {total += count;}
+            return total;
+        }
+
+        /**
+         * Returns the total time the driver spent carrying out actions.
+         *
+         * @return the total action latency in nanoseconds
+         */
+        public long getActionNanos() {return actionNanos;}
+
+        /**
+         * Returns the mean time the driver took to carry out an action.
+         *
+         * @return the average action latency in milliseconds, or 0 if no action was taken
+         */
+        public double getAverageActionMillis() {
+            long total = getTotalActions();
+            return total == 0 ? 0 : actionNanos / (total * 1e6);
+        }
+
+        public long getExceptions() {return exceptions;}
+
+        /**
+         * Returns the number of recoveries made, by the class of failure recovered from.
+         *
+         * @return the recoveries by failure class, in name order
+         */
+        public Map<String, Long> getRecoveries() {return recoveries;}
+
+        public long getTotalRecoveries() {
+            long total = 0;
+            for (long count : recoveries.values()) {total += count;}
+            return total;
+        }
+
+        public long getPagesDiscovered() {return pagesDiscovered;}
+
+        public long getCycleEscapes() {return cycleEscapes;}
+
+        public long getTimeouts() {return timeouts;}
+
+        public long getSessionResets() {return sessionResets;}
+
+        public int getTargetsFound() {return targetsFound;}
+
+        public int getTargetsExercised() {return targetsExercised;}
+
+        /**
+         * Returns the fraction of all targets found that have been exercised.
+         *
+         * @return the coverage, or 0 if no targets were found
+         */
+        public float getTargetCoverage() {
+            return targetsFound == 0 ? 0 : (float) targetsExercised / (float) targetsFound;
+        }
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder steps = new LongAdder();
+    private final LongAdder[] actions = new LongAdder[Action.values().length];
+    private final LongAdder actionNanos = new LongAdder();
+    private final LongAdder exceptions = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> recoveries = new ConcurrentHashMap<>();
+    private final LongAdder pagesDiscovered = new LongAdder();
+    private final LongAdder cycleEscapes = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder sessionResets = new LongAdder();
+    // targets found in the high half and targets exercised in the low half, so the pair is read atomically
+    private final AtomicLong coverage = new AtomicLong();
+    private ObjectName registeredName = null;
+
+    public RunStatistics() {
+        for (int i=0; i<actions.length; i++) {actions[i] = new LongAdder();}
+    }
+
+    /**
+     * Records that the tester completed one test step.
+     */
+    public void recordStep() {steps.increment();}
+
+    /**
+     * Records an action carried out by the tester.
+     *
+     * @param kind - the kind of action
+     * @param latencyNanos - how long the driver took to carry out the action
+     */
+    public void recordAction(Action kind, long latencyNanos) {
+        actions[kind.ordinal()].increment();
+        actionNanos.add(latencyNanos);
+    }
+
+    /**
+     * Records an exception thrown during a test step.
+     */
+    public void recordException() {exceptions.increment();}
+
+    /**
+     * Records a recovery from a failed test step.
+     *
+     * @param failureClass - the class of failure that was recovered from
+     */
+    public void recordRecovery(String failureClass) {
+        recoveries.computeIfAbsent(failureClass, name -> new LongAdder()).increment();
+    }
+
+    /**
+     * Records that a page was observed for the first time.
+     */
+    public void recordPageDiscovered() {pagesDiscovered.increment();}
+
+    /**
+     * Records that the tester broke out of a short cycle of pages.
+     */
+    public void recordCycleEscape() {cycleEscapes.increment();}
+
+    /**
+     * Records that a device command was given up on for taking longer than its deadline.
+     */
+    public void recordTimeout() {timeouts.increment();}
+
+    /**
+     * Records that the session was abandoned and a new one started.
+     */
+    public void recordSessionReset() {sessionResets.increment();}
+
+    /**
+     * Records the latest coverage counts.
+     *
+     * @param targetsFound - the number of targets found so far
+     * @param targetsExercised - the number of targets exercised so far
+     */
+    public void recordCoverage(int targetsFound, int targetsExercised) {
+        coverage.set(((long) targetsFound << 32) | (targetsExercised & 0xffffffffL));
+    }
+
+    /**
+     * Copies the current counters. Safe to call from any thread and never
+     * blocks the testing thread.
+     *
+     * @return a snapshot of the statistics
+     */
+    public Snapshot snapshot() {return new Snapshot(this);}
+
+    /**
+     * Registers these statistics with the platform MBean server, so they can be
+     * watched from JConsole or any other JMX client while the test runs.
+     *
+     * @param name - the name to register under, distinguishing concurrent runs
+     */
+    public void registerMBean(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("HybridAppTester:type=RunStatistics,name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) {server.unregisterMBean(objectName);}
+            server.registerMBean(this, objectName);
+            registeredName = objectName;
+        } catch (JMException e) {System.err.println("Could not register run statistics: " + e.getMessage());}
+    }
+
+    /**
+     * Removes these statistics from the platform MBean server, if they were registered.
+     */
+    public void unregisterMBean() {
+        if (registeredName == null) {return;}
+        try {ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);}
+        catch (JMException e) {System.err.println("Could not unregister run statistics: " + e.getMessage());}
+        registeredName = null;
+    }
+
+    @Override
+    public long getSteps() {return steps.sum();}
+
+    @Override
+    public long getActions() {
+        long total = 0;
+        for (LongAdder count : actions) {total += count.sum();}
+        return total;
+    }
+
+    @Override
+    public long getExceptions() {return exceptions.sum();}
+
+    @Override
+    public long getRecoveries() {
+        long total = 0;
+        for (LongAdder count : recoveries.values()) {total += count.sum();}
+        return total;
+    }
+
+    @Override
+    public long getPagesDiscovered() {return pagesDiscovered.sum();}
+
+    @Override
+    public long getCycleEscapes() {return cycleEscapes.sum();}
+
+    @Override
+    public long getTimeouts() {return timeouts.sum();}
+
+    @Override
+    public long getSessionResets() {return sessionResets.sum();}
+
+    @Override
+    public int getTargetsFound() {return (int) (coverage.get() >>> 32);}
+
+    @Override
+    public int getTargetsExercised() {return (int) coverage.get();}
+
+    @Override
+    public float getTargetCoverage() {
+        long coverage = this.coverage.get();
+        int targetsFound = (int) (coverage >>> 32);
+        return targetsFound == 0 ? 0 : (float) (int) coverage / (float) targetsFound;
+    }
+}
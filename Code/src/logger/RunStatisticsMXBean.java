@@ -0,0 +1,28 @@
+package logger;
+
+/**
+ * The view of RunStatistics that is exposed over JMX.
+ */
+public interface RunStatisticsMXBean {
+    long getSteps();
+
+    long getActions();
+
+    long getExceptions();
+
+    long getRecoveries();
+
+    long getPagesDiscovered();
+
+    long getCycleEscapes();
+
+    long getTimeouts();
+
+    long getSessionResets();
+
+    int getTargetsFound();
+
+    int getTargetsExercised();
+
+    float getTargetCoverage();
+}
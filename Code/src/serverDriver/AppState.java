@@ -0,0 +1,54 @@
+package serverDriver;
+
+/**
+ * AppState is what a foreground probe found out about the app under test: whether
+ * it is in the foreground, which context the driver is in, and which page the
+ * WebView shows.
+ */
+public final class AppState {
+
+    /**
+     * The states the app can be found in, from cheapest to most expensive to recover from.
+     */
+    public enum Status {
+        /** The app is in the foreground, showing a local page in the WebView context. */
+        FOREGROUND,
+        /** The app is in the foreground but the driver is in the native context. */
+        NATIVE_CONTEXT,
+        /** The WebView has navigated to a page that isn't part of the app. */
+        EXTERNAL_PAGE,
+        /** The app is hidden behind another app, such as the dialer or a browser. */
+        BACKGROUND,
+        /** The WebView didn't answer at all. */
+        UNREACHABLE
+    }
+
+    private final Status status;
+    private final String context;
+    private final String url;
+
+    AppState(Status status, String context, String url) {
+        this.status = status;
+        this.context = context;
+        this.url = url;
+    }
+
+    public Status getStatus() {return status;}
+
+    /**
+     * Returns the window handle of the context the driver was in.
+     *
+     * @return the context, such as WEBVIEW or NATIVE_APP, or null if it couldn't be read
+     */
+    public String getContext() {return context;}
+
+    /**
+     * Returns the URL of the page the WebView was showing.
+     *
+     * @return the URL, or null if it couldn't be read
+     */
+    public String getUrl() {return url;}
+
+    @Override
+    public String toString() {return String.format("%s in %s at %s", status, context, url);}
+}
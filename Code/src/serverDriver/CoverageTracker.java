@@ -0,0 +1,180 @@
+package serverDriver;
+
+import java.util.Arrays;
+
+/**
+ * CoverageTracker keeps track of which targets have been found and which 
+ * have been exercised during a test.
+ * 
+ * Every target is identified by a 64-bit id and given a dense index, and 
+ * found and exercised targets are kept in bitsets over those indices, so 
+ * each update costs O(1). The counts are published after every update as an
+ * immutable Snapshot which readers on other threads can use without locking.
+ */
+public class CoverageTracker {
+
+    /**
+     * The kinds of targets coverage is tracked for.
+     */
+    public enum Kind {LINK, EXTERNAL_LINK, INPUT}
+
+    /**
+     * An immutable, consistent view of the coverage counts at one moment.
+     */
+    public static final class Snapshot {
+        private final int[] found;
+        private final int[] exercised;
+
+        Snapshot(int[] found, int[] exercised) {
+            this.found = found.clone();
+            this.exercised = exercised.clone();
+        }
+
+        public int getFound(Kind kind) {return found[kind.ordinal()];}
+
+        public int getExercised(Kind kind) {return exercised[kind.ordinal()];}
+
+        public int getTotalFound() {return Arrays.stream(found).sum();}
+
+        public int getTotalExercised() {return Arrays.stream(exercised).sum();}
+
+        /**
+         * Returns the fraction of all targets found that have been exercised.
+         * 
+         * @return the coverage, or 0 if no targets were found
+         */
+        public float getTargetCoverage() {
+            int totalFound = getTotalFound();
+            return totalFound == 0 ? 0 : (float) getTotalExercised() / (float) totalFound;
+        }
+    }
+
+    private LongIndexMap indices = new LongIndexMap();
+    private long[] ids = new long[64];
+    private byte[] kinds = new byte[64];
+    private long[] foundTargets = new long[1];
+    private long[] exercisedTargets = new long[1];
+    private int[] exercisedOrder = new int[64];
+    private int exercisedCount = 0;
+    private int[] foundByKind = new int[Kind.values().length];
+    private int[] exercisedByKind = new int[Kind.values().length];
+    private volatile Snapshot snapshot = new Snapshot(foundByKind, exercisedByKind);
+
+    /**
+     * Computes the 64-bit id of a target from a string describing it.
+     * 
+     * @param description - a string that identifies the target
+     * @return the 64-bit FNV-1a hash of the description
+     */
+    public static long targetId(String description) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i=0; i<description.length(); i++) {
+            hash ^= description.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static boolean isSet(long[] bits, int index) {return (bits[index >>> 6] & (1L << index)) != 0;}
+
+    private static void set(long[] bits, int index) {bits[index >>> 6] |= 1L << index;}
+
+    /**
+     * Records a target as found.
+     * 
+     * @param id - the id of the target
+     * @param kind - the kind of target
+     * @return true if the target had not been found before else false
+     */
+    public boolean found(long id, Kind kind) {
+        int index = indices.getOrAdd(id);
+        if (index < ids.length && isSet(foundTargets, index)) {return false;}
+        if (index >= ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+            kinds = Arrays.copyOf(kinds, kinds.length * 2);
+        }
+        if ((index >>> 6) >= foundTargets.length) {
+            foundTargets = Arrays.copyOf(foundTargets, foundTargets.length * 2);
+            exercisedTargets = Arrays.copyOf(exercisedTargets, exercisedTargets.length * 2);
+        }
+        ids[index] = id;
+        kinds[index] = (byte) kind.ordinal();
+        set(foundTargets, index);
+        foundByKind[kind.ordinal()]++;
+        publish();
+        return true;
+    }
+
+    /**
+     * Records a target as exercised, finding it first if it wasn't found yet.
+     * 
+     * @param id - the id of the target
+     * @param kind - the kind of target
+     * @return true if the target had not been exercised before else false
+     */
+    public boolean exercised(long id, Kind kind) {
+        found(id, kind);
+        int index = indices.get(id);
+        if (isSet(exercisedTargets, index)) {return false;}
+        set(exercisedTargets, index);
+        if (exercisedCount == exercisedOrder.length) {exercisedOrder = Arrays.copyOf(exercisedOrder, exercisedCount * 2);}
+        exercisedOrder[exercisedCount++] = index;
+        exercisedByKind[kinds[index]]++;
+        publish();
+        return true;
+    }
+
+    /**
+     * Returns true if the given target has been exercised.
+     * 
+     * @param id - the id of the target
+     * @return true if the target was exercised else false
+     */
+    public boolean wasExercised(long id) {
+        int index = indices.get(id);
+        return index >= 0 && isSet(exercisedTargets, index);
+    }
+
+    private void publish() {snapshot = new Snapshot(foundByKind, exercisedByKind);}
+
+    /**
+     * Returns the latest coverage counts. Safe to call from any thread.
+     * 
+     * @return the current snapshot
+     */
+    public Snapshot getSnapshot() {return snapshot;}
+
+    /**
+     * Returns the number of targets found so far, which is also the next dense index.
+     * 
+     * @return the number of targets found
+     */
+    public int getTargetsFound() {return indices.size();}
+
+    /**
+     * Returns the number of targets exercised so far.
+     * 
+     * @return the number of targets exercised
+     */
+    public int getTargetsExercised() {return exercisedCount;}
+
+    /**
+     * Returns the id of the target found at the given position.
+     * 
+     * @param order - the position in the order targets were found
+     * @return the id of the target
+     */
+    public long getFoundId(int order) {return ids[order];}
+
+    public Kind getFoundKind(int order) {return Kind.values()[kinds[order]];}
+
+    /**
+     * Returns the id of the target exercised at the given position.
+     * 
+     * @param order - the position in the order targets were exercised
+     * @return the id of the target
+     */
+    public long getExercisedId(int order) {return ids[exercisedOrder[order]];}
+
+    public Kind getExercisedKind(int order) {return Kind.values()[kinds[exercisedOrder[order]]];}
+}
@@ -0,0 +1,169 @@
+package serverDriver;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import logger.RunStatistics;
+
+/**
+ * DeviceWatchdog runs commands that talk to the device on a worker thread and gives
+ * up on any that take longer than their deadline, so that a stalled emulator can't
+ * hang the testing thread inside a blocking driver call.
+ *
+ * A command that times out or is cancelled is interrupted and its worker is
+ * abandoned, since a call blocked on the device may not respond to the interrupt;
+ * the next command gets a fresh worker. An abandoned command may still be running
+ * though, so callers whose next command shares state with it must first wait for it
+ * with awaitAbandoned, and the abandoned command can tell it was given up on with
+ * isAbandoned. Commands issued from inside a command run inline under the outer
+ * command's deadline.
+ */
+public final class DeviceWatchdog {
+	/** The deadline for extracting the targets of a page, which takes a round trip per element. */
+	public static long extractDeadlineMillis = 60000;
+	/** The deadline for a tester observing a page and carrying out one action on it. */
+	public static long actionDeadlineMillis = 30000;
+	/** The deadline for bringing the app back to the foreground. */
+	public static long recoveryDeadlineMillis = 20000;
+	/** The deadline for starting a new session, which may reinstall and relaunch the app. */
+	public static long sessionDeadlineMillis = 180000;
+
+	private final RunStatistics statistics;
+	// the worker running the current command, on the threads of the workers
+	private final ThreadLocal<ExecutorService> commandWorker = new ThreadLocal<>();
+	private int workersStarted = 0;
+	private ExecutorService worker = newWorker();
+	private ArrayList<ExecutorService> abandonedWorkers = new ArrayList<>();
+
+	/**
+	 * Creates a watchdog which records the commands that time out in the given statistics.
+	 *
+	 * @param statistics - the statistics of the test run
+	 */
+	DeviceWatchdog(RunStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	/**
+	 * Creates a worker with a single daemon thread, so an abandoned worker never keeps
+	 * the application from exiting.
+	 *
+	 * @return the new worker
+	 */
+	private ExecutorService newWorker() {
+		String name = String.format("device-watchdog-%d", ++workersStarted);
+		return Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Runs the given command on the worker thread and waits for it for at most the
+	 * given deadline.
+	 *
+	 * @param command - the name of the command, for the timeout message
+	 * @param deadlineMillis - how long to wait for the command in milliseconds
+	 * @param call - the command to run
+	 * @return the result of the command
+	 * @throws org.openqa.selenium.TimeoutException if the command didn't finish before its deadline
+	 * @throws CancellationException if the waiting thread was interrupted
+	 */
+	public <T> T call(String command, long deadlineMillis, Callable<T> call) {
+		if (commandWorker.get() != null) {return callInline(call);}
+		ExecutorService executor = worker;
+		Future<T> future = executor.submit(() -> {
+			commandWorker.set(executor);
+			return call.call();
+		});
+		try {return future.get(deadlineMillis, TimeUnit.MILLISECONDS);}
+		catch (java.util.concurrent.TimeoutException e) {
+			abandon(future);
+			statistics.recordTimeout();
+			throw new org.openqa.selenium.TimeoutException(String.format("%s took longer than %d ms", command, deadlineMillis));
+		} catch (CancellationException e) {
+			abandon(future);
+			throw e;
+		} catch (InterruptedException e) {
+			abandon(future);
+			Thread.currentThread().interrupt();
+			throw new CancellationException(String.format("%s was interrupted", command));
+		} catch (ExecutionException e) {
+			throw rethrow(e.getCause());
+		}
+	}
+
+	/**
+	 * Runs the given command on the calling thread.
+	 *
+	 * @param call - the command to run
+	 * @return the result of the command
+	 */
+	private static <T> T callInline(Callable<T> call) {
+		try {return call.call();}
+		catch (Exception e) {throw rethrow(e);}
+	}
+
+	/**
+	 * Rethrows the given failure of a command as an unchecked exception.
+	 *
+	 * @param cause - what the command threw
+	 * @return never returns, so that callers can throw its result
+	 */
+	private static RuntimeException rethrow(Throwable cause) {
+		if (cause instanceof RuntimeException) {throw (RuntimeException) cause;}
+		if (cause instanceof Error) {throw (Error) cause;}
+		throw new org.openqa.selenium.WebDriverException(cause);
+	}
+
+	/**
+	 * Interrupts the given command and replaces the worker it is stuck on, keeping the
+	 * old worker until it is seen to have finished.
+	 *
+	 * @param future - the command to give up on
+	 */
+	private void abandon(Future<?> future) {
+		future.cancel(true);
+		worker.shutdownNow();
+		abandonedWorkers.add(worker);
+		worker = newWorker();
+	}
+
+	/**
+	 * Waits for every abandoned command to finish, for at most the given time.
+	 *
+	 * @param deadlineMillis - how long to wait in milliseconds
+	 * @return true if no abandoned command is still running else false
+	 */
+	public boolean awaitAbandoned(long deadlineMillis) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+		for (Iterator<ExecutorService> abandoned = abandonedWorkers.iterator(); abandoned.hasNext();) {
+			try {
+				if (!abandoned.next().awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {return false;}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+			abandoned.remove();
+		}
+		return true;
+	}
+
+	/**
+	 * Checks, from inside a command, whether the command has been given up on.
+	 *
+	 * @return true if called from a command that timed out or was cancelled else false
+	 */
+	public boolean isAbandoned() {
+		ExecutorService executor = commandWorker.get();
+		return executor != null && executor.isShutdown();
+	}
+}
@@ -0,0 +1,116 @@
+package serverDriver;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * HrefPatterns collapses parameterised hrefs into templates, so that
+ * detail.html?id=1 through detail.html?id=5000 count as one pattern.
+ * 
+ * Numeric ids, UUIDs, long hex strings, and query values are always replaced 
+ * by placeholders. Beyond that, the patterns are learned from the hrefs seen: 
+ * once more than learningThreshold distinct last path segments have been 
+ * seen under the same parent, that segment becomes a wildcard as well. The
+ * segments of at most maxTrackedParents parents are kept while learning, the 
+ * least recently seen parent being forgotten first, while learned parents are
+ * kept for good.
+ */
+public class HrefPatterns {
+    /** The number of distinct segments under one parent after which the segment is treated as a parameter. */
+    public static int learningThreshold = 20;
+    /** The number of parents whose segments are kept while learning. */
+    public static int maxTrackedParents = 10000;
+
+    private static Pattern uuidPattern = Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+    private static Pattern hexPattern = Pattern.compile("\\b[0-9a-fA-F]{12,}\\b");
+    private static Pattern numberPattern = Pattern.compile("\\d+");
+
+    private LinkedHashMap<String, HashSet<String>> segmentsByParent = new LinkedHashMap<String, HashSet<String>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, HashSet<String>> eldest) {return size() > maxTrackedParents;}
+    };
+    private HashSet<String> learnedParents = new HashSet<>();
+
+    /**
+     * Replaces the parameter-like parts of a piece of an href with placeholders.
+     * 
+     * @param part - the piece to normalise
+     * @return the piece with placeholders
+     */
+    private static String normalise(String part) {
+        part = uuidPattern.matcher(part).replaceAll("{uuid}");
+        part = hexPattern.matcher(part).replaceAll("{hex}");
+        return numberPattern.matcher(part).replaceAll("{n}");
+    }
+
+    /**
+     * Splits an href into everything before its last path segment and the segment itself,
+     * both already normalised, with the query and hash removed.
+     * 
+     * @param href - the href to split
+     * @return the parent and the last segment
+     */
+    private static String[] splitPath(String href) {
+        String path = href;
+        int end = path.length();
+        for (char separator : new char[] {'?', '#'}) {
+            int index = path.indexOf(separator);
+            if (index >= 0) {end = Math.min(end, index);}
+        }
+        path = normalise(path.substring(0, end));
+        int slash = path.lastIndexOf('/');
+        return new String[] {path.substring(0, slash + 1), path.substring(slash + 1)};
+    }
+
+    /**
+     * Records an href so that parameter-like path segments can be learned from it.
+     * 
+     * @param href - the href that was found
+     */
+    public void learn(String href) {
+        if (href == null) {return;}
+        String[] path = splitPath(href);
+        if (learnedParents.contains(path[0])) {return;}
+        HashSet<String> segments = segmentsByParent.computeIfAbsent(path[0], k -> new HashSet<>());
+        segments.add(path[1]);
+        if (segments.size() > learningThreshold) {
+            learnedParents.add(path[0]);
+            segmentsByParent.remove(path[0]);
+        }
+    }
+
+    /**
+     * Returns the pattern the given href belongs to.
+     * 
+     * @param href - the href to look up
+     * @return the href's pattern
+     */
+    public String patternOf(String href) {
+        if (href == null) {return "";}
+        int colon = href.indexOf(':');
+        if (colon > 0 && !href.startsWith("file:") && !href.startsWith("http")) {
+            return href.substring(0, colon + 1) + "{v}"; // tel:, sms:, mailto: and the like
+        }
+
+        String[] path = splitPath(href);
+        StringBuilder pattern = new StringBuilder(path[0]);
+        pattern.append(learnedParents.contains(path[0]) ? "{*}" : path[1]);
+
+        int queryStart = href.indexOf('?');
+        int hashStart = href.indexOf('#');
+        if (queryStart >= 0 && (hashStart < 0 || queryStart < hashStart)) {
+            String query = href.substring(queryStart + 1, hashStart < 0 ? href.length() : hashStart);
+            pattern.append('?');
+            String[] parameters = query.split("&");
+            for (int i=0; i<parameters.length; i++) {
+                int equals = parameters[i].indexOf('=');
+                if (i > 0) {pattern.append('&');}
+                pattern.append(equals < 0 ? parameters[i] : parameters[i].substring(0, equals) + "={v}");
+            }
+        }
+        if (hashStart >= 0) {pattern.append('#').append(normalise(href.substring(hashStart + 1)));}
+        return pattern.toString();
+    }
+}
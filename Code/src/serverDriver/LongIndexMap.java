@@ -0,0 +1,78 @@
+package serverDriver;
+
+/**
+ * LongIndexMap maps 64-bit ids to dense int indices using open addressing
+ * with linear probing, so lookups neither box the key nor allocate.
+ */
+final class LongIndexMap {
+    private long[] keys = new long[64];
+    private int[] values = new int[64];
+    private boolean[] used = new boolean[64];
+    private int size = 0;
+
+    /**
+     * Returns the slot holding the given key, or the empty slot where it would go.
+     * 
+     * @param key - the key to look for
+     * @return the index of the slot
+     */
+    private int slotFor(long key) {
+        long mixed = key * 0x9e3779b97f4a7c15L;
+        int mask = keys.length - 1;
+        int slot = (int) (mixed ^ (mixed >>> 32)) & mask;
+        while (used[slot] && keys[slot] != key) {slot = (slot + 1) & mask;}
+        return slot;
+    }
+
+    /**
+     * Returns the index of the given key.
+     * 
+     * @param key - the key to look up
+     * @return the index, or -1 if the key is absent
+     */
+    int get(long key) {
+        int slot = slotFor(key);
+        return used[slot] ? values[slot] : -1;
+    }
+
+    /**
+     * Returns the index of the given key, giving it the next free index if it is absent.
+     * 
+     * @param key - the key to look up
+     * @return the index of the key, which equals size()-1 if it was just added
+     */
+    int getOrAdd(long key) {
+        int slot = slotFor(key);
+        if (used[slot]) {return values[slot];}
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+            slot = slotFor(key);
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = size;
+        return size++;
+    }
+
+    /**
+     * Doubles the table and re-inserts every entry.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        for (int i=0; i<oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = slotFor(oldKeys[i]);
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    int size() {return size;}
+}
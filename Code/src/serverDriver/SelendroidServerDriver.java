@@ -10,9 +10,14 @@ import org.openqa.selenium.By;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
 
+import logger.RunStatistics;
+
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -21,11 +26,19 @@ import java.util.List;
  */
 public class SelendroidServerDriver {
 	private SelendroidLauncher selendroidServer;
-	private SelendroidDriver driver;
-	private HashMap<Integer, String> pagesFound = new HashMap<>();
-	private HashMap<Integer, String> pagesClicked = new HashMap<>();
-	private int linksFound = 1;
-	private int linksClicked = 1;
+	private volatile SelendroidDriver driver;
+	private SelendroidCapabilities caps;
+	private CoverageTracker coverage = new CoverageTracker();
+	private RunStatistics statistics = new RunStatistics();
+	private DeviceWatchdog watchdog = new DeviceWatchdog(statistics);
+	private IdentityHashMap<WebElement, Long> inputIds = new IdentityHashMap<>();
+	private HashMap<Integer, int[]> formGroupsByTarget = new HashMap<>();
+	private long targetSetSignature = 0;
+	// not bounded: one href per link found or clicked for the whole run, which is what
+	// getLinksFoundSince and getLinksClickedSince hand to checkpoints
+	private ArrayList<String> linksFoundInOrder = new ArrayList<>();
+	private ArrayList<String> linksClickedInOrder = new ArrayList<>();
+	private HrefPatterns hrefPatterns = new HrefPatterns();
 	
 	public ArrayList<WebElement> possibleTargets;
 	static public double defaultWaitTimeSeconds = 0.5;
@@ -47,7 +60,7 @@ public class SelendroidServerDriver {
         config.addSupportedApp(apkPath); // Specifies target APK
         this.selendroidServer = new SelendroidLauncher(config);
         selendroidServer.launchSelendroid();
-        SelendroidCapabilities caps = new SelendroidCapabilities(capabilities); // Passes capabilities to Selendroid server
+        this.caps = new SelendroidCapabilities(capabilities); // Passes capabilities to Selendroid server
         // AppId for hybridtestapp.apk: com.example.hybridtestapp:1.0
         try {driver = new SelendroidDriver(caps);} // Makes a new driver
         catch (java.lang.Exception e) {e.printStackTrace();} // Couldn't start Selendroid.
@@ -104,57 +117,345 @@ public class SelendroidServerDriver {
 		List<WebElement> elementsByCss = driver.findElements(By.cssSelector("*")); 
 		
 		possibleTargets = new ArrayList<>();
+		inputIds = new IdentityHashMap<>();
+		long signature = 0;
 		System.out.println(elementsByCss);
 		String outputString = "";
+		String pagePath = null;
 		int count = 0;
 		
 		for (WebElement e : elementsByCss) {
-			if (e.getTagName().equals("a") || e.getTagName().equals("input")) { // check if they're ones we want
+			String elementTag = e.getTagName(); // each attribute read is a round trip to the device
+			if (elementTag.equals("a") || elementTag.equals("input")) { // check if they're ones we want
 				possibleTargets.add(e);
 				count += 1;
+				String elementHref = e.getAttribute("href");
+				String elementId = e.getAttribute("id");
+				signature = 31 * signature + CoverageTracker.targetId(String.format("%s %s %s", elementTag, elementHref, elementId));
 	
 	            // Make the formatting pretty!
 	            String format = "\t[%s]: %s\n";
-	            String tagName = String.format(format, "Tag Name", e.getTagName());
-	            String name = String.format(format, "Name", e.getTagName());
-	            String href = String.format(format, "href", e.getAttribute("href"));
-	            String id = String.format(format, "ID", e.getAttribute("id"));
+	            String tagName = String.format(format, "Tag Name", elementTag);
+	            String name = String.format(format, "Name", elementTag);
+	            String href = String.format(format, "href", elementHref);
+	            String id = String.format(format, "ID", elementId);
 	            String location = String.format(format, "Location", e.getLocation());
 	            String dimension = String.format(format, "Dimension", e.getSize());
 	            outputString = String.format("%s[Element %s]: %s\n%s%s%s%s%s%s \n", outputString, Integer.toString(count), e.getText(), tagName, name, href, id, location, dimension);
 				
-				int hashCode = e.getAttribute("href").hashCode();
-				if (e.getTagName().equals("a") && !pagesFound.containsKey(hashCode)) {
-					linksFound += 1;
-					pagesFound.put(hashCode, e.getAttribute("href"));
+				if (elementTag.equals("a")) {setLinkAsFound(elementHref);}
+				else {
+					if (pagePath == null) {pagePath = getCurrentUrl().split("[?#]")[0];}
+					long inputId = CoverageTracker.targetId(String.format("%s#input:%s:%s:%s", pagePath, elementId, e.getAttribute("name"), count));
+					inputIds.put(e, inputId);
+					coverage.found(inputId, CoverageTracker.Kind.INPUT);
 				}
 			}
 		}
+		targetSetSignature = signature;
+		publishCoverage();
+		extractFormGroups();
 	    outputString = String.format("%sTotal elements found: %s", outputString, Integer.toString(count)); // Print the total amount of elements found
 		System.out.println(outputString);
 		return(outputString); 
 	}
 
+	/**
+	 * Groups the fillable inputs among the possible targets by the form they belong to,
+	 * in one script call. The script lists the same anchors and inputs in the same 
+	 * document order as the extraction, so if the page changed in between and the 
+	 * counts differ, no groups are kept.
+	 */
+	private void extractFormGroups() {
+		formGroupsByTarget = new HashMap<>();
+		Object result = driver.executeScript(
+				"var targets = document.querySelectorAll('a, input'), forms = [], groups = [];"
+				+ "for (var i = 0; i < targets.length; i++) {"
+				+ "var target = targets[i];"
+				+ "if (target.tagName.toLowerCase() != 'input' || !target.form || /^(submit|button|reset|image|hidden|file)$/i.test(target.type)) {continue;}"
+				+ "var form = forms.indexOf(target.form);"
+				+ "if (form < 0) {form = forms.length; forms.push(target.form); groups.push([]);}"
+				+ "groups[form].push(i);}"
+				+ "return [targets.length, groups];");
+		if (!(result instanceof List) || ((List<?>) result).size() != 2) {return;}
+		List<?> counted = (List<?>) result;
+		if (((Number) counted.get(0)).intValue() != possibleTargets.size()) {return;}
+		for (Object group : (List<?>) counted.get(1)) {
+			List<?> members = (List<?>) group;
+			int[] targetIndices = new int[members.size()];
+			for (int i=0; i<targetIndices.length; i++) {targetIndices[i] = ((Number) members.get(i)).intValue();}
+			for (int targetIndex : targetIndices) {formGroupsByTarget.put(targetIndex, targetIndices);}
+		}
+	}
+	
+	/**
+	 * Returns a hash of the tag, href and id of every possible target from the latest
+	 * extraction, in order, so that two extractions can be compared without keeping
+	 * the targets themselves.
+	 * 
+	 * @return the signature of the latest set of targets
+	 */
+	public long getTargetSetSignature() {
+		return targetSetSignature;
+	}
+	
+	/**
+	 * Returns the indices of the fillable inputs of the form the given target belongs to.
+	 * 
+	 * @param targetIndex - the index of a target from the latest extraction
+	 * @return the indices of the form's fillable inputs in page order, or null if the target isn't one of them
+	 */
+	public int[] getFormGroup(int targetIndex) {
+		return formGroupsByTarget.get(targetIndex);
+	}
+	
+	/**
+	 * Fills in the given inputs of a form and submits the form, all in one script call.
+	 * Checkboxes and radio buttons are checked for any value but the empty string. 
+	 * Input and change events are fired for each field, so the page's own handlers run,
+	 * and the form is submitted the way its submit button would submit it.
+	 * 
+	 * @param fields - the inputs to fill, all belonging to the same form
+	 * @param values - the value for each input
+	 */
+	public void submitForm(List<WebElement> fields, List<String> values) {
+		driver.executeScript(
+				"var fields = arguments[0], values = arguments[1];"
+				+ "function fire(field, name) {var event = document.createEvent('Event'); event.initEvent(name, true, true); return field.dispatchEvent(event);}"
+				+ "for (var i = 0; i < fields.length; i++) {"
+				+ "if (/^(checkbox|radio)$/i.test(fields[i].type)) {fields[i].checked = values[i] !== '';}"
+				+ "else {fields[i].value = values[i];}"
+				+ "fire(fields[i], 'input'); fire(fields[i], 'change');}"
+				+ "var form = fields[0].form;"
+				+ "if (!form) {return;}"
+				+ "if (form.requestSubmit) {form.requestSubmit(); return;}"
+				+ "var submit = form.querySelector('[type=submit]');"
+				+ "if (submit) {submit.click();}"
+				+ "else if (fire(form, 'submit')) {form.submit();}", fields, values);
+	}
+	
 	/**
 	 * Allows a tester to remove a hashed paged if it has been clicked,
 	 * as well as add it to the list of clicked pages
 	 */
 	public void setPageAsVisited(String HREF) {
-		int hashCode = HREF.hashCode();
-		if (!pagesClicked.containsKey(hashCode)) {
-			linksClicked += 1;
-			pagesClicked.put(hashCode, HREF);
+		if (coverage.exercised(CoverageTracker.targetId(HREF), linkKind(HREF))) {
+			linksClickedInOrder.add(HREF);
+			publishCoverage();
+		}
+	}
+	
+	/**
+	 * Marks the given input target from the latest extraction as exercised.
+	 * 
+	 * @param target - the input target that was typed into
+	 */
+	public void setInputAsExercised(WebElement target) {
+		Long inputId = inputIds.get(target);
+		if (inputId != null && coverage.exercised(inputId, CoverageTracker.Kind.INPUT)) {publishCoverage();}
+	}
+	
+	/**
+	 * Returns the id the given input target from the latest extraction is covered under.
+	 * 
+	 * @param target - the target to look up
+	 * @return the input id, or null if the target is not an input from the latest extraction
+	 */
+	public Long getInputId(WebElement target) {
+		return inputIds.get(target);
+	}
+	
+	/**
+	 * Reads the validation attributes of an input target in a single script call,
+	 * instead of one round trip to the device per attribute.
+	 * 
+	 * @param target - the input target to read
+	 * @return the values of the type, pattern, minlength, maxlength, min, max, step 
+	 * 		and required attributes the target has, by attribute name
+	 */
+	public Map<String, String> getInputAttributes(WebElement target) {
+		Object values = driver.executeScript(
+				"var names = ['type', 'pattern', 'minlength', 'maxlength', 'min', 'max', 'step', 'required'], values = {};"
+				+ "for (var i = 0; i < names.length; i++) {"
+				+ "if (arguments[0].hasAttribute(names[i])) {values[names[i]] = arguments[0].getAttribute(names[i]);}}"
+				+ "return values;", target);
+		HashMap<String, String> attributes = new HashMap<>();
+		if (values instanceof Map) {
+			for (Map.Entry<?, ?> value : ((Map<?, ?>) values).entrySet()) {
+				attributes.put(String.valueOf(value.getKey()), String.valueOf(value.getValue()));
+			}
+		}
+		return attributes;
+	}
+	
+	/**
+	 * Checks in a single script call whether an input target reacts to typing itself,
+	 * through inline listeners of its own or of its form.
+	 * 
+	 * @param target - the input target to check
+	 * @return true if the target or its form has an input, change, or key listener else false
+	 */
+	public boolean hasInputListeners(WebElement target) {
+		return Boolean.TRUE.equals(driver.executeScript(
+				"var names = ['oninput', 'onchange', 'onkeydown', 'onkeyup', 'onkeypress'], owners = [arguments[0], arguments[0].form];"
+				+ "for (var i = 0; i < owners.length; i++) {for (var j = 0; owners[i] && j < names.length; j++) {"
+				+ "if (owners[i][names[j]]) {return true;}}}"
+				+ "return false;", target));
+	}
+	
+	/**
+	 * Returns the coverage kind of a link with the given href.
+	 * 
+	 * @param HREF - the href of the link
+	 * @return LINK for pages bundled with the app else EXTERNAL_LINK
+	 */
+	private static CoverageTracker.Kind linkKind(String HREF) {
+		return HREF.startsWith("file://") ? CoverageTracker.Kind.LINK : CoverageTracker.Kind.EXTERNAL_LINK;
+	}
+	
+	/**
+	 * Returns the tracker holding the coverage of every kind of target.
+	 * 
+	 * @return the coverage tracker
+	 */
+	public CoverageTracker getCoverageTracker() {
+		return coverage;
+	}
+	
+	/**
+	 * Copies the latest coverage counts into the run statistics.
+	 */
+	private void publishCoverage() {
+		CoverageTracker.Snapshot snapshot = coverage.getSnapshot();
+		statistics.recordCoverage(snapshot.getTotalFound(), snapshot.getTotalExercised());
+	}
+	
+	/**
+	 * Returns the statistics of the test run on this driver. Readers on other 
+	 * threads should use its snapshots rather than the driver's own getters.
+	 * 
+	 * @return the run statistics
+	 */
+	public RunStatistics getStatistics() {
+		return statistics;
+	}
+	
+	/**
+	 * Returns the watchdog that the testing thread runs device commands through, so
+	 * that a stalled device can't hang it.
+	 * 
+	 * @return the device watchdog
+	 */
+	public DeviceWatchdog getWatchdog() {
+		return watchdog;
+	}
+	
+	/**
+	 * Abandons the current session and starts a new one with the same capabilities, 
+	 * relaunching the app. This is the last resort when the device stops answering
+	 * even the cheapest recovery. 
+	 * 
+	 * The old session is quit under the recovery deadline and the new one is started
+	 * under the session deadline, so a dead device can't hang the reset either.
+	 * 
+	 * @throws org.openqa.selenium.WebDriverException if the new session couldn't be started
+	 */
+	public void resetSession() {
+		SelendroidDriver oldDriver = driver;
+		if (oldDriver != null) {
+			try {watchdog.call("quit", DeviceWatchdog.recoveryDeadlineMillis, () -> {oldDriver.quit(); return null;});}
+			catch (org.openqa.selenium.WebDriverException e) {System.out.println("Could not quit the old session: " + e.getMessage());}
+		}
+		driver = watchdog.call("newSession", DeviceWatchdog.sessionDeadlineMillis, () -> new SelendroidDriver(caps));
+		statistics.recordSessionReset();
+		switchToWebView();
+	}
+	
+	/**
+	 * Adds the given link to the links found, if it wasn't found before.
+	 * 
+	 * @param HREF - the href of the link
+	 */
+	public void setLinkAsFound(String HREF) {
+		if (HREF == null) {return;}
+		if (coverage.found(CoverageTracker.targetId(HREF), linkKind(HREF))) {
+			linksFoundInOrder.add(HREF);
+			hrefPatterns.learn(HREF);
 		}
 	}
 	
+	/**
+	 * Returns the href patterns learned from the links found so far.
+	 * 
+	 * @return the href patterns
+	 */
+	public HrefPatterns getHrefPatterns() {
+		return hrefPatterns;
+	}
+	
+	/**
+	 * Returns the number of distinct href patterns among the given links.
+	 * 
+	 * @param links - the links to count the patterns of
+	 * @return the number of distinct patterns
+	 */
+	private int countPatterns(List<String> links) {
+		HashSet<String> patterns = new HashSet<>();
+		for (String link : links) {patterns.add(hrefPatterns.patternOf(link));}
+		return patterns.size();
+	}
+	
+	/**Returns the number of distinct href patterns among the links found during the test */
+	public int getPatternsFound() {
+		return countPatterns(linksFoundInOrder);
+	}
+	
+	/**Returns the number of distinct href patterns among the links clicked during the test */
+	public int getPatternsClicked() {
+		return countPatterns(linksClickedInOrder);
+	}
+	
+	/**
+	 * Returns the coverage of the test by href pattern rather than by individual link.
+	 * 
+	 * @return the fraction of patterns found that had at least one link clicked
+	 */
+	public float getPatternCoverage() {
+		int patternsFound = getPatternsFound();
+		return patternsFound == 0 ? 0 : (float) getPatternsClicked() / (float) patternsFound;
+	}
+	
+	/**
+	 * Returns the links found after the first given number of them, in the order they were found.
+	 * 
+	 * @param index - the number of links found to skip
+	 * @return the links found since then
+	 */
+	public List<String> getLinksFoundSince(int index) {
+		return linksFoundInOrder.subList(index, linksFoundInOrder.size());
+	}
+	
+	/**
+	 * Returns the links clicked after the first given number of them, in the order they were clicked.
+	 * 
+	 * @param index - the number of links clicked to skip
+	 * @return the links clicked since then
+	 */
+	public List<String> getLinksClickedSince(int index) {
+		return linksClickedInOrder.subList(index, linksClickedInOrder.size());
+	}
+	
 	/**Returns the number of links clicked during the test */
 	public int getLinksClicked() {
-		return linksClicked;
+		CoverageTracker.Snapshot snapshot = coverage.getSnapshot();
+		// counted from 1, as it always has been, so the coverage of a fresh test isn't 0/0
+		return 1 + snapshot.getExercised(CoverageTracker.Kind.LINK) + snapshot.getExercised(CoverageTracker.Kind.EXTERNAL_LINK);
 	}
 	
 	/**Returns the number of links found during the test */
 	public int getLinksFound() {
-		return linksFound;
+		CoverageTracker.Snapshot snapshot = coverage.getSnapshot();
+		return 1 + snapshot.getFound(CoverageTracker.Kind.LINK) + snapshot.getFound(CoverageTracker.Kind.EXTERNAL_LINK);
 	}
 	/**
 	 * Extracts the names of all elements in the WebView and returns them
@@ -216,7 +517,18 @@ public class SelendroidServerDriver {
 	 * @return number of pages visited, if any
 	 */
 	public int getPagesVisited() {
-	    return pagesClicked.size();
+		CoverageTracker.Snapshot snapshot = coverage.getSnapshot();
+	    return snapshot.getExercised(CoverageTracker.Kind.LINK) + snapshot.getExercised(CoverageTracker.Kind.EXTERNAL_LINK);
+	}
+
+	/**
+	 * Returns the number of pages visited inside the application,
+	 * leaving out external links.
+	 * 
+	 * @return number of local pages visited, if any
+	 */
+	public int getLocalPagesVisited() {
+	    return coverage.getSnapshot().getExercised(CoverageTracker.Kind.LINK);
 	}
 
 	/**
@@ -227,9 +539,94 @@ public class SelendroidServerDriver {
 	 * @return the coverage percentage of the test as a float
 	 */
 	public float getCoverage() {
-		return (float)linksClicked / (float)linksFound;
+		CoverageTracker.Snapshot snapshot = coverage.getSnapshot();
+		int linksClicked = 1 + snapshot.getExercised(CoverageTracker.Kind.LINK) + snapshot.getExercised(CoverageTracker.Kind.EXTERNAL_LINK);
+		int linksFound = 1 + snapshot.getFound(CoverageTracker.Kind.LINK) + snapshot.getFound(CoverageTracker.Kind.EXTERNAL_LINK);
+		return (float) linksClicked / (float) linksFound;
+	}
+	
+	/**
+	 * Returns the coverage of every kind of target.
+	 * Coverage percentage is represented as a floating point value
+	 * equivalent to the equation (targets exercised / targets found),
+	 * counting links, external links, and inputs.
+	 *  
+	 * @return the target coverage percentage of the test as a float
+	 */
+	public float getTargetCoverage() {
+		return coverage.getSnapshot().getTargetCoverage();
 	}
 	
+	/**
+	 * Returns the URL of the page currently shown in the WebView.
+	 * 
+	 * @return the URL including any query and hash
+	 */
+	public String getCurrentUrl() {
+		return (String) driver.executeScript("return window.location.href;");
+	}
+	
+	/**
+	 * Loads the given URL in the WebView directly by setting window.location, 
+	 * including its query and hash so that the page's recorded state is restored.
+	 * 
+	 * @param url - the URL to load
+	 */
+	public void navigateTo(String url) {
+		driver.executeScript("window.location.href = arguments[0];", url);
+	}
+	
+	/**
+	 * Captures the web storage of the current page together with its URL, in one
+	 * script call: every localStorage and sessionStorage entry and every cookie the
+	 * page can see.
+	 *
+	 * @return the snapshot as a JSON string, to be handed to restoreWebStorage
+	 */
+	public String snapshotWebStorage() {
+		return (String) driver.executeScript(
+				"function entries(storage) {var values = {};"
+				+ "for (var i = 0; i < storage.length; i++) {values[storage.key(i)] = storage.getItem(storage.key(i));}"
+				+ "return values;}"
+				+ "return JSON.stringify({url: window.location.href, local: entries(window.localStorage),"
+				+ "session: entries(window.sessionStorage), cookies: document.cookie});");
+	}
+
+	/**
+	 * Puts back the web storage captured by snapshotWebStorage and loads the URL it
+	 * was taken on, all in one script call. Storage and cookies added since are
+	 * removed, so the page starts from the captured state. The page is reloaded if
+	 * only the hash of its URL differs, so none of its in-memory state survives, but
+	 * it is left as it is if already on the exact URL, where only storage differs.
+	 * Loading the URL replaces the current WebView history entry, so afterwards going
+	 * back no longer retraces the path that led to the page.
+	 *
+	 * Note: HttpOnly cookies are invisible to scripts, so they are neither captured nor restored.
+	 *
+	 * @param snapshot - a snapshot taken by snapshotWebStorage
+	 * @return true if the URL was loaded, rewriting the WebView history, else false
+	 */
+	public boolean restoreWebStorage(String snapshot) {
+		return Boolean.TRUE.equals(driver.executeScript(
+				"var snapshot = JSON.parse(arguments[0]);"
+				+ "function restore(storage, values) {storage.clear();"
+				+ "for (var key in values) {storage.setItem(key, values[key]);}}"
+				+ "restore(window.localStorage, snapshot.local);"
+				+ "restore(window.sessionStorage, snapshot.session);"
+				+ "var cookies = document.cookie ? document.cookie.split('; ') : [];"
+				+ "for (var i = 0; i < cookies.length; i++) {"
+				+ "var name = cookies[i].split('=')[0];"
+				+ "document.cookie = name + '=; expires=Thu, 01 Jan 1970 00:00:00 GMT';"
+				+ "document.cookie = name + '=; expires=Thu, 01 Jan 1970 00:00:00 GMT; path=/';}"
+				+ "var saved = snapshot.cookies ? snapshot.cookies.split('; ') : [];"
+				+ "for (var i = 0; i < saved.length; i++) {document.cookie = saved[i] + '; path=/';}"
+				+ "if (window.location.href == snapshot.url) {return false;}"
+				+ "var sameDocument = window.location.href.split('#')[0] == snapshot.url.split('#')[0];"
+				+ "window.location.replace(snapshot.url);"
+				+ "if (sameDocument) {window.location.reload();}"
+				+ "return true;", snapshot));
+	}
+
 	/**
 	 * Forces the driver to switch to the WebView context
 	 * 
@@ -271,6 +668,58 @@ public class SelendroidServerDriver {
 		driver.resumeApp();
 	}
 
+	/**
+	 * Finds out whether the app is in the foreground, which context the driver is in
+	 * and which page the WebView shows, with at most two cheap calls and without 
+	 * changing anything. 
+	 * 
+	 * The page reports itself hidden through the Page Visibility API when its activity
+	 * is paused. Focus is not used: a WebView loses it to the soft keyboard, a dialog
+	 * or a native view of the app itself, none of which need recovering from.
+	 * 
+	 * @return the state the app was found in
+	 */
+	public AppState probeAppState() {
+		String context;
+		try {context = driver.getWindowHandle();}
+		catch (org.openqa.selenium.WebDriverException e) {return new AppState(AppState.Status.UNREACHABLE, null, null);}
+		if (context == null || !context.startsWith("WEBVIEW")) {return new AppState(AppState.Status.NATIVE_CONTEXT, context, null);}
+		Object probe;
+		try {probe = driver.executeScript("return [window.location.href, document.hidden === true];");}
+		catch (org.openqa.selenium.WebDriverException e) {return new AppState(AppState.Status.UNREACHABLE, context, null);}
+		if (!(probe instanceof List) || ((List<?>) probe).size() != 2) {return new AppState(AppState.Status.UNREACHABLE, context, null);}
+		List<?> values = (List<?>) probe;
+		String url = String.valueOf(values.get(0));
+		if (Boolean.TRUE.equals(values.get(1))) {return new AppState(AppState.Status.BACKGROUND, context, url);}
+		if (!url.startsWith("file://")) {return new AppState(AppState.Status.EXTERNAL_PAGE, context, url);}
+		return new AppState(AppState.Status.FOREGROUND, context, url);
+	}
+	
+	/**
+	 * Brings the app back to a testable state with the cheapest step that will do, 
+	 * according to a foreground probe: nothing if it is fine, a context switch, a 
+	 * WebView back, or as a last resort sending it to the background and resuming it.
+	 * 
+	 * @return the state the app was found in before recovering
+	 */
+	public AppState restoreForeground() {
+		AppState state = probeAppState();
+		switch (state.getStatus()) {
+			case FOREGROUND:
+				break;
+			case NATIVE_CONTEXT:
+				switchToWebView();
+				break;
+			case EXTERNAL_PAGE:
+				webviewBack();
+				break;
+			default:
+				resumeApp();
+				switchToWebView();
+		}
+		return state;
+	}
+	
 	/**
 	 * Hides the application by sending it to the background. 
 	 */
@@ -304,6 +753,46 @@ public class SelendroidServerDriver {
 		driver.executeScript("arguments[0].scrollIntoView(true);", target);
 	}
 	
+	/**
+	 * Clicks the given target with navigation away from the app intercepted, and 
+	 * returns where the app tried to go instead of going there.
+	 * 
+	 * On the first call on a page, a capturing click listener is installed that cancels
+	 * the default navigation of any anchor whose URL is not a local page, and window.open
+	 * is replaced with a function that does the same for any URL that is not local. The 
+	 * target is then clicked, so the page's own handlers still run, and the URLs caught
+	 * are returned. This all happens in one script call, without leaving the WebView. 
+	 * Navigation done by assigning window.location directly cannot be intercepted.
+	 * 
+	 * @param target - the target to click
+	 * @return the external URLs the click tried to open, in order
+	 */
+	public List<String> interceptExternalLink(WebElement target) {
+		Object intercepted = driver.executeScript(
+				"if (!window.interceptedExternalLinks) {"
+				+ "window.interceptedExternalLinks = [];"
+				+ "var resolve = function(url) {var anchor = document.createElement('a'); anchor.href = url; return anchor.href;};"
+				+ "var isExternal = function(url) {return !!url && !/^(file|javascript):/i.test(url);};"
+				+ "document.addEventListener('click', function(event) {"
+				+ "for (var node = event.target; node; node = node.parentNode) {"
+				+ "if (node.tagName && node.tagName.toLowerCase() == 'a') {"
+				+ "if (isExternal(node.href)) {event.preventDefault(); window.interceptedExternalLinks.push(node.href);}"
+				+ "return;}}}, true);"
+				+ "var open = window.open;"
+				+ "window.open = function(url) {"
+				+ "if (url && isExternal(resolve(url))) {window.interceptedExternalLinks.push(resolve(url)); return null;}"
+				+ "return open.apply(window, arguments);};}"
+				+ "arguments[0].click();"
+				+ "var links = window.interceptedExternalLinks;"
+				+ "window.interceptedExternalLinks = [];"
+				+ "return links;", target);
+		ArrayList<String> links = new ArrayList<>();
+		if (intercepted instanceof List) {
+			for (Object link : (List<?>) intercepted) {links.add(String.valueOf(link));}
+		}
+		return links;
+	}
+	
 	/**
 	 * Interacts with the given target by simulating a click in JavaScript.
 	 * 
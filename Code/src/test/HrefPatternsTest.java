@@ -0,0 +1,60 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import serverDriver.HrefPatterns;
+
+/**
+ * Checks the patterns HrefPatterns collapses hrefs into, without a device.
+ */
+public class HrefPatternsTest {
+	private int defaultLearningThreshold;
+	private HrefPatterns patterns;
+
+	@Before
+	public void setup() {
+		defaultLearningThreshold = HrefPatterns.learningThreshold;
+		HrefPatterns.learningThreshold = 3;
+		patterns = new HrefPatterns();
+	}
+
+	@After
+	public void teardown() {
+		HrefPatterns.learningThreshold = defaultLearningThreshold;
+	}
+
+	@Test
+	public void testIdsAndQueryValuesArePlaceholders() {
+		assertEquals("file:///app/detail.html?id={v}", patterns.patternOf("file:///app/detail.html?id=17"));
+		assertEquals("file:///app/user/{n}/edit.html", patterns.patternOf("file:///app/user/42/edit.html"));
+		assertEquals("file:///app/item/{uuid}", patterns.patternOf("file:///app/item/123e4567-e89b-12d3-a456-426614174000"));
+		assertEquals("tel:{v}", patterns.patternOf("tel:5551234"));
+		assertEquals(patterns.patternOf("file:///app/list.html#page2"), patterns.patternOf("file:///app/list.html#page3"));
+	}
+
+	@Test
+	public void testSegmentsBecomeWildcardsOnceLearned() {
+		String[] names = {"ada", "grace", "alan", "edsger"};
+		for (int i=0; i<HrefPatterns.learningThreshold; i++) {patterns.learn("file:///app/people/" + names[i] + ".html");}
+		assertEquals("file:///app/people/ada.html", patterns.patternOf("file:///app/people/ada.html"));
+		patterns.learn("file:///app/people/" + names[HrefPatterns.learningThreshold] + ".html");
+		assertEquals("file:///app/people/{*}", patterns.patternOf("file:///app/people/ada.html"));
+		assertEquals("file:///app/other.html", patterns.patternOf("file:///app/other.html"));
+	}
+
+	@Test
+	public void testRepeatedSegmentsAreNotLearned() {
+		for (int i=0; i<10; i++) {patterns.learn("file:///app/people/ada.html?tab=" + i);}
+		assertEquals("file:///app/people/ada.html?tab={v}", patterns.patternOf("file:///app/people/ada.html?tab=1"));
+	}
+
+	@Test
+	public void testNullHref() {
+		patterns.learn(null);
+		assertEquals("", patterns.patternOf(null));
+	}
+}
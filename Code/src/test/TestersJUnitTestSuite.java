@@ -15,10 +15,15 @@ import org.junit.Test;
 import logger.LogFileGenerator;
 import serverDriver.SelendroidServerDriver;
 import testers.AutomatedTester;
+import testers.BanditTester;
 import testers.BreadthFirstTester;
 import testers.DepthFirstTester;
+import testers.EvolutionaryTester;
+import testers.HybridTester;
 import testers.LogReplayTester;
+import testers.PriorityTester;
 import testers.RandomTester;
+import testers.Tester;
 
 
 /**
@@ -139,6 +144,72 @@ public class TestersJUnitTestSuite {
     	sleep(500);
 	}
 	
+	/**
+	 * Runs the given tester until the minimum test cases have been completed and the minimum
+	 * coverage reached, checking that both were, then closes its log file. 
+	 * 
+	 * @param tester - the tester to run
+	 * @param logFileGenerator - the log file generator the tester logs to
+	 */
+	private void runUntilCovered(Tester tester, LogFileGenerator logFileGenerator) {
+		AutomatedTester automatedTester = new AutomatedTester(driver, tester);
+        automatedTester.setTester(tester);
+        //Loop through the desired amount of test cases, stopping after a pre-determined coverage has been reached
+        while(driver.getCoverage() < testCoverage || testCases > testComplete) {
+        	sleep(500);
+            automatedTester.singleTest();
+            testComplete += 1;
+        }
+        assertTrue(driver.getCoverage() >= testCoverage);
+        assertTrue(testCases <= testComplete);
+        System.out.printf("Test Cases Completed: %d \nTest Coverage: %.2f", testComplete, driver.getCoverage());
+    	logFileGenerator.close();
+    	sleep(500);
+	}
+	
+	/**
+	 * Test a priority-ordered path through the application, checking if the tester is 
+	 * behaving properly. If the tester returns an error than it is fundamentally broken
+	 */
+	@Test
+	public void testPriorityTester() {
+		String directoryPath = "";
+		LogFileGenerator logFileGenerator = new LogFileGenerator(directoryPath);
+		runUntilCovered(new PriorityTester(logFileGenerator, testInput, driver), logFileGenerator);
+	}	
+	
+	/**
+	 * Test a reward-guided path through the application, checking if the tester is 
+	 * behaving properly. If the tester returns an error than it is fundamentally broken
+	 */
+	@Test
+	public void testBanditTester() {
+		String directoryPath = "";
+		LogFileGenerator logFileGenerator = new LogFileGenerator(directoryPath);
+		runUntilCovered(new BanditTester(logFileGenerator, testInput, driver), logFileGenerator);
+	}	
+	
+	/**
+	 * Test a evolved path through the application, checking if the tester is 
+	 * behaving properly. If the tester returns an error than it is fundamentally broken
+	 */
+	@Test
+	public void testEvolutionaryTester() {
+		String directoryPath = "";
+		LogFileGenerator logFileGenerator = new LogFileGenerator(directoryPath);
+		runUntilCovered(new EvolutionaryTester(logFileGenerator, testInput, driver), logFileGenerator);
+	}	
+	
+	/**
+	 * Test a path through the application that switches between strategies, checking if the tester is 
+	 * behaving properly. If the tester returns an error than it is fundamentally broken
+	 */
+	@Test
+	public void testHybridTester() {
+		String directoryPath = "";
+		LogFileGenerator logFileGenerator = new LogFileGenerator(directoryPath);
+		runUntilCovered(new HybridTester(logFileGenerator, testInput, driver), logFileGenerator);
+	}	
 	
 	/**
 	 * Performs a randomTest and then runs the recorded log-file again.  It is assumed this input would throw an error if the log
@@ -1,5 +1,10 @@
 package testers;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+
+import serverDriver.DeviceWatchdog;
 import serverDriver.SelendroidServerDriver;
 
 /** 
@@ -12,6 +17,8 @@ public class AutomatedTester {
 	private TestingThread testingThread;
 	private Tester tester;
 	private int waitTime;
+	private CheckpointJournal checkpointJournal = null;
+	private RecoveryEngine recovery;
 	
 	
 	/**
@@ -24,13 +31,14 @@ public class AutomatedTester {
         this.serverDriver = serverDriver;
         this.waitTime = (int) SelendroidServerDriver.defaultWaitTimeSeconds*1000;
 		this.tester = tester;
+		this.recovery = new RecoveryEngine(serverDriver);
 	}
 
 	/**
 	 * Starts the testing thread.
 	 */
 	public void startTesting() {
-		testingThread = new TestingThread(serverDriver, waitTime, tester);
+		testingThread = new TestingThread(serverDriver, waitTime, tester, recovery);
 	}
 
 	/**
@@ -49,25 +57,62 @@ public class AutomatedTester {
 	/**
 	 * Performs a single test upon the current page.
 	 * 
+	 * The extraction and the test each run through the driver's watchdog under
+	 * their own deadline, so a stalled device makes the step fail instead of hanging 
+	 * the testing thread. The extraction is skipped if recovery has just extracted the
+	 * page's targets. A step that outlives its deadline keeps running on the abandoned
+	 * worker until its driver call returns, so recovery and the next step first wait
+	 * for it to finish rather than touch the tester alongside it, and an abandoned step
+	 * records its action as failed once it does finish. If it is still running after
+	 * the wait, only the session is replaced. A failed step is handed to the recovery
+	 * engine, while a step cancelled by interrupting the testing thread is counted as
+	 * failed without recovery.
+	 * 
+	 * The deadline is per step rather than per driver command: the commands of a step
+	 * share one session and one tester, so giving up on a single command would leave
+	 * the step half done all the same, and a step's few commands run back to back so
+	 * the step deadline bounds each of them.
+	 * 
 	 * @param serverDriver - an instance of SelendroidServerDriver on the APK to be tested
 	 * @param waitTime - the time to wait in milliseconds as a long
 	 * @param tester - an instance of Tester representing the type of tester to be used (see the help guide for testing types)
-	 * @return boolean whether or not there are possible targets left to be tested
+	 * @param recovery - the recovery engine to recover from failed steps with
+	 * @return boolean whether or not there are possible targets left to be tested, false as well if recovery failed
 	 */
-	static boolean singleTest(SelendroidServerDriver serverDriver, int waitTime, Tester tester) {
+	static boolean singleTest(SelendroidServerDriver serverDriver, int waitTime, Tester tester, RecoveryEngine recovery) {
 	    boolean unfinished = true;
+	    DeviceWatchdog watchdog = serverDriver.getWatchdog();
         // Extract and execute inputs
 		try {
-			serverDriver.extractElements();
-			unfinished = tester.test(serverDriver.possibleTargets);
+			if (!watchdog.awaitAbandoned(DeviceWatchdog.recoveryDeadlineMillis)) {
+				System.out.println("The previous step is still running...");
+				unfinished = recovery.recoverFromRunawayStep();
+			} else {
+				if (!recovery.takeExtractedTargets()) {
+					watchdog.call("extractElements", DeviceWatchdog.extractDeadlineMillis, serverDriver::extractElements);
+				}
+				unfinished = watchdog.call("test", DeviceWatchdog.actionDeadlineMillis, () -> {
+					tester.observePage(serverDriver.possibleTargets);
+					boolean testsLeft = tester.test(serverDriver.possibleTargets);
+					if (watchdog.isAbandoned()) {tester.recordActionFailure();}
+					return testsLeft;
+				});
+				tester.checkpointIfDue();
+				recovery.recordSuccess();
+			}
+		} catch (CancellationException e) {
+			System.out.println("Test step cancelled...");
+			serverDriver.getStatistics().recordException();
         } catch (org.openqa.selenium.WebDriverException e) {
-            System.out.println("WebDriverException caught...");
-            serverDriver.resumeApp();
+            System.out.println("WebDriverException caught: " + e.getClass().getSimpleName());
+            serverDriver.getStatistics().recordException();
+            unfinished = recovery.recover(e);
         } catch (Exception e) {
-			//Returns us to the application
             e.printStackTrace();
-			serverDriver.resumeApp();
+            serverDriver.getStatistics().recordException();
+			unfinished = recovery.recover(e);
 		}
+		serverDriver.getStatistics().recordStep();
 
 		// Wait to allow input to be carried out.
 		// TODO: use our own sleep method? 
@@ -82,13 +127,21 @@ public class AutomatedTester {
 	 * fields of the AutomatedTester instance are used by default. 
 	 */
 	public void singleTest() {
-	    singleTest(this.serverDriver, this.waitTime, this.tester);
+	    singleTest(this.serverDriver, this.waitTime, this.tester, this.recovery);
     }
 
 	/**
 	 * Stops the testing thread.
 	 */
 	public void stopTesting() {testingThread.stopThread();}
+
+	/**
+	 * Returns true while the testing thread is still running, which it keeps doing
+	 * after being stopped until its step in flight and final checkpoint are done.
+	 * 
+	 * @return true if the testing thread is running else false
+	 */
+	public boolean isTesting() {return testingThread != null && testingThread.isAlive();}
 	
 	/**
 	 * Pauses the testing thread.
@@ -112,7 +165,45 @@ public class AutomatedTester {
 	 */
 	public void setWaitTime(int interval) {this.waitTime = interval;}
 	
-	public void setTester(Tester newTester) {this.tester = newTester;}
+	/**
+	 * Sets whether clicks on external links are intercepted inside the WebView, with the
+	 * URLs they would have opened recorded, instead of being followed out of the app and
+	 * back. This is off by default, so that runs and replayed logs behave as they always
+	 * have unless it is asked for.
+	 * 
+	 * @param intercept - true to intercept external links, false to follow them
+	 */
+	public void setInterceptExternalLinks(boolean intercept) {Tester.interceptExternalLinks = intercept;}
+	
+	/**
+	 * Sets the tester to be used from now on. The new tester carries on from the 
+	 * state graph and visited pages of the previous one.
+	 * 
+	 * @param newTester - the tester to use
+	 */
+	public void setTester(Tester newTester) {
+		if (tester != null && tester != newTester) {newTester.adoptStateFrom(tester);}
+		newTester.setCheckpointJournal(checkpointJournal);
+		this.tester = newTester;
+	}
+	
+	/**
+	 * Makes the tester checkpoint its exploration state to the given journal file 
+	 * periodically, so that a crashed run can be resumed from it. This must not be
+	 * called while testing, since the testing thread uses the tester's state.
+	 * 
+	 * @param journalFile - the file to append checkpoints to
+	 * @param resume - if true, the state in the file is restored into the tester first
+	 * @return the number of checkpoints restored
+	 * @throws IOException if the journal file could not be read
+	 */
+	public int enableCheckpoints(File journalFile, boolean resume) throws IOException {
+		if (checkpointJournal != null) {checkpointJournal.close();}
+		checkpointJournal = new CheckpointJournal(journalFile);
+		int restored = resume ? checkpointJournal.replayInto(tester) : 0;
+		tester.setCheckpointJournal(checkpointJournal);
+		return restored;
+	}
 	
 	public Tester getTester() {return this.tester;}
 }
@@ -126,9 +217,10 @@ public class AutomatedTester {
 class TestingThread implements Runnable{
 	SelendroidServerDriver serverDriver;
 	private Tester tester;
+	private RecoveryEngine recovery;
 	private Thread thrd;
-	private boolean suspended;
-	private boolean stopped;
+	private volatile boolean suspended;
+	private volatile boolean stopped;
 	private boolean unfinished;
 	private int waitTime;
 	
@@ -140,10 +232,12 @@ class TestingThread implements Runnable{
 	 * @param serverDriver - an instance of SelendroidServerDriver on the APK being tested
 	 * @param waitTime - the wait time to be used in milliseconds as an int
 	 * @param tester - a Tester instance representing the type of tester to be used (see the help guide for testing types)
+	 * @param recovery - the recovery engine to recover from failed steps with
 	 */
-	TestingThread(SelendroidServerDriver serverDriver, int waitTime, Tester tester) {
+	TestingThread(SelendroidServerDriver serverDriver, int waitTime, Tester tester, RecoveryEngine recovery) {
 		this.thrd = new Thread(this);
 		this.tester = tester;
+		this.recovery = recovery;
 		this.serverDriver = serverDriver;
 		this.waitTime = waitTime;
 		this.suspended = false;
@@ -162,13 +256,15 @@ class TestingThread implements Runnable{
         while (!stopped) {
             
         	while (!suspended && !stopped) {
-                unfinished = AutomatedTester.singleTest(serverDriver, waitTime, tester);
+                unfinished = AutomatedTester.singleTest(serverDriver, waitTime, tester, recovery);
                 AutomatedTester.sleep(300);
                 if (!unfinished) {stopThread();}
             }
             while (suspended) {AutomatedTester.sleep(300);}// Sleep while we're paused    
         }
         
+        if (serverDriver.getWatchdog().awaitAbandoned(DeviceWatchdog.actionDeadlineMillis)) {tester.checkpointNow();}
+        else {System.out.println("Skipping the final checkpoint, the last step is still running...");}
         thrd.interrupt();
         System.out.println("Testing thread stopped.");
 	}
@@ -176,16 +272,27 @@ class TestingThread implements Runnable{
 	/**
 	 * Sets a flag indicating to the thread that it should stop. 
 	 * 
-	 * Note: the thread may only stop after it has completed the most-
-	 * recently sent test command. 
+	 * Note: the step in flight, if any, is allowed to finish first, which
+	 * its deadlines bound even if the device has stalled.
 	 */
-	void stopThread(){stopped = true;}
+	void stopThread(){
+		stopped = true;
+	}
+	
+	/**
+	 * Returns true until the thread has finished running.
+	 * 
+	 * @return true if the thread is running else false
+	 */
+	boolean isAlive() {
+		return thrd.isAlive();
+	}
 	
 	/**
 	 * Sets a flag indicating to the thread that it should suspend. 
 	 * 
-	 * Note: the thread may only enter suspension after it has 
-	 * completed the most-recently sent test command. 
+	 * Note: the step in flight, if any, is allowed to finish first, which
+	 * its deadlines bound even if the device has stalled.
 	 */
 	void pauseThread(){
 		suspended = true;
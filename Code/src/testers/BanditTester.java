@@ -0,0 +1,171 @@
+package testers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+import org.openqa.selenium.WebElement;
+
+import logger.LogFileGenerator;
+import serverDriver.SelendroidServerDriver;
+
+/**
+ * BanditTester is an extension of RandomTester which chooses targets with the
+ * UCB1 multi-armed bandit algorithm instead of uniformly at random.
+ *
+ * Every target on every page is an arm. An action is rewarded when it leads to a
+ * page that was never seen before or to newly found targets, so the tester learns
+ * which targets are worth taking again while still trying each target at least once.
+ * Statistics are kept for at most maxTrackedPages pages, dropping the least recently
+ * used ones, so memory stays bounded on very large apps.
+ */
+public class BanditTester extends RandomTester {
+	static double explorationWeight = 1.0;
+	static double newTargetReward = 0.1;
+	static int maxTrackedPages = 5000;
+
+	/**
+	 * The pull counts and total rewards of the targets on one page.
+	 */
+	static final class PageArms {
+		final int[] pulls;
+		final double[] rewards;
+		int totalPulls = 0;
+
+		PageArms(int targetCount) {
+			this.pulls = new int[targetCount];
+			this.rewards = new double[targetCount];
+		}
+
+		/**
+		 * Returns a random target that was never taken on this page, or -1 if all were.
+		 *
+		 * @return the index of an untried target or -1
+		 */
+		int chooseUntried() {
+			int untried = 0;
+			for (int count : pulls) {if (count == 0) {untried++;}}
+			if (untried == 0) {return -1;}
+			int choice = (int)(untried*Math.random());
+			for (int i=0; i<pulls.length; i++) {
+				if (pulls[i] == 0 && choice-- == 0) {return i;}
+			}
+			return -1;
+		}
+
+		/**
+		 * Returns the target with the highest UCB1 score on this page, leaving out the
+		 * excluded ones. Every target must have been tried at least once.
+		 *
+		 * @param excluded - tells whether a target should be left out
+		 * @return the index of the best target, or 0 if all were left out
+		 */
+		int chooseBest(IntPredicate excluded) {
+			int best = 0;
+			double bestScore = Double.NEGATIVE_INFINITY;
+			double logTotal = Math.log(totalPulls);
+			for (int i=0; i<pulls.length; i++) {
+				if (excluded.test(i)) {continue;}
+				double score = rewards[i] / pulls[i] + explorationWeight * Math.sqrt(2 * logTotal / pulls[i]);
+				if (score > bestScore) {
+					bestScore = score;
+					best = i;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Records that the given target was taken.
+		 *
+		 * @param target - the index of the target
+		 */
+		void pull(int target) {
+			pulls[target]++;
+			totalPulls++;
+		}
+	}
+
+	private LinkedHashMap<Long, PageArms> armsByPage = new LinkedHashMap<Long, PageArms>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, PageArms> eldest) {return size() > maxTrackedPages;}
+	};
+	private PageArms pendingArms = null;
+	private int pendingTarget;
+	private int pagesBeforeAction;
+	private int targetsBeforeAction;
+	private double totalReward = 0;
+
+	/**
+	 * Creates an instance of BanditTester with the given log file generator
+	 * instance, strings to be tested with, and Selendroid server driver instance.
+	 *
+	 * @param logFile - an instance of the LogFileGenerator
+	 * @param testStrings - the strings to be used during testing
+	 * @param driver - an instance of SelendroidServerDriver on the APK being tested
+	 */
+	public BanditTester(LogFileGenerator logFile, ArrayList<String> testStrings, SelendroidServerDriver driver) {
+		super(logFile, testStrings, driver);
+	}
+
+	/* (non-Javadoc)
+	 * Note: the reward of the previous action is only known once the page it led to is
+	 * shown, so it is credited here first. Untried targets are then taken first, in random
+	 * order, then the target with the highest upper confidence bound on its mean reward.
+	 * @see testers.RandomTester#chooseTargetIndex(java.util.ArrayList)
+	 */
+	int chooseTargetIndex(ArrayList<WebElement> possibleTargets) {
+		creditPendingReward();
+		long pageFingerprint = getPageFingerprint();
+		PageArms arms = armsByPage.get(pageFingerprint);
+		if (arms == null || arms.pulls.length != possibleTargets.size()) {
+			arms = new PageArms(possibleTargets.size());
+			armsByPage.put(pageFingerprint, arms);
+		}
+
+		int targetIndex = arms.chooseUntried();
+		if (targetIndex < 0) {targetIndex = arms.chooseBest(i -> isInertInput(pageFingerprint, i));}
+
+		arms.pull(targetIndex);
+		pendingArms = arms;
+		pendingTarget = targetIndex;
+		pagesBeforeAction = getStateGraph().getNodeCount();
+		targetsBeforeAction = getCoverageTracker().getTargetsFound();
+		return targetIndex;
+	}
+
+	/* (non-Javadoc)
+	 * Note: the previous action is credited now, so the escape's outcome isn't credited to it.
+	 * @see testers.RandomTester#beforeCycleEscape()
+	 */
+	void beforeCycleEscape() {
+		creditPendingReward();
+	}
+
+	/* (non-Javadoc)
+	 * @see testers.Tester#copyStateFrom(testers.Tester)
+	 */
+	void copyStateFrom(Tester other) {
+		super.copyStateFrom(other);
+		pendingArms = null;
+		if (other instanceof BanditTester) {armsByPage = ((BanditTester) other).armsByPage;}
+	}
+
+	/**
+	 * Credits the reward of the previous action to the target it was taken on.
+	 * Reaching a page never seen before is worth 1, and each newly found target
+	 * is worth newTargetReward, up to a total of 1.
+	 */
+	private void creditPendingReward() {
+		if (pendingArms == null) {return;}
+		int newPages = getStateGraph().getNodeCount() - pagesBeforeAction;
+		int newTargets = getCoverageTracker().getTargetsFound() - targetsBeforeAction;
+		double reward = Math.min(1.0, newPages + newTargetReward * newTargets);
+		pendingArms.rewards[pendingTarget] += reward;
+		totalReward += reward;
+		pendingArms = null;
+		logComment(String.format("actionReward: %.2f,", reward));
+		logComment(String.format("totalReward: %.2f,", totalReward));
+	}
+}
@@ -33,26 +33,29 @@ public class BreadthFirstTester extends TreeInspiredTester {
      * as such it handles pages in a special way. It must make use of newFutureTargets.push(targetStringForBack)
      * rather than planActionForTarget(0) for pathFromStart to work. That convention will be standard for general 
      * applications however where the back button is not always target 0.
+     * 
+     * Each page's actions are saved for later behind a navigation marker, so the tester routes 
+     * from wherever it is to that page along the shortest known path instead of replaying from the start.
+     * After each target the tester returns to the page, restoring its web storage when branches are isolated.
      */
     void planNextMoves(ArrayList<WebElement> possibleTargets) {
     	
-        if (!wasFullyVisited(getPageHash())) {
+        if (!wasFullyVisited(getPageFingerprint())) {
         	
             if (isInput(possibleTargets.get(0))) {
-                planActionForTarget(handlePage(getPageHash(), possibleTargets));
+                planActionForTarget(handlePage(getPageFingerprint(), possibleTargets));
             } else {
-                addPathFromStart();
+                addNavigationToCurrentPage();
                 
-                while (!wasFullyVisited(getPageHash())) {
-                    int nextTarget = handlePage(getPageHash(), possibleTargets);
+                while (!wasFullyVisited(getPageFingerprint())) {
+                    int nextTarget = handlePage(getPageFingerprint(), possibleTargets);
                     planActionForTarget(nextTarget);
                     
                     if (!isExternalLink(possibleTargets.get(nextTarget))) {
-                        newFutureTargets.push(composeWebviewBackMessage());
+                        newFutureTargets.push(composeReturnToCurrentPageMessage());
                     }
                 }
                 
-                addPathToStart();
                 saveNewTargetsForLater();
             }
         }
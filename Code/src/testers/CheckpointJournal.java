@@ -0,0 +1,201 @@
+package testers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * CheckpointJournal is an append-only file of the changes a tester has made
+ * to its exploration state, so that a run can be resumed after the JVM or the
+ * device dies.
+ * 
+ * Changes are buffered and written out as one batch per checkpoint, followed 
+ * by a commit record, and the file is forced to disk. Every record carries a 
+ * CRC32. When a journal is replayed, only batches whose commit record was 
+ * read intact are applied, and anything after the last of them is cut off, 
+ * so a resumed run always continues from the last consistent checkpoint.
+ */
+public final class CheckpointJournal {
+    private static byte[] magic = {'H', 'A', 'T', 'J', 1};
+    public static String defaultExtension = ".checkpoint";
+
+    static final int commit = 0;
+    static final int graphNode = 1;
+    static final int graphEdge = 2;
+    static final int position = 3;
+    static final int linkFound = 4;
+    static final int linkClicked = 5;
+    static final int laterTargetsAdded = 6;
+    static final int laterTargetsPolled = 7;
+    static final int pathFromStartToPage = 8;
+    static final int plannedTargets = 9;
+    static final int href = 10;
+    static final int pageRecord = 11;
+    static final int similarPage = 12;
+    static final int inputFound = 13;
+    static final int inputExercised = 14;
+    static final int frontierAdded = 15;
+    static final int inertInput = 16;
+    static final int frontierRemoved = 17;
+
+    /**
+     * Writes the payload of one record.
+     */
+    interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private File file;
+    private FileOutputStream stream = null;
+    private ByteArrayOutputStream batch = new ByteArrayOutputStream();
+    private int recordsInBatch = 0;
+
+    /**
+     * Creates a journal backed by the given file. Nothing is written until the first checkpoint.
+     * 
+     * @param file - the journal file, which may already hold an earlier run's checkpoints
+     */
+    public CheckpointJournal(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {return file;}
+
+    /**
+     * Adds a record to the current batch.
+     * 
+     * @param type - the record type
+     * @param writer - writes the record's payload
+     */
+    void record(int type, RecordWriter writer) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(payload);
+            out.writeByte(type);
+            writer.write(out);
+            out.flush();
+            writeFrame(new DataOutputStream(batch), payload.toByteArray());
+            recordsInBatch++;
+        } catch (IOException e) {throw new java.io.UncheckedIOException(e);}
+    }
+
+    /**
+     * Writes a payload framed by its length and CRC32.
+     * 
+     * @param out - the stream to write to
+     * @param payload - the payload to write
+     */
+    private static void writeFrame(DataOutputStream out, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+        out.flush();
+    }
+
+    /**
+     * Asks the tester for its changes since the last checkpoint and appends them,
+     * followed by a commit record, to the journal file.
+     * 
+     * @param tester - the tester to checkpoint
+     */
+    void checkpoint(Tester tester) {
+        tester.writeCheckpoint(this);
+        if (recordsInBatch == 0) {return;}
+        record(commit, out -> out.writeLong(System.currentTimeMillis()));
+        try {
+            if (stream == null) {
+                boolean isNew = !file.exists() || file.length() == 0;
+                stream = new FileOutputStream(file, true);
+                if (isNew) {stream.write(magic);}
+            }
+            batch.writeTo(stream);
+            stream.flush();
+            stream.getChannel().force(false);
+        } catch (IOException e) {
+            System.out.println("Error: could not write checkpoint to " + file.getPath());
+        } finally {
+            batch.reset();
+            recordsInBatch = 0;
+        }
+    }
+
+    /**
+     * Replays every committed batch in the journal file into the given tester and
+     * cuts off whatever follows the last of them.
+     * 
+     * @param tester - the tester to restore
+     * @return the number of checkpoints restored
+     */
+    int replayInto(Tester tester) throws IOException {
+        if (!file.exists()) {return 0;}
+        int checkpoints = 0;
+        long committedLength = 0;
+        ArrayList<byte[]> pending = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] header = new byte[magic.length];
+            in.readFully(header);
+            if (!java.util.Arrays.equals(header, magic)) {throw new IOException("Not a checkpoint journal: " + file.getPath());}
+            long position = magic.length;
+            committedLength = position;
+            while (true) {
+                byte[] payload = readFrame(in);
+                if (payload == null) {break;}
+                position += 8 + payload.length;
+                if (payload[0] == commit) {
+                    for (byte[] record : pending) {
+                        DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(record));
+                        tester.restoreCheckpoint(recordIn.readUnsignedByte(), recordIn);
+                    }
+                    pending.clear();
+                    committedLength = position;
+                    checkpoints++;
+                } else {pending.add(payload);}
+            }
+        } catch (EOFException e) {
+            // The header itself was torn, so the file is started over.
+        }
+        try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {access.setLength(committedLength);}
+        if (checkpoints > 0) {tester.checkpointRestored();}
+        return checkpoints;
+    }
+
+    /**
+     * Reads one framed payload, checking its CRC32.
+     * 
+     * @param in - the stream to read from
+     * @return the payload, or null at the end of the file or at a torn or corrupt record
+     */
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int expectedCrc = in.readInt();
+            if (length <= 0 || length > (1 << 24)) {return null;}
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return (int) crc.getValue() == expectedCrc ? payload : null;
+        } catch (EOFException e) {return null;}
+    }
+
+    /**
+     * Closes the journal file.
+     */
+    public void close() {
+        try {if (stream != null) {stream.close();}}
+        catch (IOException e) {e.printStackTrace();}
+        stream = null;
+    }
+}
@@ -31,7 +31,7 @@ public class DepthFirstTester extends TreeInspiredTester {
 	 * @see testers.TreeInspiredTester#planNextMoves(java.util.ArrayList)
 	 */
 	void planNextMoves(ArrayList<WebElement> possibleTargets) {
-		planActionForTarget(handlePage(getPageHash(), possibleTargets));
-		newFutureTargets.push(composeWebviewBackMessage());
+		planActionForTarget(handlePage(getPageFingerprint(), possibleTargets));
+		newFutureTargets.push(composeReturnToCurrentPageMessage());
 	}
 }
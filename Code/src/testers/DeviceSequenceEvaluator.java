@@ -0,0 +1,113 @@
+package testers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.openqa.selenium.WebElement;
+
+import serverDriver.SelendroidServerDriver;
+
+/**
+ * DeviceSequenceEvaluator evaluates action sequences by running them on a pool of
+ * device sessions, one sequence per session at a time, so that a batch of candidates
+ * is spread over every emulator or device available.
+ *
+ * Each session first loads the URL of the sequence's starting page, so sequences can
+ * only start on local pages whose URL was recorded. Pages the shared state graph has
+ * never seen count as novel, and any exception thrown by an action ends the sequence.
+ * It counts as a crash unless the state graph already records that action failing
+ * on that page, since only failures not known yet are worth steering towards.
+ */
+public class DeviceSequenceEvaluator implements SequenceEvaluator {
+    private final BlockingQueue<SelendroidServerDriver> sessions;
+    private final int parallelism;
+    private final StateGraph graph;
+
+    /**
+     * Carries out action strings on one session without logging them.
+     */
+    private static final class SessionTester extends LoggingAwareTester {
+        SessionTester(SelendroidServerDriver driver) {super(driver, new ArrayList<>());}
+
+        boolean test(ArrayList<WebElement> possibleTargets) {return false;}
+    }
+
+    /**
+     * Creates an evaluator running sequences on the given sessions.
+     *
+     * @param sessions - the device sessions to run sequences on, none of which is used by a tester
+     * @param graph - the state graph of the tester, used to tell which pages are novel
+     */
+    public DeviceSequenceEvaluator(List<SelendroidServerDriver> sessions, StateGraph graph) {
+        this.sessions = new ArrayBlockingQueue<>(sessions.size(), false, sessions);
+        this.parallelism = sessions.size();
+        this.graph = graph;
+    }
+
+    /* (non-Javadoc)
+     * @see testers.SequenceEvaluator#evaluate(testers.StateGraph.Node, java.util.List)
+     */
+    @Override
+    public Result evaluate(StateGraph.Node start, List<String> sequence) throws InterruptedException {
+        SelendroidServerDriver session = sessions.take();
+        try {return run(session, start, sequence);}
+        finally {sessions.put(session);}
+    }
+
+    /**
+     * Runs the sequence on one session.
+     *
+     * @param session - the session to run the sequence on
+     * @param start - the page the sequence starts on
+     * @param sequence - the action strings to carry out in order
+     * @return what the sequence achieved
+     */
+    private Result run(SelendroidServerDriver session, StateGraph.Node start, List<String> sequence) {
+        if (start.getUrl() != null) {session.navigateTo(start.getUrl());}
+        SessionTester tester = new SessionTester(session);
+        HashSet<Long> visited = new HashSet<>();
+        int novelStates = 0;
+        int steps = 0;
+        long pageFingerprint = start.getFingerprint();
+        String action = null;
+        try {
+            for (String next : sequence) {
+                action = null;
+                session.extractElements();
+                pageFingerprint = Tester.fingerprint(session.extractPageSource());
+                if (visited.add(pageFingerprint) && graph.getNode(pageFingerprint) == null) {novelStates++;}
+                int targetIndex = tester.getTargetIndex(next);
+                if (targetIndex >= session.possibleTargets.size()) {break;}
+                steps++;
+                action = next;
+                tester.doAction(action, session.possibleTargets);
+            }
+            action = null;
+            pageFingerprint = Tester.fingerprint(session.extractPageSource());
+            if (visited.add(pageFingerprint) && graph.getNode(pageFingerprint) == null) {novelStates++;}
+        } catch (org.openqa.selenium.WebDriverException e) {
+            session.restoreForeground();
+            return new Result(visited.size(), novelStates, isKnownFailure(pageFingerprint, action) ? 0 : 1, steps);
+        }
+        return new Result(visited.size(), novelStates, 0, steps);
+    }
+
+    /**
+     * Checks whether the state graph already records the given action failing on the given page.
+     *
+     * @param pageFingerprint - the fingerprint of the page the action was taken on
+     * @param action - the action that failed, or null if the failure wasn't an action's
+     * @return true if the failure was known before else false
+     */
+    private boolean isKnownFailure(long pageFingerprint, String action) {
+        StateGraph.Node node = action == null ? null : graph.getNode(pageFingerprint);
+        StateGraph.Edge edge = node == null ? null : node.getEdge(action);
+        return edge != null && edge.getLastOutcome() == StateGraph.Outcome.FAILED;
+    }
+
+    @Override
+    public int getParallelism() {return parallelism;}
+}
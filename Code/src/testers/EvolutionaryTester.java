@@ -0,0 +1,318 @@
+package testers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openqa.selenium.WebElement;
+
+import logger.LogFileGenerator;
+import serverDriver.SelendroidServerDriver;
+
+/**
+ * EvolutionaryTester is an extension of LoggingTester which searches for action
+ * sequences that reach many pages, new pages and crashes, by evolving a population
+ * of sequences instead of walking at random.
+ *
+ * Sequences are lists of action strings as composed by LoggingAwareTester, starting
+ * from the current page. Each episode evolves the population for a few generations,
+ * evaluating each generation as one batch on a SequenceEvaluator, then carries out the
+ * fittest sequence on the device. Crossover only joins two sequences where they pass
+ * through the same page, and mutation regrows a sequence from one of its pages along
+ * the recorded state graph, so offspring stay executable. By default sequences are
+ * evaluated by simulating them on the state graph; a DeviceSequenceEvaluator runs
+ * them on spare device sessions instead.
+ */
+public class EvolutionaryTester extends LoggingTester {
+	static int populationSize = 16;
+	static int generationsPerEpisode = 5;
+	static int eliteCount = 2;
+	static int tournamentSize = 3;
+	static int maxSequenceLength = 8;
+	static double mutationRate = 0.3;
+	static double exploreRate = 0.2;
+	static double stateWeight = 1.0;
+	static double novelWeight = 2.0;
+	static double crashWeight = 5.0;
+	static double lengthWeight = 0.1;
+
+	/**
+	 * A sequence of actions and its fitness in the current generation.
+	 */
+	private static final class Candidate {
+		final ArrayList<String> actions;
+		double fitness = Double.NEGATIVE_INFINITY;
+
+		Candidate(ArrayList<String> actions) {this.actions = actions;}
+	}
+
+	/** The evaluation pools, one per parallelism, shared by every instance so replaced testers leave no threads behind. */
+	private static final HashMap<Integer, ExecutorService> executors = new HashMap<>();
+
+	private final SequenceEvaluator evaluator;
+	private final ExecutorService executor;
+	private final Random random = new Random();
+	private ArrayList<Candidate> elites = new ArrayList<>();
+	private long elitesStart;
+	private ArrayDeque<String> plannedActions = new ArrayDeque<>();
+	private ArrayDeque<Long> plannedPages = new ArrayDeque<>();
+	private int episodes = 0;
+
+	/**
+	 * Creates an instance of EvolutionaryTester which evaluates sequences on its own state graph.
+	 *
+	 * @param logFile - an instance of the LogFileGenerator
+	 * @param testStrings - the strings to be used during testing
+	 * @param driver - an instance of SelendroidServerDriver on the APK being tested
+	 */
+	public EvolutionaryTester(LogFileGenerator logFile, ArrayList<String> testStrings, SelendroidServerDriver driver) {
+		this(logFile, testStrings, driver, null);
+	}
+
+	/**
+	 * Creates an instance of EvolutionaryTester with the given sequence evaluator.
+	 *
+	 * @param logFile - an instance of the LogFileGenerator
+	 * @param testStrings - the strings to be used during testing
+	 * @param driver - an instance of SelendroidServerDriver on the APK being tested
+	 * @param evaluator - the evaluator to score sequences with, or null to simulate them on the state graph
+	 */
+	public EvolutionaryTester(LogFileGenerator logFile, ArrayList<String> testStrings, SelendroidServerDriver driver, SequenceEvaluator evaluator) {
+		super(logFile, testStrings, driver);
+		this.evaluator = evaluator == null ? new GraphSequenceEvaluator(getStateGraph()) : evaluator;
+		this.executor = getExecutor(this.evaluator.getParallelism());
+	}
+
+	/**
+	 * Returns the shared pool running the given number of evaluations at once, creating it
+	 * the first time. Batches from several testers queue on the same pool.
+	 *
+	 * @param parallelism - the number of evaluations to run at once
+	 * @return the pool for that parallelism
+	 */
+	private static ExecutorService getExecutor(int parallelism) {
+		synchronized (executors) {
+			return executors.computeIfAbsent(parallelism, threads -> Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = new Thread(runnable, "sequence-evaluator");
+				thread.setDaemon(true);
+				return thread;
+			}));
+		}
+	}
+
+	/* (non-Javadoc)
+	 * Note: the planned sequence is abandoned, and a new one evolved, as soon as the
+	 * device is not on the page the sequence expected.
+	 * @see testers.Tester#test(java.util.ArrayList)
+	 */
+	public boolean test(ArrayList<WebElement> possibleTargets) {
+		logBracket(true);
+		logPagesVisited();
+		logStatesDiscovered();
+		logPossibleTargetsData(possibleTargets);
+		if (possibleTargets.isEmpty()) {webviewBack();}
+		else {
+			if (!plannedPages.isEmpty() && plannedPages.peek() != getPageFingerprint()) {
+				logComment("alert: \"Sequence diverged from the state graph, evolving a new one...\",");
+				plannedActions.clear();
+				plannedPages.clear();
+			}
+			if (plannedActions.isEmpty()) {evolve(possibleTargets);}
+			plannedPages.poll();
+			String action = plannedActions.poll();
+			if (action == null || getTargetIndex(action) >= possibleTargets.size()) {
+				int targetIndex = random.nextInt(possibleTargets.size());
+				action = composeActionForTarget(possibleTargets.get(targetIndex), targetIndex);
+				plannedActions.clear();
+				plannedPages.clear();
+			}
+			doAction(action, possibleTargets);
+		}
+		logBracket(false);
+		return true;
+	}
+
+	/**
+	 * Evolves a population of sequences starting from the current page and plans the fittest
+	 * one, up to and including its first action whose outcome is not known yet. The elites
+	 * of the previous episode are only carried over if it started on the same page, since
+	 * their actions only make sense from there.
+	 *
+	 * @param possibleTargets - the targets on the current page
+	 */
+	private void evolve(ArrayList<WebElement> possibleTargets) {
+		StateGraph.Node start = getStateGraph().getCurrent();
+		if (start == null) {return;}
+		ArrayList<Candidate> population = new ArrayList<>();
+		if (start.getFingerprint() == elitesStart) {
+			for (Candidate elite : elites) {population.add(new Candidate(elite.actions));}
+		}
+		while (population.size() < populationSize) {
+			population.add(new Candidate(randomWalk(start, possibleTargets, 1 + random.nextInt(maxSequenceLength))));
+		}
+
+		for (int generation = 0; ; generation++) {
+			evaluateAll(start, population);
+			Collections.sort(population, (a, b) -> Double.compare(b.fitness, a.fitness));
+			if (generation == generationsPerEpisode - 1) {break;}
+			ArrayList<Candidate> next = new ArrayList<>(population.subList(0, Math.min(eliteCount, population.size())));
+			while (next.size() < populationSize) {
+				ArrayList<String> child = crossover(start, select(population).actions, select(population).actions);
+				if (random.nextDouble() < mutationRate) {child = mutate(start, possibleTargets, child);}
+				if (!child.isEmpty()) {next.add(new Candidate(child));}
+			}
+			population = next;
+		}
+
+		elites = new ArrayList<>(population.subList(0, Math.min(eliteCount, population.size())));
+		elitesStart = start.getFingerprint();
+		Candidate best = population.get(0);
+		ArrayList<StateGraph.Node> pages = GraphSequenceEvaluator.trace(start, best.actions);
+		for (int i=0; i<pages.size(); i++) {
+			plannedActions.add(best.actions.get(i));
+			plannedPages.add(pages.get(i).getFingerprint());
+		}
+		episodes++;
+		logComment(String.format("evolutionEpisodes: %s,", episodes));
+		logComment(String.format("bestSequenceFitness: %.3f,", best.fitness));
+		logComment(String.format("bestSequenceLength: %s,", best.actions.size()));
+	}
+
+	/**
+	 * Evaluates every candidate in the population as one batch, spread over the evaluator's parallelism.
+	 *
+	 * @param start - the page the sequences start on
+	 * @param population - the candidates to evaluate
+	 */
+	private void evaluateAll(StateGraph.Node start, ArrayList<Candidate> population) {
+		ArrayList<Callable<SequenceEvaluator.Result>> batch = new ArrayList<>();
+		for (Candidate candidate : population) {batch.add(() -> evaluator.evaluate(start, candidate.actions));}
+		try {
+			List<Future<SequenceEvaluator.Result>> results = executor.invokeAll(batch);
+			for (int i=0; i<population.size(); i++) {
+				try {population.get(i).fitness = fitness(results.get(i).get());}
+				catch (ExecutionException e) {population.get(i).fitness = Double.NEGATIVE_INFINITY;}
+			}
+		} catch (InterruptedException e) {Thread.currentThread().interrupt();}
+	}
+
+	/**
+	 * Combines what a sequence achieved into a single fitness.
+	 *
+	 * @param result - the result of evaluating the sequence
+	 * @return the fitness of the sequence, higher being better
+	 */
+	private static double fitness(SequenceEvaluator.Result result) {
+		return stateWeight * result.getStatesVisited()
+				+ novelWeight * result.getNovelStates()
+				+ crashWeight * result.getCrashes()
+				- lengthWeight * result.getSteps();
+	}
+
+	/**
+	 * Picks a parent by tournament selection.
+	 *
+	 * @param population - the evaluated population
+	 * @return the fittest of tournamentSize randomly drawn candidates
+	 */
+	private Candidate select(ArrayList<Candidate> population) {
+		Candidate best = null;
+		for (int i=0; i<tournamentSize; i++) {
+			Candidate candidate = population.get(random.nextInt(population.size()));
+			if (best == null || candidate.fitness > best.fitness) {best = candidate;}
+		}
+		return best;
+	}
+
+	/**
+	 * Joins the start of one parent to the end of the other at a page both pass through,
+	 * so the child stays executable. If they share no page the first parent is copied.
+	 *
+	 * @param start - the page the sequences start on
+	 * @param first - the parent the child starts like
+	 * @param second - the parent the child ends like
+	 * @return the child sequence
+	 */
+	ArrayList<String> crossover(StateGraph.Node start, ArrayList<String> first, ArrayList<String> second) {
+		ArrayList<StateGraph.Node> firstPages = GraphSequenceEvaluator.trace(start, first);
+		ArrayList<StateGraph.Node> secondPages = GraphSequenceEvaluator.trace(start, second);
+		ArrayList<int[]> cuts = new ArrayList<>();
+		for (int i=0; i<firstPages.size(); i++) {
+			for (int j=0; j<secondPages.size(); j++) {
+				if (firstPages.get(i) == secondPages.get(j)) {cuts.add(new int[] {i, j});}
+			}
+		}
+		if (cuts.isEmpty()) {return new ArrayList<>(first);}
+		int[] cut = cuts.get(random.nextInt(cuts.size()));
+		ArrayList<String> child = new ArrayList<>(first.subList(0, cut[0]));
+		child.addAll(second.subList(cut[1], second.size()));
+		if (child.size() > maxSequenceLength) {child = new ArrayList<>(child.subList(0, maxSequenceLength));}
+		return child;
+	}
+
+	/**
+	 * Either drops a step that leads back to the page it was taken on, shortening the
+	 * sequence, or cuts the sequence at one of its pages and regrows it from there
+	 * with a random walk.
+	 *
+	 * @param start - the page the sequence starts on
+	 * @param possibleTargets - the targets on the current page
+	 * @param actions - the sequence to mutate
+	 * @return the mutated sequence
+	 */
+	ArrayList<String> mutate(StateGraph.Node start, ArrayList<WebElement> possibleTargets, ArrayList<String> actions) {
+		ArrayList<StateGraph.Node> pages = GraphSequenceEvaluator.trace(start, actions);
+		if (pages.isEmpty()) {return randomWalk(start, possibleTargets, 1 + random.nextInt(maxSequenceLength));}
+		int position = random.nextInt(pages.size());
+		StateGraph.Edge edge = pages.get(position).getEdge(actions.get(position));
+		ArrayList<String> mutated = new ArrayList<>(actions.subList(0, position));
+		if (edge != null && edge.getLastOutcome() == StateGraph.Outcome.SAME_PAGE && random.nextBoolean()) {
+			mutated.addAll(actions.subList(position + 1, actions.size()));
+		} else {
+			mutated.addAll(randomWalk(pages.get(position), possibleTargets, 1 + random.nextInt(maxSequenceLength - position)));
+		}
+		return mutated;
+	}
+
+	/**
+	 * Builds a sequence by walking the state graph from the given page. At each page it
+	 * either follows a recorded edge or, with probability exploreRate or when the page has
+	 * no usable edges, tries a target that was never acted on there, which ends the walk.
+	 *
+	 * @param from - the page to start walking from
+	 * @param possibleTargets - the targets on the current page, used when the walk explores it
+	 * @param length - the maximum number of actions in the walk
+	 * @return the actions of the walk
+	 */
+	private ArrayList<String> randomWalk(StateGraph.Node from, ArrayList<WebElement> possibleTargets, int length) {
+		ArrayList<String> walk = new ArrayList<>();
+		StateGraph.Node node = from;
+		StateGraph.Node current = getStateGraph().getCurrent();
+		while (walk.size() < length) {
+			ArrayList<StateGraph.Edge> edges = new ArrayList<>();
+			for (StateGraph.Edge edge : node.getEdges()) {
+				if (edge.getTo() != null && edge.getLastOutcome() != StateGraph.Outcome.FAILED) {edges.add(edge);}
+			}
+			if (edges.isEmpty() || random.nextDouble() < exploreRate) {
+				int targetCount = node == current ? possibleTargets.size() : node.getTargetCount();
+				if (targetCount == 0) {break;}
+				int targetIndex = random.nextInt(targetCount);
+				walk.add(node == current ? composeActionForTarget(possibleTargets.get(targetIndex), targetIndex)
+						: composeClickButtonMessage(targetIndex));
+				break;
+			}
+			StateGraph.Edge edge = edges.get(random.nextInt(edges.size()));
+			walk.add(edge.getAction());
+			node = edge.getTo();
+		}
+		return walk;
+	}
+}
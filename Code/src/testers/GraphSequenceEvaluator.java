@@ -0,0 +1,89 @@
+package testers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * GraphSequenceEvaluator evaluates action sequences by simulating them on the
+ * state graph recorded so far instead of on a device, so that thousands of
+ * candidates can be scored in the time one device action takes.
+ *
+ * A sequence is followed along the recorded edges. An action never taken from the
+ * page it is on is counted as novel and ends the simulation, since what it leads to
+ * is unknown. An edge whose last traversal failed also ends it, without counting as a
+ * crash: the failure is already known, so steering the device into it again finds
+ * nothing and only costs a recovery.
+ *
+ * The graph must not be modified while evaluations are running.
+ */
+public class GraphSequenceEvaluator implements SequenceEvaluator {
+    private final StateGraph graph;
+    private final int parallelism;
+
+    /**
+     * Creates an evaluator over the given graph using one thread per processor.
+     *
+     * @param graph - the state graph to simulate sequences on
+     */
+    public GraphSequenceEvaluator(StateGraph graph) {
+        this(graph, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an evaluator over the given graph.
+     *
+     * @param graph - the state graph to simulate sequences on
+     * @param parallelism - the number of sequences to simulate at the same time
+     */
+    public GraphSequenceEvaluator(StateGraph graph, int parallelism) {
+        this.graph = graph;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the page each action of the sequence would be taken on, for as long as
+     * the outcome of the sequence is known. The page of the first unknown or failed
+     * action is included, the pages after it are not.
+     *
+     * @param start - the page the sequence starts on
+     * @param sequence - the action strings to follow
+     * @return the page before each known step, in order
+     */
+    static ArrayList<StateGraph.Node> trace(StateGraph.Node start, List<String> sequence) {
+        ArrayList<StateGraph.Node> pages = new ArrayList<>();
+        StateGraph.Node node = start;
+        for (String action : sequence) {
+            pages.add(node);
+            StateGraph.Edge edge = node.getEdge(action);
+            if (edge == null || edge.getTo() == null || edge.getLastOutcome() == StateGraph.Outcome.FAILED) {break;}
+            node = edge.getTo();
+        }
+        return pages;
+    }
+
+    /* (non-Javadoc)
+     * @see testers.SequenceEvaluator#evaluate(testers.StateGraph.Node, java.util.List)
+     */
+    @Override
+    public Result evaluate(StateGraph.Node start, List<String> sequence) {
+        HashSet<StateGraph.Node> visited = new HashSet<>();
+        visited.add(start);
+        StateGraph.Node node = start;
+        int steps = 0;
+        for (String action : sequence) {
+            steps++;
+            StateGraph.Edge edge = node.getEdge(action);
+            if (edge == null || edge.getTo() == null) {return new Result(visited.size(), 1, 0, steps);}
+            if (edge.getLastOutcome() == StateGraph.Outcome.FAILED) {return new Result(visited.size(), 0, 0, steps);}
+            node = edge.getTo();
+            visited.add(node);
+        }
+        return new Result(visited.size(), 0, 0, steps);
+    }
+
+    @Override
+    public int getParallelism() {return parallelism;}
+
+    public StateGraph getGraph() {return graph;}
+}
@@ -4,9 +4,12 @@ import logger.LogFileGenerator;
 import org.openqa.selenium.WebElement;
 import serverDriver.SelendroidServerDriver;
 
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashSet;
 
 
 /**
@@ -15,8 +18,14 @@ import java.util.List;
  * determine traversal. 
  */
 abstract class HistoryAwareTester extends StackBasedTester {
-    private static String fullyVisitedIndicator = "0";
-    private HashMap<Integer, List<String>> visited = new HashMap<>();
+    private PageRecordStore visited = new PageRecordStore();
+    private PageSimilarity similarity = new PageSimilarity();
+    private HashMap<String, Integer> samplesByPattern = new HashMap<>();
+    private int targetsSkippedByPattern = 0;
+    static int samplesPerPattern = 5;
+    private ArrayList<Long> similarPagesSinceCheckpoint = new ArrayList<>();
+    private LinkedHashSet<Long> pagesChangedSinceCheckpoint = new LinkedHashSet<>();
+    private int hrefsCheckpointed = 0;
 
     
     /**
@@ -43,92 +52,212 @@ abstract class HistoryAwareTester extends StackBasedTester {
     /**
      * Adds a new page to the record of visited pages. 
      * 
-     * Note: the first index of each record contains a number indicating
-     * the index of the next web element to be acted upon.
+     * Note: each record keeps the index of the next web element to be acted upon.
+     * A page that is a near-duplicate of enough pages already seen is recorded
+     * as fully visited straight away.
      * 
-     * @param pageHash - the index to be used when hashing targets into the visited map
+     * @param pageFingerprint - the fingerprint of the page
      * @param possibleTargets - the list of targets to be added
      */
-    private void addPage(int pageHash, ArrayList<WebElement> possibleTargets) {
-        List<String> linksAndMeta = new ArrayList<>();
-        linksAndMeta.add("1"); // Index of the next to go to. 0 if whole set is done.
-        
-        for (WebElement possibleTarget : possibleTargets) {
-            linksAndMeta.add(possibleTarget.getAttribute("href"));
+    private void addPage(long pageFingerprint, ArrayList<WebElement> possibleTargets) {
+        int[] hrefIds = new int[possibleTargets.size()];
+        for (int i=0; i<hrefIds.length; i++) {
+            hrefIds[i] = visited.internHref(possibleTargets.get(i).getAttribute("href"));
         }
-        
-        if (linksAndMeta.size() == 2) {
-            linksAndMeta.set(0, "0");
+        PageRecord record = new PageRecord(hrefIds);
+        long structureHash = getPageStructureHash();
+        if (similarity.shouldCollapse(similarity.addPage(structureHash))) {
+            record.markFullyVisited();
+            logComment("alert: \"Near-duplicate page detected, treating it as visited...\",");
+            logComment(String.format("nearDuplicatesCollapsed: %s,", similarity.getPagesCollapsed()));
         }
-        
-        visited.put(pageHash, linksAndMeta);
+        if (getCheckpointJournal() != null) {similarPagesSinceCheckpoint.add(structureHash);}
+        visited.put(pageFingerprint, record);
     }
 
     /**
      * Adds a new page to the record of visited pages but 
      * only if it's a newly-identified page. 
      * 
-     * @param pageHash - the index to be used when hashing targets into the visited map
+     * @param pageFingerprint - the fingerprint of the page
      * @param possibleTargets - the list of targets to be added
      */
-    private void addPageIfNew(int pageHash, ArrayList<WebElement> possibleTargets) {
-        if (!visited.containsKey(pageHash)) {addPage(pageHash, possibleTargets);}
+    private void addPageIfNew(long pageFingerprint, ArrayList<WebElement> possibleTargets) {
+        if (!visited.contains(pageFingerprint)) {addPage(pageFingerprint, possibleTargets);}
     }
 
     /**
-     * Mars a page as visited in the record of visited pages. 
+     * Returns true if all web elements on a page have been marked as seen.
      * 
-     * @param pageHash - the index to be used when hashing targets into the visited map
+     * @param pageFingerprint - the fingerprint of the page
+     * @return true if all web elements on a page have been marked as seen
      */
-    private void markAnotherSeen(int pageHash) {
-        Integer numberNowSeen = getNextTargetIndex(pageHash);
-        if (wasFullyVisited(pageHash) || numberNowSeen==visited.get(pageHash).size()-2) {numberNowSeen = -1;}
-        visited.get(pageHash).set(0, String.format("%s", numberNowSeen + 1));
+    boolean wasFullyVisited(long pageFingerprint) {
+        PageRecord record = visited.get(pageFingerprint);
+        return record != null && record.isFullyVisited();
     }
 
     /**
-     * Returns true if all web elements on a page have been marked as seen.
+     * Adds a new page if it's new and then returns the target index 
+     * after marking it as visited. 
      * 
-     * @param pageHash - the index to be used when hashing targets into the visited map
-     * @return true if all web elements on a page have been marked as seen
+     * Targets whose href pattern has already been sampled samplesPerPattern
+     * times are skipped, so that a list of thousands of parameterised links
+     * is only sampled rather than explored in full. Inputs found to be dead
+     * ends on this page are skipped too, and so are the inputs of a form other
+     * than its first, since the form is filled in and submitted as a whole.
+     * When the last target is skipped as well, target 0 is returned uncounted.
+     * 
+     * @param pageFingerprint - the fingerprint of the page
+     * @param possibleTargets - the list of targets to be added
+     * @return the index of the next target intended to be visited
      */
-    boolean wasFullyVisited(int pageHash) {
-        return visited.containsKey(pageHash) && fullyVisitedIndicator.equals(visited.get(pageHash).get(0));
+    int handlePage(long pageFingerprint, ArrayList<WebElement> possibleTargets) {
+        addPageIfNew(pageFingerprint, possibleTargets);
+        if (getCheckpointJournal() != null) {pagesChangedSinceCheckpoint.add(pageFingerprint);}
+        PageRecord record = visited.get(pageFingerprint);
+        int targetIndex = record.takeNextTarget();
+        while (isSkipped(pageFingerprint, record, targetIndex)) {
+            if (record.isFullyVisited()) {return 0;}
+            targetIndex = record.takeNextTarget();
+        }
+        countSample(record, targetIndex);
+        return targetIndex;
     }
 
     /**
-     * Returns the index of the intended next target to be visited. 
+     * Returns true if the given target should not be acted on, because its href
+     * pattern was sampled enough, it is a dead-end input or its form covers it.
      * 
-     * @param pageHash - the index to be used when hashing targets into the visited map
-     * @return the index of the next target intended to be visited
+     * @param pageFingerprint - the fingerprint of the page
+     * @param record - the record of the page the target is on
+     * @param targetIndex - the index of the target
+     * @return true if the target should be skipped else false
      */
-    private int getNextTargetIndex(int pageHash) {
-        return Integer.parseInt(visited.get(pageHash).get(0));
+    private boolean isSkipped(long pageFingerprint, PageRecord record, int targetIndex) {
+        return isPatternSaturated(record, targetIndex) || isInertInput(pageFingerprint, targetIndex) || isSubmittedWithForm(targetIndex);
     }
 
     /**
-     * Returns the index of the intended next target to be visited 
-     * after marking the page associated with that index as visited. 
+     * Returns true if the given target is an input of a form other than its first,
+     * which is acted on as part of the form's submission.
      * 
-     * @param pageHash - the index to be used when hashing targets into the visited map
-     * @return the index of the next target intended to be visited
+     * @param targetIndex - the index of the target
+     * @return true if the target is covered by its form's submission else false
      */
-    private int getTargetIndexAndMarkAsVisited(int pageHash) {
-        Integer nextTargetIndex = getNextTargetIndex(pageHash);
-        markAnotherSeen(pageHash);
-        return nextTargetIndex;
+    private boolean isSubmittedWithForm(int targetIndex) {
+        int[] form = getFormGroup(targetIndex);
+        return form != null && form[0] != targetIndex;
     }
 
     /**
-     * Adds a new page if it's new and then returns the target index 
-     * after marking it as visited. 
+     * Returns the pattern of the href of the given target, or null if it has no href.
      * 
-     * @param pageHash - the index to be used when hashing targets into the visited map
-     * @param possibleTargets - the list of targets to be added
-     * @return the index of the next target intended to be visited
+     * @param record - the record of the page the target is on
+     * @param targetIndex - the index of the target
+     * @return the href pattern of the target
+     */
+    private String getTargetPattern(PageRecord record, int targetIndex) {
+        String href = targetIndex < record.getTargetCount() ? visited.getHref(record.hrefIds[targetIndex]) : null;
+        return href == null ? null : getHrefPattern(href);
+    }
+
+    /**
+     * Returns true if the given target should be skipped because its href pattern
+     * has been sampled enough times already.
+     * 
+     * @param record - the record of the page the target is on
+     * @param targetIndex - the index of the target
+     * @return true if the target should be skipped else false
+     */
+    private boolean isPatternSaturated(PageRecord record, int targetIndex) {
+        String pattern = getTargetPattern(record, targetIndex);
+        boolean saturated = samplesPerPattern > 0 && pattern != null && samplesByPattern.getOrDefault(pattern, 0) >= samplesPerPattern;
+        if (saturated) {targetsSkippedByPattern++;}
+        return saturated;
+    }
+
+    /**
+     * Counts the given target as a sample of its href pattern.
+     * 
+     * @param record - the record of the page the target is on
+     * @param targetIndex - the index of the target
+     */
+    private void countSample(PageRecord record, int targetIndex) {
+        String pattern = getTargetPattern(record, targetIndex);
+        if (pattern != null) {samplesByPattern.merge(pattern, 1, Integer::sum);}
+    }
+
+    /**
+     * Returns the number of targets skipped because their href pattern was sampled enough.
+     * 
+     * @return the number of targets skipped
+     */
+    int getTargetsSkippedByPattern() {
+        return targetsSkippedByPattern;
+    }
+
+    /* (non-Javadoc)
+     * @see testers.StackBasedTester#writeCheckpoint(testers.CheckpointJournal)
+     */
+    void writeCheckpoint(CheckpointJournal journal) {
+        super.writeCheckpoint(journal);
+        while (hrefsCheckpointed < visited.getHrefCount()) {
+            String href = visited.getHref(hrefsCheckpointed++);
+            journal.record(CheckpointJournal.href, out -> out.writeUTF(href));
+        }
+        for (long pageFingerprint : pagesChangedSinceCheckpoint) {
+            PageRecord record = visited.get(pageFingerprint);
+            ByteBuffer buffer = ByteBuffer.allocate(record.serializedSize());
+            record.writeTo(buffer);
+            journal.record(CheckpointJournal.pageRecord, out -> {
+                out.writeLong(pageFingerprint);
+                out.writeInt(buffer.capacity());
+                out.write(buffer.array());
+            });
+        }
+        pagesChangedSinceCheckpoint.clear();
+        for (long structureHash : similarPagesSinceCheckpoint) {
+            journal.record(CheckpointJournal.similarPage, out -> out.writeLong(structureHash));
+        }
+        similarPagesSinceCheckpoint.clear();
+    }
+
+    /* (non-Javadoc)
+     * @see testers.StackBasedTester#restoreCheckpoint(int, java.io.DataInputStream)
+     */
+    void restoreCheckpoint(int type, DataInputStream in) throws IOException {
+        if (type == CheckpointJournal.href) {visited.internHref(in.readUTF());}
+        else if (type == CheckpointJournal.pageRecord) {
+            long pageFingerprint = in.readLong();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            visited.replace(pageFingerprint, new PageRecord(ByteBuffer.wrap(bytes)));
+        } else if (type == CheckpointJournal.similarPage) {similarity.restorePage(in);}
+        else {super.restoreCheckpoint(type, in);}
+    }
+
+    /* (non-Javadoc)
+     * @see testers.StackBasedTester#copyStateFrom(testers.Tester)
+     */
+    void copyStateFrom(Tester other) {
+        super.copyStateFrom(other);
+        if (!(other instanceof HistoryAwareTester)) {return;}
+        HistoryAwareTester historyAware = (HistoryAwareTester) other;
+        visited = historyAware.visited;
+        similarity = historyAware.similarity;
+        samplesByPattern = historyAware.samplesByPattern;
+        targetsSkippedByPattern = historyAware.targetsSkippedByPattern;
+        similarPagesSinceCheckpoint = historyAware.similarPagesSinceCheckpoint;
+        pagesChangedSinceCheckpoint = historyAware.pagesChangedSinceCheckpoint;
+        hrefsCheckpointed = historyAware.hrefsCheckpointed;
+    }
+
+    /* (non-Javadoc)
+     * @see testers.StackBasedTester#checkpointRestored()
      */
-    int handlePage(int pageHash, ArrayList<WebElement> possibleTargets) {
-        addPageIfNew(pageHash, possibleTargets);
-        return getTargetIndexAndMarkAsVisited(pageHash);
+    void checkpointRestored() {
+        super.checkpointRestored();
+        hrefsCheckpointed = visited.getHrefCount();
     }
 }
@@ -0,0 +1,238 @@
+package testers;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+
+import org.openqa.selenium.WebElement;
+
+import logger.LogFileGenerator;
+import serverDriver.SelendroidServerDriver;
+
+/**
+ * HybridTester is a meta-tester which runs one of the other testers at a time and
+ * switches to another once the run reaches a plateau, meaning no new page was found
+ * for plateauWindow steps, or once the current tester has nothing left to do.
+ *
+ * Every tester it runs shares the same state graph, visited pages and navigation
+ * knowledge, so nothing is re-explored after a switch. The next tester is one that
+ * hasn't been tried yet, or else the one that found new pages at the best rate so far.
+ */
+public class HybridTester extends LoggingTester {
+
+	/**
+	 * The testers HybridTester switches between.
+	 */
+	public enum Strategy {DEPTH_FIRST, BREADTH_FIRST, DIRECTED, RANDOM}
+
+	static int plateauWindow = 25;
+
+	private final LogFileGenerator logFile;
+	private final ArrayList<String> testStrings;
+	private final SelendroidServerDriver driver;
+	private EnumMap<Strategy, Tester> strategies = new EnumMap<>(Strategy.class);
+	private EnumMap<Strategy, int[]> yieldByStrategy = new EnumMap<>(Strategy.class);
+	private Strategy activeStrategy = null;
+	private Tester active = null;
+	private Tester stateSource = this;
+	private int lastNodeCount = 0;
+	private int stepsSinceNewPage = 0;
+	private EnumSet<Strategy> finishedStrategies = EnumSet.noneOf(Strategy.class);
+	private int strategySwitches = 0;
+	private boolean switchPending = false;
+
+	/**
+	 * Creates an instance of HybridTester with the given log file generator instance,
+	 * strings to be tested with, and Selendroid server driver instance.
+	 * It starts with the depth-first tester.
+	 *
+	 * @param logFile - an instance of the LogFileGenerator
+	 * @param testStrings - the strings to be used during testing
+	 * @param driver - an instance of SelendroidServerDriver on the APK being tested
+	 */
+	public HybridTester(LogFileGenerator logFile, ArrayList<String> testStrings, SelendroidServerDriver driver) {
+		super(logFile, testStrings, driver);
+		this.logFile = logFile;
+		this.testStrings = testStrings;
+		this.driver = driver;
+	}
+
+	/* (non-Javadoc)
+	 * Note: the active tester records the page, then the plateau check is made.
+	 * @see testers.Tester#observePage(java.util.ArrayList)
+	 */
+	void observePage(ArrayList<WebElement> possibleTargets) {
+		if (active == null) {activate(Strategy.DEPTH_FIRST);}
+		active.observePage(possibleTargets);
+		int nodeCount = getStateGraph().getNodeCount();
+		int[] yield = yieldByStrategy.get(activeStrategy);
+		yield[0]++;
+		yield[1] += nodeCount - lastNodeCount;
+		if (nodeCount > lastNodeCount) {stepsSinceNewPage = 0;}
+		else if (++stepsSinceNewPage >= plateauWindow) {switchPending = true;}
+		lastNodeCount = nodeCount;
+	}
+
+	/* (non-Javadoc)
+	 * Note: testing only ends once every tester has run out of things to do with none of
+	 * them finding anything new in between. A finished tester isn't switched back to
+	 * until one does.
+	 * @see testers.Tester#test(java.util.ArrayList)
+	 */
+	public boolean test(ArrayList<WebElement> possibleTargets) {
+		if (active == null) {activate(Strategy.DEPTH_FIRST);}
+		if (switchPending) {switchStrategy("alert: \"Coverage plateau detected, switching strategy...\",");}
+		if (active.test(possibleTargets)) {
+			finishedStrategies.clear();
+			return true;
+		}
+		finishedStrategies.add(activeStrategy);
+		if (finishedStrategies.size() == Strategy.values().length) {return false;}
+		switchStrategy("alert: \"Strategy finished, switching strategy...\",");
+		return true;
+	}
+
+	/**
+	 * Switches to the next strategy and logs why.
+	 *
+	 * @param reason - the alert comment explaining the switch
+	 */
+	private void switchStrategy(String reason) {
+		Strategy next = chooseNextStrategy();
+		switchPending = false;
+		stepsSinceNewPage = 0;
+		if (next == activeStrategy) {return;}
+		activate(next);
+		strategySwitches++;
+		logBracket(true);
+		logComment(reason);
+		logComment(String.format("activeStrategy: \"%s\",", activeStrategy));
+		logComment(String.format("strategySwitches: %s,", strategySwitches));
+		logBracket(false);
+	}
+
+	/**
+	 * Returns the first strategy not tried yet, or else the one other than the active
+	 * strategy which found new pages at the best rate, leaving out finished strategies.
+	 *
+	 * @return the strategy to switch to
+	 */
+	private Strategy chooseNextStrategy() {
+		Strategy best = activeStrategy;
+		double bestRate = Double.NEGATIVE_INFINITY;
+		for (Strategy strategy : Strategy.values()) {
+			if (strategy == activeStrategy || finishedStrategies.contains(strategy)) {continue;}
+			int[] yield = yieldByStrategy.get(strategy);
+			if (yield == null) {return strategy;}
+			double rate = yield[0] == 0 ? 0 : (double) yield[1] / yield[0];
+			if (rate > bestRate) {
+				bestRate = rate;
+				best = strategy;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Makes the given strategy the active one, creating its tester the first time, and
+	 * has it carry on from the state of the previously active tester.
+	 *
+	 * @param strategy - the strategy to activate
+	 */
+	private void activate(Strategy strategy) {
+		Tester tester = strategies.get(strategy);
+		if (tester == null) {
+			tester = createTester(strategy);
+			tester.setCheckpointJournal(getCheckpointJournal());
+			strategies.put(strategy, tester);
+			yieldByStrategy.put(strategy, new int[2]);
+		}
+		tester.copyStateFrom(active == null ? stateSource : active);
+		active = tester;
+		activeStrategy = strategy;
+		lastNodeCount = getStateGraph().getNodeCount();
+	}
+
+	/**
+	 * Creates the tester for the given strategy.
+	 *
+	 * @param strategy - the strategy to create a tester for
+	 * @return the new tester
+	 */
+	private Tester createTester(Strategy strategy) {
+		switch (strategy) {
+			case BREADTH_FIRST: return new BreadthFirstTester(logFile, testStrings, driver);
+			case DIRECTED: return new PriorityTester(logFile, testStrings, driver);
+			case RANDOM: return new RandomTester(logFile, testStrings, driver);
+			default: return new DepthFirstTester(logFile, testStrings, driver);
+		}
+	}
+
+	public Strategy getActiveStrategy() {return activeStrategy;}
+
+	/* (non-Javadoc)
+	 * Note: the state of the previous tester is handed on to the first strategy when it is activated.
+	 * @see testers.Tester#copyStateFrom(testers.Tester)
+	 */
+	void copyStateFrom(Tester other) {
+		super.copyStateFrom(other);
+		if (active == null) {stateSource = other;}
+		else {active.copyStateFrom(other);}
+	}
+
+	/* (non-Javadoc)
+	 * @see testers.Tester#getStateOwner()
+	 */
+	Tester getStateOwner() {
+		return active == null ? stateSource.getStateOwner() : active;
+	}
+
+	/* (non-Javadoc)
+	 * @see testers.Tester#getStateGraph()
+	 */
+	public StateGraph getStateGraph() {
+		return active == null ? super.getStateGraph() : active.getStateGraph();
+	}
+
+	/* (non-Javadoc)
+	 * @see testers.Tester#recordActionFailure()
+	 */
+	void recordActionFailure() {
+		if (active != null) {active.recordActionFailure();}
+	}
+
+	/* (non-Javadoc)
+	 * @see testers.Tester#setCheckpointJournal(testers.CheckpointJournal)
+	 */
+	public void setCheckpointJournal(CheckpointJournal journal) {
+		super.setCheckpointJournal(journal);
+		for (Tester tester : strategies.values()) {tester.setCheckpointJournal(journal);}
+	}
+
+	/* (non-Javadoc)
+	 * @see testers.Tester#writeCheckpoint(testers.CheckpointJournal)
+	 */
+	void writeCheckpoint(CheckpointJournal journal) {
+		if (active == null) {activate(Strategy.DEPTH_FIRST);}
+		active.writeCheckpoint(journal);
+	}
+
+	/* (non-Javadoc)
+	 * @see testers.Tester#restoreCheckpoint(int, java.io.DataInputStream)
+	 */
+	void restoreCheckpoint(int type, DataInputStream in) throws IOException {
+		if (active == null) {activate(Strategy.DEPTH_FIRST);}
+		active.restoreCheckpoint(type, in);
+	}
+
+	/* (non-Javadoc)
+	 * @see testers.Tester#checkpointRestored()
+	 */
+	void checkpointRestored() {
+		if (active == null) {activate(Strategy.DEPTH_FIRST);}
+		active.checkpointRestored();
+		lastNodeCount = getStateGraph().getNodeCount();
+	}
+}
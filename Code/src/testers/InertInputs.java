@@ -0,0 +1,114 @@
+package testers;
+
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * InertInputs records which inputs on which pages were found to be dead ends: typing
+ * into them left both the page fingerprint and the set of targets exactly as they
+ * were. Inputs are identified by the fingerprint of their page and their target
+ * index, which is stable for a given fingerprint.
+ *
+ * Typing into an ordinary field changes neither until something reacts to it, so a
+ * single typing only marks an input inert if it could have had an effect of its
+ * own: it pressed Enter, or the input has listeners. Otherwise the input is only
+ * marked after idleTypingsBeforeInert typings in a row changed nothing. The marks of
+ * a page are dropped once it is seen with a different set of targets than when they
+ * were made, since what the inputs do may have changed with them.
+ */
+final class InertInputs {
+    /** The number of typings in a row that must change nothing before an ordinary input is marked inert. */
+    static int idleTypingsBeforeInert = 3;
+
+    /**
+     * What is known about the inputs of one page.
+     */
+    private static final class PageInputs {
+        private final long targetSet;
+        private BitSet inert = new BitSet();
+        private HashMap<Integer, Integer> idleTypings = new HashMap<>();
+
+        PageInputs(long targetSet) {this.targetSet = targetSet;}
+    }
+
+    private HashMap<Long, PageInputs> inputsByPage = new HashMap<>();
+
+    /**
+     * Records what typing into an input did.
+     *
+     * @param pageFingerprint - the fingerprint of the page the input is on
+     * @param targetSet - the signature of the page's targets before the typing
+     * @param targetIndex - the index of the input on the page
+     * @param changed - true if typing changed the page or its targets
+     * @param decisive - true if the typing could have had an effect of its own, by pressing Enter or firing listeners
+     * @return true if this changed whether the input is marked inert else false
+     */
+    boolean record(long pageFingerprint, long targetSet, int targetIndex, boolean changed, boolean decisive) {
+        PageInputs inputs = inputsFor(pageFingerprint, targetSet);
+        if (changed) {
+            inputs.idleTypings.remove(targetIndex);
+            return mark(inputs, targetIndex, false);
+        }
+        int idleTypings = inputs.idleTypings.merge(targetIndex, 1, Integer::sum);
+        return (decisive || idleTypings >= idleTypingsBeforeInert) && mark(inputs, targetIndex, true);
+    }
+
+    /**
+     * Restores a mark written to a checkpoint.
+     *
+     * @param pageFingerprint - the fingerprint of the page the input is on
+     * @param targetSet - the signature of the page's targets when the mark was made
+     * @param targetIndex - the index of the input on the page
+     * @param inert - whether the input was marked inert
+     */
+    void restore(long pageFingerprint, long targetSet, int targetIndex, boolean inert) {
+        mark(inputsFor(pageFingerprint, targetSet), targetIndex, inert);
+    }
+
+    /**
+     * Drops the marks of a page if it is now shown with a different set of targets.
+     *
+     * @param pageFingerprint - the fingerprint of the page shown now
+     * @param targetSet - the signature of the targets shown now
+     */
+    void expire(long pageFingerprint, long targetSet) {
+        PageInputs inputs = inputsByPage.get(pageFingerprint);
+        if (inputs != null && inputs.targetSet != targetSet) {inputsByPage.remove(pageFingerprint);}
+    }
+
+    boolean isInert(long pageFingerprint, int targetIndex) {
+        PageInputs inputs = inputsByPage.get(pageFingerprint);
+        return inputs != null && inputs.inert.get(targetIndex);
+    }
+
+    /**
+     * Returns what is known about the inputs of a page with the given targets, starting
+     * afresh if the page was last seen with different ones.
+     *
+     * @param pageFingerprint - the fingerprint of the page
+     * @param targetSet - the signature of the page's targets
+     * @return the page's inputs
+     */
+    private PageInputs inputsFor(long pageFingerprint, long targetSet) {
+        PageInputs inputs = inputsByPage.get(pageFingerprint);
+        if (inputs == null || inputs.targetSet != targetSet) {
+            inputs = new PageInputs(targetSet);
+            inputsByPage.put(pageFingerprint, inputs);
+        }
+        return inputs;
+    }
+
+    /**
+     * Sets whether an input is marked inert.
+     *
+     * @param inputs - the inputs of the page the input is on
+     * @param targetIndex - the index of the input on the page
+     * @param inert - whether the input is inert
+     * @return true if this changed the mark else false
+     */
+    private static boolean mark(PageInputs inputs, int targetIndex, boolean inert) {
+        if (inputs.inert.get(targetIndex) == inert) {return false;}
+        inputs.inert.set(targetIndex, inert);
+        return true;
+    }
+}
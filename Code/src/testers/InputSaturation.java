@@ -0,0 +1,106 @@
+package testers;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * InputSaturation records which page each input string led to when typed into each
+ * input field, so that the strings typed into a field fall into equivalence classes
+ * by the page they lead to. Once saturationThreshold strings in a row, none of them
+ * typed into the field before, led only to pages earlier strings had already led to,
+ * the field is saturated and further strings are not expected to find anything new.
+ *
+ * Fields are identified by the input ids the driver assigns during extraction.
+ * At most maxFields fields and maxInputsPerField strings per field are kept, the
+ * least recently used being forgotten first; a forgotten string typed again simply
+ * counts as new.
+ */
+final class InputSaturation {
+    /** The number of new strings in a row without a new result page after which a field is saturated. */
+    static int saturationThreshold = 5;
+    /** The number of fields whose results are kept. */
+    static int maxFields = 10000;
+    /** The number of strings whose result is kept per field. */
+    static int maxInputsPerField = 100;
+
+    /**
+     * The results recorded for one input field.
+     */
+    private static final class Field {
+        final LinkedHashMap<String, Long> resultByInput = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {return size() > maxInputsPerField;}
+        };
+        final HashSet<Long> results = new HashSet<>();
+        int inputsSinceNewResult = 0;
+
+        boolean isSaturated() {return inputsSinceNewResult >= saturationThreshold;}
+    }
+
+    private int saturatedFields = 0;
+    private LinkedHashMap<Long, Field> fields = new LinkedHashMap<Long, Field>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Field> eldest) {
+            if (size() <= maxFields) {return false;}
+            if (eldest.getValue().isSaturated()) {saturatedFields--;}
+            return true;
+        }
+    };
+
+    /**
+     * Records the page an input string led to. A string already recorded for the field
+     * keeps its first result and doesn't count towards saturation.
+     *
+     * @param fieldId - the input id of the field typed into
+     * @param input - the string that was typed
+     * @param resultFingerprint - the fingerprint of the page shown afterwards
+     * @return true if the field became saturated by this result else false
+     */
+    boolean recordResult(long fieldId, String input, long resultFingerprint) {
+        Field field = fields.computeIfAbsent(fieldId, id -> new Field());
+        if (field.resultByInput.putIfAbsent(input, resultFingerprint) != null) {return false;}
+        boolean wasSaturated = field.isSaturated();
+        if (field.results.add(resultFingerprint)) {field.inputsSinceNewResult = 0;}
+        else {field.inputsSinceNewResult++;}
+        if (wasSaturated == field.isSaturated()) {return false;}
+        if (wasSaturated) {
+            saturatedFields--;
+            return false;
+        }
+        saturatedFields++;
+        return true;
+    }
+
+    /**
+     * Checks whether the given string was already typed into the given field, in
+     * which case the page it leads to is already known.
+     *
+     * @param fieldId - the input id of the field
+     * @param input - the string to check
+     * @return true if the string's result for the field is known else false
+     */
+    boolean isKnownInput(long fieldId, String input) {
+        Field field = fields.get(fieldId);
+        return field != null && field.resultByInput.containsKey(input);
+    }
+
+    boolean isSaturated(long fieldId) {
+        Field field = fields.get(fieldId);
+        return field != null && field.isSaturated();
+    }
+
+    /**
+     * Returns the number of equivalence classes of the strings typed into the given
+     * field, meaning the number of distinct pages they led to.
+     *
+     * @param fieldId - the input id of the field
+     * @return the number of distinct result pages of the field
+     */
+    int getClassCount(long fieldId) {
+        Field field = fields.get(fieldId);
+        return field == null ? 0 : field.results.size();
+    }
+
+    int getSaturatedFieldCount() {return saturatedFields;}
+}
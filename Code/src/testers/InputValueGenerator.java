@@ -0,0 +1,461 @@
+package testers;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * InputValueGenerator produces strings to type into input fields that respect the
+ * field's type, pattern, minlength, maxlength, min, max, step and required attributes,
+ * so that fewer submissions are rejected by the page's own validation.
+ *
+ * Each field first gets its boundary values, such as min and max, a string of exactly
+ * maxlength characters, or the empty string if the field isn't required. After that it
+ * gets random valid values, built from the dictionary wherever the type allows. Values
+ * are generated one at a time, and a field's attributes are only read the first time a
+ * value is asked for.
+ */
+final class InputValueGenerator {
+    /** The number of extra repetitions allowed for an unbounded regular expression quantifier. */
+    static int maxRepeats = 3;
+    /** The number of tries at building a random value that respects every attribute. */
+    static int maxTries = 10;
+
+    /**
+     * The validation attributes of one input field.
+     */
+    static final class Constraints {
+        final String type;
+        final Pattern pattern;
+        final String patternSource;
+        final int minLength;
+        final int maxLength;
+        final String min;
+        final String max;
+        final String step;
+        final boolean required;
+
+        /**
+         * Reads the constraints from the field's attributes. Attributes that are missing
+         * or malformed are treated as if they weren't set.
+         *
+         * @param attributes - the field's attribute values by attribute name
+         */
+        Constraints(Map<String, String> attributes) {
+            String type = attributes.get("type");
+            this.type = type == null || type.isEmpty() ? "text" : type.toLowerCase();
+            String pattern = attributes.get("pattern");
+            Pattern compiled = null;
+            if (pattern != null && !pattern.isEmpty()) {
+                try {compiled = Pattern.compile(pattern);}
+                catch (PatternSyntaxException e) {pattern = null;}
+            } else {pattern = null;}
+            this.pattern = compiled;
+            this.patternSource = pattern;
+            this.minLength = parseLength(attributes.get("minlength"), 0);
+            this.maxLength = parseLength(attributes.get("maxlength"), -1);
+            this.min = attributes.get("min");
+            this.max = attributes.get("max");
+            this.step = attributes.get("step");
+            String required = attributes.get("required");
+            this.required = required != null && !required.equals("false");
+        }
+
+        private static int parseLength(String value, int otherwise) {
+            try {return value == null ? otherwise : Math.max(0, Integer.parseInt(value.trim()));}
+            catch (NumberFormatException e) {return otherwise;}
+        }
+
+        /**
+         * Checks whether the value respects the field's pattern and length attributes.
+         *
+         * @param value - the value to check
+         * @return true if the value is valid for the field else false
+         */
+        boolean accepts(String value) {
+            if (value.isEmpty()) {return !required;}
+            if (value.length() < minLength || (maxLength >= 0 && value.length() > maxLength)) {return false;}
+            return pattern == null || pattern.matcher(value).matches();
+        }
+    }
+
+    /**
+     * The values still to be typed into one field.
+     */
+    private static final class Field {
+        final Constraints constraints;
+        final ArrayDeque<String> boundaryValues = new ArrayDeque<>();
+
+        Field(Constraints constraints) {this.constraints = constraints;}
+    }
+
+    private final ArrayList<String> dictionary;
+    private final Random random;
+    private HashMap<Long, Field> fields = new HashMap<>();
+
+    /**
+     * Creates a generator that builds text values from the given dictionary.
+     *
+     * @param dictionary - the strings to build values from
+     * @param random - the source of randomness
+     */
+    InputValueGenerator(ArrayList<String> dictionary, Random random) {
+        this.dictionary = dictionary;
+        this.random = random;
+    }
+
+    /**
+     * Returns the next value to type into the given field: its boundary values first,
+     * in order, and random valid values after that.
+     *
+     * @param fieldId - the input id of the field
+     * @param attributes - reads the field's attributes, called only the first time the field is seen
+     * @return the value to type
+     */
+    String nextValue(long fieldId, Supplier<Map<String, String>> attributes) {
+        Field field = fields.get(fieldId);
+        if (field == null) {
+            field = new Field(new Constraints(attributes.get()));
+            field.boundaryValues.addAll(boundaryValues(field.constraints));
+            fields.put(fieldId, field);
+        }
+        if (!field.boundaryValues.isEmpty()) {return field.boundaryValues.poll();}
+        return randomValue(field.constraints);
+    }
+
+    /**
+     * Returns the boundary values of a field that are valid for it.
+     *
+     * @param constraints - the field's constraints
+     * @return the field's boundary values, without duplicates
+     */
+    List<String> boundaryValues(Constraints constraints) {
+        ArrayList<String> values = new ArrayList<>();
+        switch (constraints.type) {
+            case "number":
+            case "range":
+                BigDecimal min = parseNumber(constraints.min);
+                BigDecimal max = parseNumber(constraints.max);
+                BigDecimal step = parseStep(constraints.step);
+                if (min != null) {values.add(min.toPlainString());}
+                if (max != null) {values.add(min != null && step != null ? alignToStep(max, min, step).toPlainString() : max.toPlainString());}
+                if (min != null && max != null && step != null && min.add(step).compareTo(max) < 0) {
+                    values.add(min.add(step).toPlainString());
+                    values.add(alignToStep(max.subtract(step), min, step).toPlainString());
+                }
+                if (min == null && max == null) {
+                    values.add("0");
+                    values.add("-1");
+                }
+                break;
+            case "date":
+                LocalDate minDate = parseDate(constraints.min);
+                LocalDate maxDate = parseDate(constraints.max);
+                if (minDate != null) {values.add(minDate.toString());}
+                if (maxDate != null) {values.add(maxDate.toString());}
+                break;
+            case "email":
+                values.add("a@b.co");
+                break;
+            default:
+                if (constraints.pattern == null) {
+                    if (constraints.minLength > 0) {values.add(repeatToLength(randomWord(), constraints.minLength));}
+                    if (constraints.maxLength > 0) {values.add(repeatToLength(randomWord(), constraints.maxLength));}
+                }
+        }
+        if (!constraints.required) {values.add("");}
+        ArrayList<String> valid = new ArrayList<>();
+        for (String value : values) {
+            if (constraints.accepts(value) && !valid.contains(value)) {valid.add(value);}
+        }
+        return valid;
+    }
+
+    /**
+     * Returns a random value for the field, valid for it if one could be built.
+     *
+     * @param constraints - the field's constraints
+     * @return the value to type
+     */
+    String randomValue(Constraints constraints) {
+        String value = null;
+        for (int tries=0; tries<maxTries; tries++) {
+            value = fitLength(randomValueOfType(constraints), constraints);
+            if (constraints.accepts(value)) {return value;}
+        }
+        return value;
+    }
+
+    /**
+     * Returns a random value of the field's type, ignoring its length attributes.
+     *
+     * @param constraints - the field's constraints
+     * @return a random value
+     */
+    private String randomValueOfType(Constraints constraints) {
+        switch (constraints.type) {
+            case "number":
+            case "range":
+                return randomNumber(constraints);
+            case "email":
+                return sanitize(randomWord()) + "@example.com";
+            case "tel":
+                return String.format("555%07d", random.nextInt(10000000));
+            case "url":
+                return "http://example.com/" + sanitize(randomWord());
+            case "date":
+                return randomDate(constraints).toString();
+            case "month":
+                return randomDate(constraints).toString().substring(0, 7);
+            case "time":
+                return String.format("%02d:%02d", random.nextInt(24), random.nextInt(60));
+            case "datetime-local":
+                return String.format("%sT%02d:%02d", randomDate(constraints), random.nextInt(24), random.nextInt(60));
+            case "color":
+                return String.format("#%06x", random.nextInt(0x1000000));
+            default:
+                if (constraints.pattern == null) {return randomWord();}
+                String sample = random.nextBoolean() ? RegexSampler.sample(constraints.patternSource, random) : null;
+                if (sample != null) {return sample;}
+                for (int tries=0; tries<maxTries; tries++) {
+                    String word = randomWord();
+                    if (constraints.pattern.matcher(word).matches()) {return word;}
+                }
+                sample = RegexSampler.sample(constraints.patternSource, random);
+                return sample == null ? randomWord() : sample;
+        }
+    }
+
+    private String randomNumber(Constraints constraints) {
+        BigDecimal min = parseNumber(constraints.min);
+        BigDecimal max = parseNumber(constraints.max);
+        BigDecimal step = parseStep(constraints.step);
+        if (min == null) {min = max == null ? BigDecimal.ZERO : max.subtract(BigDecimal.valueOf(1000));}
+        if (max == null) {max = min.add(BigDecimal.valueOf(1000));}
+        if (max.compareTo(min) < 0) {return min.toPlainString();}
+        BigDecimal value = min.add(max.subtract(min).multiply(BigDecimal.valueOf(random.nextDouble())));
+        if (step == null) {return value.setScale(2, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();}
+        value = alignToStep(value, min, step);
+        return (value.compareTo(max) > 0 ? alignToStep(max, min, step) : value).toPlainString();
+    }
+
+    private LocalDate randomDate(Constraints constraints) {
+        LocalDate min = parseDate(constraints.min);
+        LocalDate max = parseDate(constraints.max);
+        if (min == null) {min = max == null ? LocalDate.of(2000, 1, 1) : max.minusYears(10);}
+        if (max == null) {max = min.plusYears(10);}
+        long days = max.toEpochDay() - min.toEpochDay();
+        return days <= 0 ? min : min.plusDays((long) (random.nextDouble() * (days + 1)));
+    }
+
+    /**
+     * Returns the largest value at most the given value that is min plus a whole number of steps.
+     */
+    private static BigDecimal alignToStep(BigDecimal value, BigDecimal min, BigDecimal step) {
+        BigDecimal steps = value.subtract(min).divide(step, 0, RoundingMode.FLOOR);
+        return min.add(steps.multiply(step)).stripTrailingZeros();
+    }
+
+    private static BigDecimal parseNumber(String value) {
+        try {return value == null ? null : new BigDecimal(value.trim()).stripTrailingZeros();}
+        catch (NumberFormatException e) {return null;}
+    }
+
+    /**
+     * Returns the step of a number field, 1 if it isn't set, or null if any value is allowed.
+     */
+    private static BigDecimal parseStep(String value) {
+        if (value != null && value.trim().equalsIgnoreCase("any")) {return null;}
+        BigDecimal step = parseNumber(value);
+        return step == null || step.signum() <= 0 ? BigDecimal.ONE : step;
+    }
+
+    private static LocalDate parseDate(String value) {
+        try {return value == null ? null : LocalDate.parse(value.trim());}
+        catch (RuntimeException e) {return null;}
+    }
+
+    private String randomWord() {
+        return dictionary.isEmpty() ? "a" : dictionary.get(random.nextInt(dictionary.size()));
+    }
+
+    private static String sanitize(String word) {
+        String sanitized = word.replaceAll("[^A-Za-z0-9]", "");
+        return sanitized.isEmpty() ? "a" : sanitized;
+    }
+
+    private static String repeatToLength(String word, int length) {
+        if (word.isEmpty()) {word = "a";}
+        StringBuilder value = new StringBuilder(length);
+        while (value.length() < length) {value.append(word);}
+        return value.substring(0, length);
+    }
+
+    private static String fitLength(String value, Constraints constraints) {
+        if (constraints.maxLength >= 0 && value.length() > constraints.maxLength) {return value.substring(0, constraints.maxLength);}
+        if (value.length() < constraints.minLength) {return repeatToLength(value, constraints.minLength);}
+        return value;
+    }
+
+    /**
+     * Builds random strings matching simple regular expressions: literals, escapes,
+     * character classes, groups, alternation and quantifiers. Anything else, such as
+     * back references or lookaround, isn't supported.
+     */
+    static final class RegexSampler {
+        private static final String digits = "0123456789";
+        private static final String wordCharacters = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789_";
+        private static final String printable = wordCharacters + " -.@";
+
+        private final String regex;
+        private final Random random;
+        private int position = 0;
+
+        private RegexSampler(String regex, Random random) {
+            this.regex = regex;
+            this.random = random;
+        }
+
+        /**
+         * Returns a random string matching the whole regular expression.
+         *
+         * @param regex - the regular expression
+         * @param random - the source of randomness
+         * @return a matching string, or null if the expression isn't supported
+         */
+        static String sample(String regex, Random random) {
+            try {
+                RegexSampler sampler = new RegexSampler(regex, random);
+                StringBuilder out = new StringBuilder();
+                sampler.alternation(out);
+                if (sampler.position != regex.length()) {return null;}
+                String value = out.toString();
+                return Pattern.matches(regex, value) ? value : null;
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {return null;}
+        }
+
+        private void alternation(StringBuilder out) {
+            ArrayList<StringBuilder> branches = new ArrayList<>();
+            do {
+                StringBuilder branch = new StringBuilder();
+                sequence(branch);
+                branches.add(branch);
+            } while (position < regex.length() && regex.charAt(position) == '|' && ++position > 0);
+            out.append(branches.get(random.nextInt(branches.size())));
+        }
+
+        private void sequence(StringBuilder out) {
+            while (position < regex.length()) {
+                char c = regex.charAt(position);
+                if (c == '|' || c == ')') {return;}
+                if (c == '^' || c == '$') {
+                    position++;
+                    continue;
+                }
+                int atomStart = position;
+                atom(new StringBuilder());
+                int[] repeats = quantifier();
+                int next = position;
+                int count = repeats[0] + random.nextInt(repeats[1] - repeats[0] + 1);
+                for (int i=0; i<count; i++) {
+                    position = atomStart;
+                    atom(out);
+                }
+                position = next;
+            }
+        }
+
+        private void atom(StringBuilder out) {
+            char c = regex.charAt(position++);
+            if (c == '(') {
+                if (regex.startsWith("?:", position)) {position += 2;}
+                else if (regex.charAt(position) == '?') {throw new IllegalArgumentException("lookaround");}
+                alternation(out);
+                if (regex.charAt(position++) != ')') {throw new IllegalArgumentException("unclosed group");}
+            }
+            else if (c == '[') {out.append(characterClass());}
+            else if (c == '.') {out.append(pick(printable));}
+            else if (c == '\\') {out.append(escape(regex.charAt(position++)));}
+            else if ("*+?{".indexOf(c) >= 0) {throw new IllegalArgumentException("dangling quantifier");}
+            else {out.append(c);}
+        }
+
+        private char escape(char c) {
+            switch (c) {
+                case 'd': return pick(digits);
+                case 'w': return pick(wordCharacters);
+                case 's': return ' ';
+                case 'D': case 'W': case 'S': return '-';
+                default:
+                    if (Character.isLetterOrDigit(c)) {throw new IllegalArgumentException("unsupported escape");}
+                    return c;
+            }
+        }
+
+        private char characterClass() {
+            boolean negated = regex.charAt(position) == '^';
+            if (negated) {position++;}
+            StringBuilder members = new StringBuilder();
+            boolean first = true;
+            while (first || regex.charAt(position) != ']') {
+                first = false;
+                char c = regex.charAt(position++);
+                if (c == '\\') {
+                    char e = regex.charAt(position++);
+                    if (e == 'd') {members.append(digits);}
+                    else if (e == 'w') {members.append(wordCharacters);}
+                    else if (e == 's') {members.append(' ');}
+                    else {members.append(e);}
+                } else if (regex.charAt(position) == '-' && regex.charAt(position + 1) != ']') {
+                    char end = regex.charAt(position + 1);
+                    position += 2;
+                    for (char m=c; m<=end; m++) {members.append(m);}
+                } else {members.append(c);}
+            }
+            position++;
+            if (!negated) {return pick(members.toString());}
+            StringBuilder allowed = new StringBuilder();
+            for (char c : printable.toCharArray()) {if (members.indexOf(String.valueOf(c)) < 0) {allowed.append(c);}}
+            return pick(allowed.toString());
+        }
+
+        /**
+         * Reads the quantifier after an atom, if any.
+         *
+         * @return the least and most repetitions allowed
+         */
+        private int[] quantifier() {
+            if (position >= regex.length()) {return new int[] {1, 1};}
+            char c = regex.charAt(position);
+            int[] repeats;
+            if (c == '?') {repeats = new int[] {0, 1};}
+            else if (c == '*') {repeats = new int[] {0, maxRepeats};}
+            else if (c == '+') {repeats = new int[] {1, 1 + maxRepeats};}
+            else if (c == '{') {
+                int close = regex.indexOf('}', position);
+                String[] bounds = regex.substring(position + 1, close).split(",", -1);
+                int least = Integer.parseInt(bounds[0].trim());
+                int most = bounds.length == 1 ? least : bounds[1].trim().isEmpty() ? least + maxRepeats : Integer.parseInt(bounds[1].trim());
+                position = close;
+                repeats = new int[] {least, Math.max(least, most)};
+            } else {return new int[] {1, 1};}
+            position++;
+            if (position < regex.length() && (regex.charAt(position) == '?' || regex.charAt(position) == '+')) {position++;}
+            return repeats;
+        }
+
+        private char pick(String characters) {
+            if (characters.isEmpty()) {throw new IllegalArgumentException("empty class");}
+            return characters.charAt(random.nextInt(characters.length()));
+        }
+    }
+}
@@ -14,6 +14,8 @@ import org.openqa.selenium.WebElement;
  * Takes the file from the path indicated at the start of server, 
  * and run through the same commands stored in
  * the log file from a PREVIOUS runthrough.
+ * External links are followed or intercepted according to the current
+ * setting, not the one the log was recorded with.
  */
 public class LogReplayTester extends LoggingAwareTester {
 
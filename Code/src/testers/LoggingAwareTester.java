@@ -1,9 +1,15 @@
 package testers;
 
 import org.openqa.selenium.WebElement;
+
+import logger.RunStatistics;
 import serverDriver.SelendroidServerDriver;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -21,6 +27,13 @@ abstract class LoggingAwareTester extends Tester {
     private static String logMessageWebviewBack = "Used Webview Back";
     private static String logMessageDataSeparator = ":";
     private static String logMessageFollowExternalLinkAndReturn = "Briefly Visiting Target#";
+    private static String logMessageTeleport = "Teleported To: ";
+    private static String logMessageRestoreBranchPoint = "Restored Branch Point: ";
+    private static String logMessageFormSubmit = "Submitted Form#";
+    private static String logMessageFormFieldSeparator = "&";
+    private static String logMessageFormValueSeparator = "=";
+
+    private int actionDepth = 0;
     
     /**
      * Creates an instance of the logging aware tester with the provided
@@ -55,6 +68,110 @@ abstract class LoggingAwareTester extends Tester {
         }
     }
 
+    /**
+     * Returns the action string describing the given interaction with a target,
+     * in the same form it would be logged.
+     * 
+     * @param target - the target being acted upon
+     * @param targetIndex - index of the target in the WebView
+     * @param inputString - the string to be used in text-input interaction
+     * @return a string describing the action
+     */
+    String composeActionForTarget(WebElement target, int targetIndex, String inputString) {
+        if (isInput(target)) {return composeInsertTextMessage(targetIndex, inputString);}
+        return composeActionForTarget(target, targetIndex);
+    }
+
+    /**
+     * Returns the kind of action the run statistics should count an interaction with the target as.
+     * 
+     * @param target - the target being acted upon
+     * @return the kind of action
+     */
+    RunStatistics.Action actionKindForTarget(WebElement target) {
+        if (isInput(target)) {return RunStatistics.Action.INPUT;}
+        if (isClickable(target) && isExternalLink(target)) {return RunStatistics.Action.EXTERNAL_LINK;}
+        return RunStatistics.Action.CLICK;
+    }
+
+    /**
+     * Runs the given action and records it in the state graph afterwards, unless
+     * it is part of an enclosing action which will be recorded instead. If the action
+     * throws, it is recorded as having failed before the exception is passed on.
+     * 
+     * @param action - the action string to record
+     * @param kind - the kind of action for the run statistics
+     * @param runnable - the action to run
+     */
+    private void runAndRecord(String action, RunStatistics.Action kind, Runnable runnable) {
+        long startNanos = System.nanoTime();
+        boolean failed = true;
+        actionDepth++;
+        try {
+            runnable.run();
+            failed = false;
+        } finally {
+            actionDepth--;
+            if (actionDepth == 0) {
+                recordAction(action, kind, startNanos);
+                if (failed) {recordActionFailure();}
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see testers.Tester#doAction(org.openqa.selenium.WebElement, int, java.lang.String)
+     */
+    void doAction(WebElement target, int targetIndex, String inputString) {
+        runAndRecord(composeActionForTarget(target, targetIndex, inputString), actionKindForTarget(target), 
+                () -> super.doAction(target, targetIndex, inputString));
+    }
+
+    /* (non-Javadoc)
+     * @see testers.Tester#submitForm(java.util.ArrayList, int[], java.util.List)
+     */
+    void submitForm(ArrayList<WebElement> possibleTargets, int[] targetIndices, List<String> values) {
+        runAndRecord(composeSubmitFormMessage(targetIndices, values), RunStatistics.Action.FORM_SUBMIT, 
+                () -> super.submitForm(possibleTargets, targetIndices, values));
+    }
+
+    /* (non-Javadoc)
+     * @see testers.Tester#webviewBack()
+     */
+    boolean webviewBack() {
+        runAndRecord(composeWebviewBackMessage(), RunStatistics.Action.WEBVIEW_BACK, super::webviewBack);
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see testers.Tester#teleport(java.lang.String)
+     */
+    void teleport(String url) {
+        runAndRecord(composeTeleportMessage(url), RunStatistics.Action.TELEPORT, () -> super.teleport(url));
+    }
+
+    /* (non-Javadoc)
+     * @see testers.Tester#restoreBranchSnapshot(long, java.lang.String)
+     */
+    void restoreBranchSnapshot(long pageFingerprint, String snapshot) {
+        runAndRecord(composeRestoreBranchPointMessage(pageFingerprint), RunStatistics.Action.BRANCH_RESTORE, 
+                () -> super.restoreBranchSnapshot(pageFingerprint, snapshot));
+    }
+
+    /* (non-Javadoc)
+     * @see testers.Tester#hardwareBack()
+     */
+    void hardwareBack() {
+        runAndRecord(composeHardwareBackMessage(), RunStatistics.Action.HARDWARE_BACK, super::hardwareBack);
+    }
+
+    /* (non-Javadoc)
+     * @see testers.Tester#hardwareBackAfterDelay()
+     */
+    void hardwareBackAfterDelay() {
+        runAndRecord(composeHardwareBackAfterDelayMessage(), RunStatistics.Action.HARDWARE_BACK, super::hardwareBackAfterDelay);
+    }
+
     /**
      * Strips out unnecessary formatting so that the action may be logged
      * in JSON formatting. 
@@ -90,6 +207,20 @@ abstract class LoggingAwareTester extends Tester {
         } else if (action.startsWith(logMessageFollowExternalLinkAndReturn)) {
             targetIndex = Integer.parseInt(action.substring(logMessageFollowExternalLinkAndReturn.length()));
             doAction(possibleTargets.get(targetIndex), targetIndex, inputString);
+        } else if (action.startsWith(logMessageFormSubmit)) {
+            String[] fields = action.substring(action.indexOf(logMessageDataSeparator) + 1).split(logMessageFormFieldSeparator);
+            int[] targetIndices = new int[fields.length];
+            ArrayList<String> values = new ArrayList<>();
+            for (int i=0; i<fields.length; i++) {
+                int separator = fields[i].indexOf(logMessageFormValueSeparator);
+                targetIndices[i] = Integer.parseInt(fields[i].substring(0, separator));
+                values.add(decodeFormValue(fields[i].substring(separator + 1)));
+            }
+            submitForm(possibleTargets, targetIndices, values);
+        } else if (action.startsWith(logMessageTeleport)) {
+            teleport(action.substring(logMessageTeleport.length()));
+        } else if (action.startsWith(logMessageRestoreBranchPoint)) {
+            restoreBranchPoint(Long.parseLong(action.substring(logMessageRestoreBranchPoint.length())));
         } else if (action.equals(logMessageDelay)) {
             delay();
         } else if (action.equals(logMessageHardwareBack)) {
@@ -198,6 +329,53 @@ abstract class LoggingAwareTester extends Tester {
         return composeActionWithTargetAndDataMessage(logMessageTextboxInput, targetIndex, inputString);
     }
 
+    /**
+     * Constructs an action for filling in and submitting a form. The values are 
+     * URL-encoded so that they cannot be confused with the separators.
+     * 
+     * @param targetIndices - the indices of the form's inputs that are filled
+     * @param values - the value for each input, in the same order
+     * @return - the constructed action 
+     */
+    static String composeSubmitFormMessage(int[] targetIndices, List<String> values) {
+        StringBuilder data = new StringBuilder();
+        for (int i=0; i<targetIndices.length; i++) {
+            if (i > 0) {data.append(logMessageFormFieldSeparator);}
+            data.append(targetIndices[i]).append(logMessageFormValueSeparator).append(encodeFormValue(values.get(i)));
+        }
+        return composeActionWithTargetAndDataMessage(logMessageFormSubmit, targetIndices[0], data.toString());
+    }
+
+    private static String encodeFormValue(String value) {
+        try {return URLEncoder.encode(value, "UTF-8");}
+        catch (UnsupportedEncodingException e) {throw new IllegalStateException(e);}
+    }
+
+    private static String decodeFormValue(String value) {
+        try {return URLDecoder.decode(value, "UTF-8");}
+        catch (UnsupportedEncodingException e) {throw new IllegalStateException(e);}
+    }
+
+    /**
+     * Constructs an action to load a local page directly
+     * 
+     * @param url - the URL of the page to load
+     * @return - the constructed action 
+     */
+    static String composeTeleportMessage(String url) {
+        return composeActionMessage(String.format("%s%s", logMessageTeleport, url));
+    }
+
+    /**
+     * Constructs an action to return to a branch point with its web storage restored
+     * 
+     * @param pageFingerprint - the fingerprint of the branch point
+     * @return - the constructed action 
+     */
+    static String composeRestoreBranchPointMessage(long pageFingerprint) {
+        return composeActionMessage(String.format("%s%s", logMessageRestoreBranchPoint, pageFingerprint));
+    }
+
     /**
      * Constructs an action to send the hardware back signal after a specified delay
      * 
@@ -238,4 +416,60 @@ abstract class LoggingAwareTester extends Tester {
      * @return - true if the action is a follow external link and return action else false
      */
     boolean isFollowExternalLinkAndReturn(String action) {return stripCoreOfAction(action).startsWith(logMessageFollowExternalLinkAndReturn);}
+
+    /**
+     * Returns the index of the target the given action acts upon.
+     * 
+     * @param action - the action to be examined
+     * @return - the index of the action's target, or -1 if the action has no target
+     */
+    int getTargetIndex(String action) {
+        action = stripCoreOfAction(action);
+        if (action.startsWith(logMessageButtonClick)) {
+            return Integer.parseInt(action.substring(logMessageButtonClick.length()));
+        } else if (action.startsWith(logMessageTextboxInput)) {
+            return Integer.parseInt(action.substring(logMessageTextboxInput.length(), action.indexOf(logMessageDataSeparator)));
+        } else if (action.startsWith(logMessageFollowExternalLinkAndReturn)) {
+            return Integer.parseInt(action.substring(logMessageFollowExternalLinkAndReturn.length()));
+        } else if (action.startsWith(logMessageFormSubmit)) {
+            return Integer.parseInt(action.substring(logMessageFormSubmit.length(), action.indexOf(logMessageDataSeparator)));
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true/false whether or not the given action fills in and submits a form
+     * 
+     * @param action - the action to be examined
+     * @return - true if the action is a form submit action else false
+     */
+    boolean isFormSubmit(String action) {return stripCoreOfAction(action).startsWith(logMessageFormSubmit);}
+
+    /**
+     * Returns true/false whether or not the given action is a teleport action
+     * 
+     * @param action - the action to be examined
+     * @return - true if the action is a teleport action else false
+     */
+    boolean isTeleport(String action) {return stripCoreOfAction(action).startsWith(logMessageTeleport);}
+
+    /**
+     * Returns true/false whether or not the given action returns to a branch point
+     * 
+     * @param action - the action to be examined
+     * @return - true if the action is a restore branch point action else false
+     */
+    boolean isRestoreBranchPoint(String action) {return stripCoreOfAction(action).startsWith(logMessageRestoreBranchPoint);}
+
+    /**
+     * Returns true/false whether or not the given action goes back in the history,
+     * so that the page it leads to depends on how the current page was reached
+     * 
+     * @param action - the action to be examined
+     * @return - true if the action is a webview or hardware back action else false
+     */
+    static boolean isBackAction(String action) {
+        return action.equals(composeWebviewBackMessage()) || action.equals(composeHardwareBackMessage())
+                || action.equals(composeHardwareBackAfterDelayMessage());
+    }
 }
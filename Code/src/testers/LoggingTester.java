@@ -5,6 +5,7 @@ import org.openqa.selenium.WebElement;
 import serverDriver.SelendroidServerDriver;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Logging Tester is an extension of the LoggingAwareTester class and allows
@@ -66,6 +67,16 @@ abstract class LoggingTester extends LoggingAwareTester {
         endingAction();
     }
 
+    /* (non-Javadoc)
+     * @see testers.Tester#submitForm(java.util.ArrayList, int[], java.util.List)
+     */
+    void submitForm(ArrayList<WebElement> possibleTargets, int[] targetIndices, List<String> values) {
+        startingAction();
+        logFile.log(composeSubmitFormMessage(targetIndices, values));
+        super.submitForm(possibleTargets, targetIndices, values);
+        endingAction();
+    }
+
     /* (non-Javadoc)
      * @see testers.Tester#webviewBack()
      */
@@ -74,6 +85,22 @@ abstract class LoggingTester extends LoggingAwareTester {
         return super.webviewBack();
     }
 
+    /* (non-Javadoc)
+     * @see testers.Tester#teleport(java.lang.String)
+     */
+    void teleport(String url) {
+        logFile.log(composeTeleportMessage(url));
+        super.teleport(url);
+    }
+
+    /* (non-Javadoc)
+     * @see testers.Tester#restoreBranchSnapshot(long, java.lang.String)
+     */
+    void restoreBranchSnapshot(long pageFingerprint, String snapshot) {
+        logFile.log(composeRestoreBranchPointMessage(pageFingerprint));
+        super.restoreBranchSnapshot(pageFingerprint, snapshot);
+    }
+
     /* (non-Javadoc)
      * @see testers.Tester#hardwareBack()
      */
@@ -150,6 +177,14 @@ abstract class LoggingTester extends LoggingAwareTester {
     		logComment(String.format("pagesVisited: %s,", String.valueOf(getPagesVisited())));
     }
     
+    /**
+     * Logs the number of distinct pages and transitions in the state graph
+     */
+    void logStatesDiscovered() {
+		logComment(String.format("statesDiscovered: %s,", getStateGraph().getNodeCount()));
+		logComment(String.format("transitionsDiscovered: %s,", getStateGraph().getEdgeCount()));
+    }
+    
     /**
      * Logs the number of links clicked during testing
      */
@@ -189,6 +224,14 @@ abstract class LoggingTester extends LoggingAwareTester {
         super.followExternalLinkAndReturn(target, targetIndex);
     }
 
+    /* (non-Javadoc)
+     * @see testers.Tester#recordInterceptedLink(java.lang.String)
+     */
+    void recordInterceptedLink(String url) {
+        logComment(String.format("interceptedExternalLink: \"%s\",", url));
+        super.recordInterceptedLink(url);
+    }
+
     /* (non-Javadoc)
      * @see testers.Tester#hardwareBackAfterDelay()
      */
@@ -0,0 +1,87 @@
+package testers;
+
+/**
+ * PageRecord holds what HistoryAwareTester remembers about one page:
+ * the index of the next target to act on, which targets have been
+ * handed out so far, and the interned ids of the targets' hrefs.
+ */
+final class PageRecord {
+    static final int fullyVisited = 0;
+
+    int cursor;
+    final long[] visitedTargets;
+    final int[] hrefIds;
+    boolean referenced = true;
+
+    /**
+     * Creates a record for a page with the given interned target hrefs.
+     * 
+     * Note: the cursor starts at 1 since target 0 is the page's back button,
+     * and a page with a single target is fully visited from the start.
+     * 
+     * @param hrefIds - the interned hrefs of the targets on the page, in page order
+     */
+    PageRecord(int[] hrefIds) {
+        this.hrefIds = hrefIds;
+        this.visitedTargets = new long[(hrefIds.length + 63) >>> 6];
+        this.cursor = hrefIds.length == 1 ? fullyVisited : 1;
+    }
+
+    /**
+     * Recreates a record that was written out with writeTo.
+     * 
+     * @param buffer - the buffer positioned at the start of the record
+     */
+    PageRecord(java.nio.ByteBuffer buffer) {
+        this.cursor = buffer.getInt();
+        this.hrefIds = new int[buffer.getInt()];
+        this.visitedTargets = new long[(hrefIds.length + 63) >>> 6];
+        for (int i=0; i<visitedTargets.length; i++) {visitedTargets[i] = buffer.getLong();}
+        for (int i=0; i<hrefIds.length; i++) {hrefIds[i] = buffer.getInt();}
+    }
+
+    /**
+     * Returns the number of bytes writeTo needs for this record.
+     * 
+     * @return the serialized size of the record
+     */
+    int serializedSize() {return 8 + visitedTargets.length * 8 + hrefIds.length * 4;}
+
+    /**
+     * Writes this record into the given buffer.
+     * 
+     * @param buffer - the buffer to write to, with at least serializedSize() bytes remaining
+     */
+    void writeTo(java.nio.ByteBuffer buffer) {
+        buffer.putInt(cursor);
+        buffer.putInt(hrefIds.length);
+        for (long word : visitedTargets) {buffer.putLong(word);}
+        for (int hrefId : hrefIds) {buffer.putInt(hrefId);}
+    }
+
+    int getTargetCount() {return hrefIds.length;}
+
+    /**
+     * Marks the page as fully visited without handing out its targets.
+     */
+    void markFullyVisited() {cursor = fullyVisited;}
+
+    boolean isFullyVisited() {return cursor == fullyVisited;}
+
+    boolean wasTargetVisited(int targetIndex) {
+        return (visitedTargets[targetIndex >>> 6] & (1L << targetIndex)) != 0;
+    }
+
+    /**
+     * Returns the index of the next target and advances the cursor past it,
+     * wrapping around to 0 once the last target has been handed out.
+     * 
+     * @return the index of the next target to act on
+     */
+    int takeNextTarget() {
+        int targetIndex = cursor;
+        if (targetIndex < hrefIds.length) {visitedTargets[targetIndex >>> 6] |= 1L << targetIndex;}
+        cursor = (isFullyVisited() || targetIndex == hrefIds.length - 1) ? fullyVisited : targetIndex + 1;
+        return targetIndex;
+    }
+}
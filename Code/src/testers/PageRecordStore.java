@@ -0,0 +1,209 @@
+package testers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * PageRecordStore maps 64-bit page fingerprints to their PageRecord using
+ * open addressing with linear probing, so lookups neither box the key nor
+ * allocate. Target hrefs are interned so that each distinct href string is
+ * stored only once however many pages link to it.
+ * 
+ * At most maxHotRecords records are kept on the heap. Beyond that, records
+ * that have not been used recently (chosen by a clock sweep) are spilled to
+ * SpilledPageRecords and brought back the next time they are looked up.
+ * The interned hrefs are not spilled, so they still take heap per distinct href.
+ */
+final class PageRecordStore {
+    private static final int initialCapacity = 64;
+    static int maxHotRecords = 50000;
+
+    private long[] keys = new long[initialCapacity];
+    private PageRecord[] records = new PageRecord[initialCapacity];
+    private int hotSize = 0;
+    private int size = 0;
+    private int clockHand = 0;
+    private SpilledPageRecords spilled = null;
+
+    private HashMap<String, Integer> hrefIds = new HashMap<>();
+    private ArrayList<String> hrefs = new ArrayList<>();
+
+    /**
+     * Spreads the bits of a fingerprint so that similar fingerprints land in different slots.
+     * 
+     * @param fingerprint - the fingerprint to mix
+     * @return the mixed fingerprint
+     */
+    static long mix(long fingerprint) {
+        fingerprint ^= fingerprint >>> 33;
+        fingerprint *= 0xff51afd7ed558ccdL;
+        fingerprint ^= fingerprint >>> 33;
+        return fingerprint;
+    }
+
+    /**
+     * Returns the slot holding the given fingerprint, or the empty slot where it would go.
+     * 
+     * @param fingerprint - the fingerprint to look for
+     * @return the index of the slot
+     */
+    private int slotFor(long fingerprint) {
+        int mask = keys.length - 1;
+        int slot = (int) mix(fingerprint) & mask;
+        while (records[slot] != null && keys[slot] != fingerprint) {slot = (slot + 1) & mask;}
+        return slot;
+    }
+
+    /**
+     * Returns the record of the given page, or null if it was never stored.
+     * A record that was spilled to disk is brought back onto the heap.
+     * 
+     * @param fingerprint - the fingerprint of the page
+     * @return the record of the page
+     */
+    PageRecord get(long fingerprint) {
+        PageRecord record = records[slotFor(fingerprint)];
+        if (record == null && spilled != null) {
+            record = spilled.read(fingerprint);
+            if (record != null) {putHot(fingerprint, record);}
+        }
+        if (record != null) {record.referenced = true;}
+        return record;
+    }
+
+    boolean contains(long fingerprint) {
+        return records[slotFor(fingerprint)] != null || (spilled != null && spilled.contains(fingerprint));
+    }
+
+    /**
+     * Stores the record of a page that is not in the store yet.
+     * 
+     * @param fingerprint - the fingerprint of the page
+     * @param record - the record to store
+     */
+    void put(long fingerprint, PageRecord record) {
+        putHot(fingerprint, record);
+        size++;
+    }
+
+    /**
+     * Stores the record of a page, replacing the existing one if the page is already in the store.
+     * 
+     * @param fingerprint - the fingerprint of the page
+     * @param record - the record to store
+     */
+    void replace(long fingerprint, PageRecord record) {
+        if (get(fingerprint) == null) {size++;}
+        putHot(fingerprint, record);
+    }
+
+    /**
+     * Stores a record on the heap, spilling a cold one if that goes over maxHotRecords.
+     * 
+     * @param fingerprint - the fingerprint of the page
+     * @param record - the record to store
+     */
+    private void putHot(long fingerprint, PageRecord record) {
+        int slot = slotFor(fingerprint);
+        if (records[slot] == null) {
+            if ((hotSize + 1) * 2 > keys.length) {
+                grow();
+                slot = slotFor(fingerprint);
+            }
+            hotSize++;
+        }
+        keys[slot] = fingerprint;
+        records[slot] = record;
+        record.referenced = true;
+        if (hotSize > maxHotRecords) {spillColdRecord();}
+    }
+
+    /**
+     * Sweeps the clock hand over the table, giving recently used records a second
+     * chance, and writes the first record found unused to disk.
+     */
+    private void spillColdRecord() {
+        if (spilled == null) {spilled = new SpilledPageRecords();}
+        int mask = keys.length - 1;
+        while (true) {
+            clockHand = (clockHand + 1) & mask;
+            PageRecord record = records[clockHand];
+            if (record == null) {continue;}
+            if (record.referenced) {record.referenced = false;}
+            else {
+                spilled.write(keys[clockHand], record);
+                removeSlot(clockHand);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Empties the given slot and shifts back any later records of the same probe
+     * sequence so that lookups never stop early at the hole.
+     * 
+     * @param slot - the slot to empty
+     */
+    private void removeSlot(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        records[hole] = null;
+        hotSize--;
+        for (int i = (hole + 1) & mask; records[i] != null; i = (i + 1) & mask) {
+            int home = (int) mix(keys[i]) & mask;
+            boolean canMove = hole <= i ? (home <= hole || home > i) : (home <= hole && home > i);
+            if (canMove) {
+                keys[hole] = keys[i];
+                records[hole] = records[i];
+                records[i] = null;
+                hole = i;
+            }
+        }
+    }
+
+    /**
+     * Doubles the table and re-inserts every record.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        PageRecord[] oldRecords = records;
+        keys = new long[oldKeys.length * 2];
+        records = new PageRecord[oldRecords.length * 2];
+        for (int i=0; i<oldKeys.length; i++) {
+            if (oldRecords[i] != null) {
+                int slot = slotFor(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                records[slot] = oldRecords[i];
+            }
+        }
+    }
+
+    int size() {return size;}
+
+    /**
+     * Returns the id of the given href, assigning a new one if it hasn't been seen.
+     * 
+     * @param href - the href to intern, which may be null for targets without one
+     * @return the id of the href, or -1 for null
+     */
+    int internHref(String href) {
+        if (href == null) {return -1;}
+        Integer id = hrefIds.get(href);
+        if (id == null) {
+            id = hrefs.size();
+            hrefs.add(href);
+            hrefIds.put(href, id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the href with the given id.
+     * 
+     * @param id - an id returned by internHref
+     * @return the href, or null for -1
+     */
+    String getHref(int id) {return id < 0 ? null : hrefs.get(id);}
+
+    int getHrefCount() {return hrefs.size();}
+}
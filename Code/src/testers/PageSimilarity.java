@@ -0,0 +1,149 @@
+package testers;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * PageSimilarity groups pages that share a structure, such as the detail pages
+ * of a directory app which differ only in their text, so that testers can stop
+ * exploring a template once they have seen enough pages built from it.
+ * 
+ * Pages are compared by a 64-bit SimHash of their markup with the text and
+ * attribute values left out. Pages whose hashes differ in at most maxDistance
+ * bits belong to the same group. Groups are found through four 16-bit bands
+ * of the hash, so any two hashes within 3 bits share at least one band exactly.
+ */
+public final class PageSimilarity {
+    /** The number of pages of one group that are explored before the rest count as visited; 0 explores them all. */
+    public static int nearDuplicateLimit = 3;
+    /** The largest number of differing hash bits for two pages to count as near-duplicates. */
+    public static int maxDistance = 3;
+
+    private static Pattern tagPattern = Pattern.compile("<\\s*([a-zA-Z][\\w:-]*)([^>]*)>");
+    private static Pattern attributePattern = Pattern.compile("([\\w:-]+)\\s*=\\s*(\"[^\"]*\"|'[^']*'|\\S+)");
+    private static int shingleSize = 3;
+    private static int bands = 4;
+
+    private ArrayList<Long> groupHashes = new ArrayList<>();
+    private ArrayList<Integer> groupSizes = new ArrayList<>();
+    private ArrayList<HashMap<Integer, ArrayList<Integer>>> bandBuckets = new ArrayList<>();
+    private int pagesCollapsed = 0;
+
+    PageSimilarity() {
+        for (int i=0; i<bands; i++) {bandBuckets.add(new HashMap<>());}
+    }
+
+    /**
+     * Computes the structural SimHash of a page source. Each element contributes its
+     * tag name, its attribute names, and its class attribute value; runs of consecutive 
+     * elements are hashed together so that the order of elements matters too.
+     * 
+     * @param pageSource - the page source to hash
+     * @return the 64-bit SimHash of the page's structure
+     */
+    static long structureHash(String pageSource) {
+        ArrayList<String> elements = new ArrayList<>();
+        Matcher tag = tagPattern.matcher(pageSource);
+        while (tag.find()) {
+            StringBuilder element = new StringBuilder(tag.group(1).toLowerCase());
+            Matcher attribute = attributePattern.matcher(tag.group(2));
+            while (attribute.find()) {
+                element.append(' ').append(attribute.group(1));
+                if (attribute.group(1).equals("class")) {element.append('=').append(attribute.group(2));}
+            }
+            elements.add(element.toString());
+        }
+
+        int[] weights = new int[64];
+        for (int i=0; i + shingleSize <= Math.max(elements.size(), shingleSize); i++) {
+            StringBuilder shingle = new StringBuilder();
+            for (int j=i; j<Math.min(i + shingleSize, elements.size()); j++) {shingle.append(elements.get(j)).append('>');}
+            long feature = Tester.fingerprint(shingle.toString());
+            for (int bit=0; bit<64; bit++) {weights[bit] += ((feature >>> bit) & 1) == 1 ? 1 : -1;}
+        }
+        long hash = 0;
+        for (int bit=0; bit<64; bit++) {
+            if (weights[bit] > 0) {hash |= 1L << bit;}
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the band of the given hash used to look up its group.
+     * 
+     * @param hash - the structural hash
+     * @param band - which of the bands to return
+     * @return the 16 bits of the band
+     */
+    private static int band(long hash, int band) {
+        return (int) (hash >>> (band * 16)) & 0xffff;
+    }
+
+    /**
+     * Adds a new page to its group of near-duplicates, creating the group if there is none.
+     * 
+     * @param hash - the structural hash of the page
+     * @return the number of pages that were already in the group
+     */
+    int addPage(long hash) {
+        int group = findGroup(hash);
+        if (group < 0) {
+            group = groupHashes.size();
+            groupHashes.add(hash);
+            groupSizes.add(0);
+            for (int i=0; i<bands; i++) {
+                bandBuckets.get(i).computeIfAbsent(band(hash, i), k -> new ArrayList<>()).add(group);
+            }
+        }
+        int pagesBefore = groupSizes.get(group);
+        groupSizes.set(group, pagesBefore + 1);
+        return pagesBefore;
+    }
+
+    /**
+     * Finds the group whose first page is within maxDistance bits of the given hash.
+     * 
+     * @param hash - the structural hash of a page
+     * @return the index of the group, or -1 if there is none
+     */
+    private int findGroup(long hash) {
+        for (int i=0; i<bands; i++) {
+            ArrayList<Integer> candidates = bandBuckets.get(i).get(band(hash, i));
+            if (candidates == null) {continue;}
+            for (int group : candidates) {
+                if (Long.bitCount(groupHashes.get(group) ^ hash) <= maxDistance) {return group;}
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if a page joining a group that already had the given number of
+     * pages should be treated as visited instead of explored.
+     * 
+     * @param pagesBefore - the number returned by addPage
+     * @return true if the page should be collapsed into its group
+     */
+    boolean shouldCollapse(int pagesBefore) {
+        boolean collapse = nearDuplicateLimit > 0 && pagesBefore >= nearDuplicateLimit;
+        if (collapse) {pagesCollapsed++;}
+        return collapse;
+    }
+
+    int getPagesCollapsed() {return pagesCollapsed;}
+
+    int getGroupCount() {return groupHashes.size();}
+
+    /**
+     * Restores a page added before a checkpoint.
+     * 
+     * @param in - the record's payload
+     */
+    void restorePage(DataInputStream in) throws IOException {
+        shouldCollapse(addPage(in.readLong()));
+    }
+}
@@ -0,0 +1,90 @@
+package testers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * PathTree stores sequences of actions from the starting page as a tree of parent
+ * pointers, so that paths sharing a prefix share its storage. A path is referred
+ * to by the id of its last node, and the empty path is the root.
+ *
+ * Depth-first exploration remembers a path for every page it leaves, each one step
+ * longer than one remembered before it, so keeping a copy of every path would take
+ * heap quadratic in the depth while the tree takes one node per action.
+ */
+final class PathTree {
+    static final int root = 0;
+
+    private int[] parents = new int[64];
+    private int[] depths = new int[64];
+    private String[] actions = new String[64];
+    private int size = 1;
+    private HashMap<String, Integer> actionIds = new HashMap<>();
+    private HashMap<Long, Integer> children = new HashMap<>();
+
+    /**
+     * Returns the id of the given path, adding whatever part of it isn't in the tree yet.
+     *
+     * @param path - the actions from the starting page in order
+     * @return the id of the path
+     */
+    int intern(List<String> path) {
+        int node = root;
+        for (String action : path) {
+            Integer actionId = actionIds.get(action);
+            if (actionId == null) {
+                actionId = actionIds.size();
+                actionIds.put(action, actionId);
+            }
+            long key = ((long) node << 32) | actionId;
+            Integer child = children.get(key);
+            if (child == null) {
+                child = addNode(node, action);
+                children.put(key, child);
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * Appends a node to the tree.
+     *
+     * @param parent - the id of the parent node
+     * @param action - the action leading from the parent to the new node
+     * @return the id of the new node
+     */
+    private int addNode(int parent, String action) {
+        if (size == parents.length) {
+            parents = Arrays.copyOf(parents, size * 2);
+            depths = Arrays.copyOf(depths, size * 2);
+            actions = Arrays.copyOf(actions, size * 2);
+        }
+        parents[size] = parent;
+        depths[size] = depths[parent] + 1;
+        actions[size] = action;
+        return size++;
+    }
+
+    /**
+     * Returns the actions of the given path.
+     *
+     * @param node - the id of the path
+     * @return the actions from the starting page in order
+     */
+    ArrayList<String> path(int node) {
+        String[] path = new String[depths[node]];
+        for (int i=path.length-1; i>=0; i--, node=parents[node]) {path[i] = actions[node];}
+        return new ArrayList<>(Arrays.asList(path));
+    }
+
+    /**
+     * Returns the number of actions in the given path.
+     *
+     * @param node - the id of the path
+     * @return the length of the path
+     */
+    int depth(int node) {return depths[node];}
+}
@@ -0,0 +1,327 @@
+package testers;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.PriorityQueue;
+
+import org.openqa.selenium.WebElement;
+
+import logger.LogFileGenerator;
+import serverDriver.CoverageTracker;
+import serverDriver.SelendroidServerDriver;
+
+/**
+ * PriorityTester is an extension of TreeInspiredTester which, instead of visiting
+ * targets in page order, keeps every target it has seen but not yet tried in a
+ * priority frontier and always takes the most promising one it can reach cheaply.
+ *
+ * A target's score rewards links never clicked anywhere in the app, pages with many
+ * targets still to try, and href patterns whose targets discovered the most so far,
+ * and it is penalised by the number of actions needed to navigate to the target's page.
+ */
+public class PriorityTester extends TreeInspiredTester {
+	static double noveltyWeight = 2.0;
+	static double yieldWeight = 1.0;
+	static double outLinkWeight = 0.5;
+	static double distanceWeight = 0.5;
+	static double newTargetYield = 0.1;
+	static int maxRescoresPerStep = 32;
+	private static String inputPattern = "input";
+
+	/**
+	 * A target on a page that has not been tried yet.
+	 */
+	private static final class FrontierEntry {
+		final long pageFingerprint;
+		final int targetIndex;
+		final String action;
+		final String pattern;
+		final long hrefId;
+		double key;
+
+		FrontierEntry(long pageFingerprint, int targetIndex, String action, String pattern, long hrefId) {
+			this.pageFingerprint = pageFingerprint;
+			this.targetIndex = targetIndex;
+			this.action = action;
+			this.pattern = pattern;
+			this.hrefId = hrefId;
+		}
+	}
+
+	private PriorityQueue<FrontierEntry> frontier = new PriorityQueue<>((a, b) -> Double.compare(b.key, a.key));
+	private HashMap<Long, Integer> remainingByPage = new HashMap<>();
+	private HashMap<String, double[]> yieldByPattern = new HashMap<>();
+	private String pendingPattern = null;
+	private int pagesBeforeAction;
+	private int targetsBeforeAction;
+	private int targetsDroppedUnreachable = 0;
+	private ArrayList<FrontierEntry> frontierAddedSinceCheckpoint = new ArrayList<>();
+	private ArrayList<FrontierEntry> frontierRemovedSinceCheckpoint = new ArrayList<>();
+	private LinkedHashMap<String, FrontierEntry> restoredFrontier = null;
+
+	/**
+	 * Creates an instance of PriorityTester with the given log file generator
+	 * instance, strings to be tested with, and Selendroid server driver instance.
+	 *
+	 * @param logFile - an instance of the LogFileGenerator
+	 * @param testStrings - the strings to be used during testing
+	 * @param driver - an instance of SelendroidServerDriver on the APK being tested
+	 */
+	public PriorityTester(LogFileGenerator logFile, ArrayList<String> testStrings, SelendroidServerDriver driver) {
+		super(logFile, testStrings, driver);
+	}
+
+	/* (non-Javadoc)
+	 * Note: a new page has all of its targets added to the frontier at once. Once the
+	 * previously chosen target's actions have all been carried out, its yield is credited
+	 * to its href pattern and the best target in the frontier is planned, preceded by a
+	 * navigation marker if it is on another page.
+	 * @see testers.TreeInspiredTester#planNextMoves(java.util.ArrayList)
+	 */
+	void planNextMoves(ArrayList<WebElement> possibleTargets) {
+		long pageFingerprint = getPageFingerprint();
+		if (!wasFullyVisited(pageFingerprint)) {addPageToFrontier(pageFingerprint, possibleTargets);}
+		if (!futureTargets.isEmpty()) {return;}
+
+		creditPendingYield();
+		FrontierEntry entry = takeBestEntry(pageFingerprint);
+		if (entry == null) {return;}
+		if (entry.pageFingerprint != pageFingerprint) {addNavigationToPage(entry.pageFingerprint);}
+		newFutureTargets.push(entry.action);
+		pendingPattern = entry.pattern;
+		pagesBeforeAction = getStateGraph().getNodeCount();
+		targetsBeforeAction = getCoverageTracker().getTargetsFound();
+		logComment(String.format("frontierTargets: %s,", frontier.size()));
+		logComment(String.format("targetScore: %.3f,", entry.key));
+	}
+
+	/**
+	 * Adds every target of a newly seen page to the frontier, in the order and with the
+	 * href pattern sampling of HistoryAwareTester. Target 0 is the page's back button
+	 * and is left to navigation.
+	 *
+	 * @param pageFingerprint - the fingerprint of the page
+	 * @param possibleTargets - the targets on the page
+	 */
+	private void addPageToFrontier(long pageFingerprint, ArrayList<WebElement> possibleTargets) {
+		rememberPathToCurrentPage();
+		int added = 0;
+		while (!wasFullyVisited(pageFingerprint)) {
+			int targetIndex = handlePage(pageFingerprint, possibleTargets);
+			if (targetIndex == 0 || targetIndex >= possibleTargets.size()) {continue;}
+			WebElement target = possibleTargets.get(targetIndex);
+			String href = isInput(target) ? null : target.getAttribute("href");
+			String pattern = href == null ? inputPattern : getHrefPattern(href);
+			FrontierEntry entry = new FrontierEntry(pageFingerprint, targetIndex, composePlannedAction(possibleTargets, targetIndex),
+					pattern, href == null ? 0 : CoverageTracker.targetId(href));
+			entry.key = scoreEntry(entry, 0);
+			frontier.add(entry);
+			if (getCheckpointJournal() != null) {frontierAddedSinceCheckpoint.add(entry);}
+			added++;
+		}
+		if (added > 0) {remainingByPage.merge(pageFingerprint, added, Integer::sum);}
+	}
+
+	/**
+	 * Returns the best target in the frontier, taking it out of the frontier.
+	 *
+	 * Keys in the heap were scored when they were last looked at, so the top entry is
+	 * rescored against the current page and pattern yields, and put back if it is no
+	 * longer better than the next one. This stops after maxRescoresPerStep rescores,
+	 * which keeps a step cheap on a large frontier. Inputs found to be dead ends since
+	 * they were added are dropped.
+	 *
+	 * @param pageFingerprint - the fingerprint of the current page
+	 * @return the best target, or null if the frontier is empty
+	 */
+	private FrontierEntry takeBestEntry(long pageFingerprint) {
+		HashMap<Long, Integer> graphDistances = getStateGraph().distancesFrom(pageFingerprint);
+		int rescores = 0;
+		while (!frontier.isEmpty()) {
+			FrontierEntry entry = frontier.poll();
+			if (isInertInput(entry.pageFingerprint, entry.targetIndex)) {
+				removeFromPage(entry);
+				continue;
+			}
+			int steps = estimateNavigationSteps(entry.pageFingerprint, graphDistances);
+			if (steps == unreachable) {
+				targetsDroppedUnreachable++;
+				removeFromPage(entry);
+				logComment(String.format("targetsDroppedUnreachable: %s,", targetsDroppedUnreachable));
+				continue;
+			}
+			entry.key = scoreEntry(entry, steps);
+			if (frontier.isEmpty() || entry.key >= frontier.peek().key || ++rescores >= maxRescoresPerStep) {
+				removeFromPage(entry);
+				return entry;
+			}
+			frontier.add(entry);
+		}
+		return null;
+	}
+
+	/**
+	 * Scores a target in the frontier.
+	 *
+	 * @param entry - the target to score
+	 * @param steps - the number of actions needed to reach the target's page
+	 * @return the score of the target, higher being more promising
+	 */
+	private double scoreEntry(FrontierEntry entry, int steps) {
+		boolean novel = entry.hrefId != 0 && !getCoverageTracker().wasExercised(entry.hrefId);
+		int remaining = remainingByPage.getOrDefault(entry.pageFingerprint, 0);
+		return (novel ? noveltyWeight : 0)
+				+ yieldWeight * getExpectedYield(entry.pattern)
+				+ outLinkWeight * Math.log1p(remaining)
+				- distanceWeight * steps;
+	}
+
+	/**
+	 * Returns the mean yield of the targets tried so far with the given href pattern.
+	 * Untried patterns are given an optimistic yield of one new page, so that each
+	 * pattern gets tried at least once.
+	 *
+	 * @param pattern - the href pattern
+	 * @return the expected yield of a target with the pattern
+	 */
+	private double getExpectedYield(String pattern) {
+		double[] yield = yieldByPattern.get(pattern);
+		return yield == null ? 1.0 : (yield[0] + 1.0) / (yield[1] + 1.0);
+	}
+
+	/**
+	 * Credits what was discovered since the last chosen target was planned to its href pattern.
+	 */
+	private void creditPendingYield() {
+		if (pendingPattern == null) {return;}
+		int newPages = getStateGraph().getNodeCount() - pagesBeforeAction;
+		int newTargets = getCoverageTracker().getTargetsFound() - targetsBeforeAction;
+		double[] yield = yieldByPattern.computeIfAbsent(pendingPattern, pattern -> new double[2]);
+		yield[0] += newPages + newTargetYield * newTargets;
+		yield[1]++;
+		pendingPattern = null;
+	}
+
+	/**
+	 * Counts a target taken out of the frontier against its page.
+	 *
+	 * @param entry - the target taken out of the frontier
+	 */
+	private void removeFromPage(FrontierEntry entry) {
+		int remaining = remainingByPage.getOrDefault(entry.pageFingerprint, 1) - 1;
+		if (remaining > 0) {remainingByPage.put(entry.pageFingerprint, remaining);}
+		else {remainingByPage.remove(entry.pageFingerprint);}
+		if (getCheckpointJournal() != null) {frontierRemovedSinceCheckpoint.add(entry);}
+	}
+
+	/**
+	 * Returns the number of targets still in the frontier.
+	 *
+	 * @return the size of the frontier
+	 */
+	int getFrontierSize() {return frontier.size();}
+
+	/* (non-Javadoc)
+	 * @see testers.StackBasedTester#copyStateFrom(testers.Tester)
+	 */
+	void copyStateFrom(Tester other) {
+		super.copyStateFrom(other);
+		pendingPattern = null;
+		if (!(other instanceof PriorityTester)) {return;}
+		PriorityTester priority = (PriorityTester) other;
+		frontier = priority.frontier;
+		remainingByPage = priority.remainingByPage;
+		yieldByPattern = priority.yieldByPattern;
+		frontierAddedSinceCheckpoint = priority.frontierAddedSinceCheckpoint;
+		frontierRemovedSinceCheckpoint = priority.frontierRemovedSinceCheckpoint;
+	}
+
+	/**
+	 * Returns the key a frontier entry is identified by while a checkpoint is replayed.
+	 *
+	 * @param pageFingerprint - the fingerprint of the entry's page
+	 * @param targetIndex - the index of the entry's target on the page
+	 * @return the key of the entry
+	 */
+	private static String frontierKey(long pageFingerprint, int targetIndex) {
+		return String.format("%s:%s", pageFingerprint, targetIndex);
+	}
+
+	/* (non-Javadoc)
+	 * Note: the frontier is journaled incrementally, as the targets added to it and the
+	 * targets taken out of it since the last checkpoint, like StackBasedTester does for
+	 * its saved targets. Targets rescored and put back are not journaled, since the
+	 * frontier is rescored when it is restored.
+	 * @see testers.HistoryAwareTester#writeCheckpoint(testers.CheckpointJournal)
+	 */
+	void writeCheckpoint(CheckpointJournal journal) {
+		super.writeCheckpoint(journal);
+		if (!frontierAddedSinceCheckpoint.isEmpty()) {
+			ArrayList<FrontierEntry> added = new ArrayList<>(frontierAddedSinceCheckpoint);
+			journal.record(CheckpointJournal.frontierAdded, out -> {
+				out.writeInt(added.size());
+				for (FrontierEntry entry : added) {
+					out.writeLong(entry.pageFingerprint);
+					out.writeInt(entry.targetIndex);
+					out.writeUTF(entry.action);
+					out.writeUTF(entry.pattern);
+					out.writeLong(entry.hrefId);
+				}
+			});
+			frontierAddedSinceCheckpoint.clear();
+		}
+		if (!frontierRemovedSinceCheckpoint.isEmpty()) {
+			ArrayList<FrontierEntry> removed = new ArrayList<>(frontierRemovedSinceCheckpoint);
+			journal.record(CheckpointJournal.frontierRemoved, out -> {
+				out.writeInt(removed.size());
+				for (FrontierEntry entry : removed) {
+					out.writeLong(entry.pageFingerprint);
+					out.writeInt(entry.targetIndex);
+				}
+			});
+			frontierRemovedSinceCheckpoint.clear();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * Note: the frontier's entries are collected while the journal is replayed and only
+	 * scored and put in the frontier once it has been replayed.
+	 * @see testers.HistoryAwareTester#restoreCheckpoint(int, java.io.DataInputStream)
+	 */
+	void restoreCheckpoint(int type, DataInputStream in) throws IOException {
+		if (type != CheckpointJournal.frontierAdded && type != CheckpointJournal.frontierRemoved) {
+			super.restoreCheckpoint(type, in);
+			return;
+		}
+		if (restoredFrontier == null) {
+			restoredFrontier = new LinkedHashMap<>();
+			for (FrontierEntry entry : frontier) {restoredFrontier.put(frontierKey(entry.pageFingerprint, entry.targetIndex), entry);}
+		}
+		for (int size = in.readInt(); size > 0; size--) {
+			if (type == CheckpointJournal.frontierRemoved) {
+				restoredFrontier.remove(frontierKey(in.readLong(), in.readInt()));
+			} else {
+				FrontierEntry entry = new FrontierEntry(in.readLong(), in.readInt(), in.readUTF(), in.readUTF(), in.readLong());
+				restoredFrontier.put(frontierKey(entry.pageFingerprint, entry.targetIndex), entry);
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see testers.HistoryAwareTester#checkpointRestored()
+	 */
+	void checkpointRestored() {
+		if (restoredFrontier != null) {
+			frontier.clear();
+			remainingByPage.clear();
+			for (FrontierEntry entry : restoredFrontier.values()) {remainingByPage.merge(entry.pageFingerprint, 1, Integer::sum);}
+			for (FrontierEntry entry : restoredFrontier.values()) {entry.key = scoreEntry(entry, 0);}
+			frontier.addAll(restoredFrontier.values());
+			restoredFrontier = null;
+		}
+		super.checkpointRestored();
+	}
+}
@@ -1,6 +1,7 @@
 package testers;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Random;
 import org.openqa.selenium.WebElement;
 import logger.LogFileGenerator;
@@ -8,10 +9,35 @@ import serverDriver.SelendroidServerDriver;
 import java.io.BufferedReader;
 import java.io.FileReader;
 
+/**
+ * RandomTester acts on a target chosen uniformly at random on every step.
+ *
+ * It keeps the fingerprints of the last cycleWindow pages in a ring buffer. When
+ * they hold at least two but no more than maxCycleLength distinct pages, the tester
+ * is bouncing between them, so instead of a random target it takes one known or
+ * likely to leave them, or else teleports to the least visited page outside them.
+ *
+ * It also records which page each string typed into an input field led to, and
+ * stops choosing fields where new strings have stopped leading to new pages. The
+ * strings typed are generated to suit each field's type and validation attributes.
+ * The inputs of a form are filled in and submitted together as a single action.
+ */
 public class RandomTester extends LoggingTester {
+    static int cycleWindow = 12;
+    static int maxCycleLength = 3;
+    static int maxDrawsPerInput = 8;
 
     private Random random = new Random();
 
+    private long[] recentPages = new long[cycleWindow];
+    private int recentPageCount = 0;
+    private int cycleEscapes = 0;
+
+    private InputValueGenerator inputValues;
+    private InputSaturation inputSaturation = new InputSaturation();
+    private Long pendingInputField = null;
+    private String pendingInputString;
+
     private ArrayList<String> input;
 	
 	/**
@@ -21,6 +47,7 @@ public class RandomTester extends LoggingTester {
 	public RandomTester(LogFileGenerator logFile, ArrayList<String> testStrings, SelendroidServerDriver driver) {
 		super(logFile, testStrings, driver);
 		input = testStrings;
+		inputValues = new InputValueGenerator(testStrings, random);
 		//readDictionary();
 	}
 	
@@ -32,31 +59,245 @@ public class RandomTester extends LoggingTester {
 	public boolean test(ArrayList<WebElement> possibleTargets) {
 		logBracket(true);
 		logPagesVisited();
+		logStatesDiscovered();
 		logPossibleTargetsData(possibleTargets);
-		int randomIndex = (int)(possibleTargets.size()*Math.random());
-		WebElement target = possibleTargets.get(randomIndex);
-		touchElement(target, randomIndex, possibleTargets.size());
+		recordPendingInputResult();
+		int targetIndex;
+		HashSet<Long> cycle = detectCycle();
+		if (cycle == null) {targetIndex = chooseTargetIndex(possibleTargets);}
+		else {
+			targetIndex = chooseCycleExit(possibleTargets, cycle);
+			if (targetIndex < 0) {
+				String teleportUrl = getCycleTeleportUrl(cycle);
+				if (teleportUrl == null) {targetIndex = chooseTargetIndex(possibleTargets);}
+				else {
+					escapeCycle(cycle);
+					teleport(teleportUrl);
+					logBracket(false);
+					return true;
+				}
+			} else {escapeCycle(cycle);}
+		}
+		WebElement target = possibleTargets.get(targetIndex);
+		int[] form = getFormGroup(targetIndex);
+		if (form == null) {touchElement(target, targetIndex);}
+		else {fillAndSubmitForm(possibleTargets, form);}
 		logBracket(false);
 		return true;
 	}
 	
+	/**
+	 * Chooses the target to act on next, uniformly at random among the targets that
+	 * are neither saturated nor dead-end input fields, unless every target is one.
+	 * 
+	 * @param possibleTargets - arraylist of web elements that can be interacted with.
+	 * @return the index of the chosen target
+	 */
+	int chooseTargetIndex(ArrayList<WebElement> possibleTargets) {
+		ArrayList<Integer> candidates = new ArrayList<>();
+		for (int i=0; i<possibleTargets.size(); i++) {
+			if (!isSaturatedInput(possibleTargets, i) && !isDeadendInputSearch(i)) {candidates.add(i);}
+		}
+		if (candidates.isEmpty() || candidates.size() == possibleTargets.size()) {
+			return (int)(possibleTargets.size()*Math.random());
+		}
+		return candidates.get((int)(candidates.size()*Math.random()));
+	}
+
+	/**
+	 * Checks whether the given target is an input field new strings have stopped finding
+	 * new pages in. The inputs of a form are filled in together, so they are saturated
+	 * together.
+	 * 
+	 * @param possibleTargets - arraylist of web elements that can be interacted with.
+	 * @param targetIndex - the index of the target to check
+	 * @return true if the target is a saturated input field else false
+	 */
+	boolean isSaturatedInput(ArrayList<WebElement> possibleTargets, int targetIndex) {
+		Long fieldId = getSaturationKey(possibleTargets, targetIndex);
+		return fieldId != null && inputSaturation.isSaturated(fieldId);
+	}
+
+	/**
+	 * Returns the id the results of typing into the given target are recorded under:
+	 * the input id of the first input of its form, or else its own input id.
+	 * 
+	 * @param possibleTargets - arraylist of web elements that can be interacted with.
+	 * @param targetIndex - the index of the target
+	 * @return the id to record results under, or null if the target isn't a known input
+	 */
+	private Long getSaturationKey(ArrayList<WebElement> possibleTargets, int targetIndex) {
+		int[] form = getFormGroup(targetIndex);
+		return getInputId(possibleTargets.get(form == null ? targetIndex : form[0]));
+	}
+
+	/**
+	 * Records the page shown now as the result of the string typed on the previous step.
+	 */
+	private void recordPendingInputResult() {
+		if (pendingInputField == null) {return;}
+		long fieldId = pendingInputField;
+		pendingInputField = null;
+		if (inputSaturation.recordResult(fieldId, pendingInputString, getPageFingerprint())) {
+			logComment("alert: \"Input saturated, moving on...\",");
+			logComment(String.format("inputsSaturated: %s,", inputSaturation.getSaturatedFieldCount()));
+		}
+		logComment(String.format("inputClasses: %s,", inputSaturation.getClassCount(fieldId)));
+	}
+	
+
+	/* (non-Javadoc)
+	 * Note: the page is also added to the ring buffer of recent pages.
+	 * @see testers.Tester#observePage(java.util.ArrayList)
+	 */
+	void observePage(ArrayList<WebElement> possibleTargets) {
+		super.observePage(possibleTargets);
+		recentPages[recentPageCount++ % recentPages.length] = getPageFingerprint();
+	}
+
+	/**
+	 * Returns the pages the tester is cycling between, if the recent pages are only a
+	 * few distinct ones repeated.
+	 * 
+	 * @return the fingerprints of the pages in the cycle, or null if there is no cycle
+	 */
+	private HashSet<Long> detectCycle() {
+		if (recentPageCount < recentPages.length) {return null;}
+		HashSet<Long> cycle = new HashSet<>();
+		for (long pageFingerprint : recentPages) {
+			if (cycle.add(pageFingerprint) && cycle.size() > maxCycleLength) {return null;}
+		}
+		return cycle.size() > 1 ? cycle : null;
+	}
+
+	/**
+	 * Chooses a random clickable target whose recorded transition leaves the cycle,
+	 * or if there is none, one that was never taken from this page.
+	 * 
+	 * @param possibleTargets - arraylist of web elements that can be interacted with.
+	 * @param cycle - the fingerprints of the pages in the cycle
+	 * @return the index of the chosen target, or -1 if no target may leave the cycle
+	 */
+	private int chooseCycleExit(ArrayList<WebElement> possibleTargets, HashSet<Long> cycle) {
+		StateGraph.Node page = getStateGraph().getCurrent();
+		if (page == null) {return -1;}
+		ArrayList<Integer> knownExits = new ArrayList<>();
+		ArrayList<Integer> untriedTargets = new ArrayList<>();
+		for (int i=0; i<possibleTargets.size(); i++) {
+			WebElement target = possibleTargets.get(i);
+			if (!isClickable(target)) {continue;}
+			StateGraph.Edge edge = page.getEdge(composeActionForTarget(target, i));
+			if (edge == null) {untriedTargets.add(i);}
+			else if (edge.getTo() != null && !cycle.contains(edge.getTo().getFingerprint())) {knownExits.add(i);}
+		}
+		ArrayList<Integer> exits = knownExits.isEmpty() ? untriedTargets : knownExits;
+		if (exits.isEmpty()) {return -1;}
+		return exits.get(random.nextInt(exits.size()));
+	}
+
+	/**
+	 * Returns the URL of the least visited page outside the cycle that can be loaded directly.
+	 * 
+	 * @param cycle - the fingerprints of the pages in the cycle
+	 * @return the URL to teleport to, or null if there is no such page
+	 */
+	private String getCycleTeleportUrl(HashSet<Long> cycle) {
+		StateGraph.Node best = null;
+		for (StateGraph.Node node : getStateGraph().getNodes()) {
+			if (cycle.contains(node.getFingerprint()) || !isLocalUrl(node.getUrl())) {continue;}
+			if (best == null || node.getVisits() < best.getVisits()) {best = node;}
+		}
+		return best == null ? null : best.getUrl();
+	}
+
+	/**
+	 * Logs and counts an escape from a cycle and starts watching for the next one.
+	 * 
+	 * @param cycle - the fingerprints of the pages in the cycle
+	 */
+	private void escapeCycle(HashSet<Long> cycle) {
+		beforeCycleEscape();
+		recentPageCount = 0;
+		cycleEscapes++;
+		getStatistics().recordCycleEscape();
+		logComment(String.format("alert: \"Cycle between %s pages detected, escaping...\",", cycle.size()));
+		logComment(String.format("cycleEscapes: %s,", cycleEscapes));
+	}
+
+	/**
+	 * Called when a cycle escape takes the place of chooseTargetIndex, before the
+	 * escape is carried out. Subclasses that learn from the outcome of their choices
+	 * settle the previous choice here.
+	 */
+	void beforeCycleEscape() {}
+
+	/* (non-Javadoc)
+	 * Note: the recent pages are forgotten, since the position may have changed.
+	 * @see testers.Tester#copyStateFrom(testers.Tester)
+	 */
+	void copyStateFrom(Tester other) {
+		super.copyStateFrom(other);
+		recentPageCount = 0;
+		pendingInputField = null;
+		if (other instanceof RandomTester) {inputSaturation = ((RandomTester) other).inputSaturation;}
+	}
 
 	private String getRandomLineFromDictionary() {
         return input.get(random.nextInt(input.size()));
     }
 
+	/**
+	 * Returns a value valid for the given field's attributes, preferring one whose
+	 * result in the field isn't known yet. Fields the driver doesn't know get a random
+	 * line from the dictionary.
+	 * 
+	 * @param target - the input target to type into
+	 * @param fieldId - the input id of the field, or null if it is unknown
+	 * @return the string to type
+	 */
+	private String getUntriedInputValue(WebElement target, Long fieldId) {
+		if (fieldId == null) {return getRandomLineFromDictionary();}
+		String value = inputValues.nextValue(fieldId, () -> getInputAttributes(target));
+		for (int draws=1; draws<maxDrawsPerInput && inputSaturation.isKnownInput(fieldId, value); draws++) {
+			value = inputValues.nextValue(fieldId, () -> getInputAttributes(target));
+		}
+		return value;
+	}
+
+	/**
+	 * Fills in every input of a form with generated values and submits it, as one action.
+	 * 
+	 * @param possibleTargets - arraylist of web elements that can be interacted with.
+	 * @param form - the indices of the form's inputs
+	 */
+	private void fillAndSubmitForm(ArrayList<WebElement> possibleTargets, int[] form) {
+		ArrayList<String> values = new ArrayList<>();
+		for (int targetIndex : form) {
+			WebElement field = possibleTargets.get(targetIndex);
+			Long fieldId = getInputId(field);
+			values.add(fieldId == null ? getRandomLineFromDictionary() : inputValues.nextValue(fieldId, () -> getInputAttributes(field)));
+		}
+		pendingInputField = getSaturationKey(possibleTargets, form[0]);
+		pendingInputString = String.join("\n", values);
+		submitForm(possibleTargets, form, values);
+	}
+
 	/**Act on the target based on its type*/
-	private void touchElement(WebElement target, int targetIndex, int numTargets) {
+	private void touchElement(WebElement target, int targetIndex) {
 	    String inputString = "";
         if (isInput(target)) {// clean the input box before enter an name
         	while (getLengthInInput(target)!=0) {
         		inputString = inputStringForBackspace;
                 doAction(target, targetIndex, inputString);
         	}
-            if (isDeadendInputSearch(target, numTargets)) {
+            if (isDeadendInputSearch(targetIndex)) {
                 logComment("alert: \"Dead-end search detected...\",");
                 inputString = inputStringForBackspace;
-            } else {inputString = getRandomLineFromDictionary();}
+            } else {
+                pendingInputField = getInputId(target);
+                inputString = getUntriedInputValue(target, pendingInputField);
+                pendingInputString = inputString;
+            }
 		}	
 		doAction(target, targetIndex, inputString);
 	}
@@ -0,0 +1,290 @@
+package testers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+
+import org.openqa.selenium.InvalidElementStateException;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.NoSuchWindowException;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+
+import serverDriver.AppState;
+import serverDriver.DeviceWatchdog;
+import serverDriver.SelendroidServerDriver;
+
+/**
+ * RecoveryEngine brings a test run back on track after a failed test step. It
+ * classifies the failure, by the exception thrown or else by probing the app, and
+ * applies the cheapest policy that fixes that class of failure.
+ *
+ * A policy that doesn't leave the app in the foreground is retried with exponential
+ * backoff, and after attemptsPerPolicy tries the next more drastic policy is used,
+ * up to restarting the session and finally aborting the run. Steps that keep failing
+ * in a row start further up that ladder. Recoveries are counted by failure class in
+ * the run statistics.
+ */
+final class RecoveryEngine {
+	/** The number of times each policy is tried before escalating to the next. */
+	static int attemptsPerPolicy = 3;
+	/** The wait before the first retry of a policy, doubled for every retry after it. */
+	static long backoffMillis = 500;
+	/** The number of failed steps in a row after which recovery starts one policy further up. */
+	static int failuresBeforeEscalation = 3;
+
+	/**
+	 * The ways of recovering, from cheapest to most drastic.
+	 */
+	enum Policy {
+		/** Extract the page's targets afresh, for the next step to act on. */
+		RE_EXTRACT,
+		/** Switch the driver back to the WebView context. */
+		SWITCH_CONTEXT,
+		/** Go back a page in the WebView history. */
+		BACK,
+		/** Probe the app and take whatever step brings it back to the foreground. */
+		RESTORE_FOREGROUND,
+		/** Abandon the session and start a new one, relaunching the app. */
+		RESTART_SESSION,
+		/** Stop the run. */
+		ABORT;
+
+		/**
+		 * Returns the policy to use once this one has failed.
+		 *
+		 * @return the next more drastic policy
+		 */
+		Policy escalate() {
+			switch (this) {
+				case RESTORE_FOREGROUND: return RESTART_SESSION;
+				case RESTART_SESSION: case ABORT: return ABORT;
+				default: return RESTORE_FOREGROUND;
+			}
+		}
+	}
+
+	/**
+	 * The classes of failure, each with the policy that recovers from it most cheaply.
+	 */
+	enum Failure {
+		/** A target went stale or missing because the page changed under the tester. */
+		STALE_ELEMENT(Policy.RE_EXTRACT),
+		/** The step failed but the app was found in the foreground on a local page. */
+		TRANSIENT(Policy.RE_EXTRACT),
+		/** The driver ended up in the native context. */
+		LOST_CONTEXT(Policy.SWITCH_CONTEXT),
+		/** The WebView navigated to a page that isn't part of the app. */
+		LEFT_APP(Policy.BACK),
+		/** Another app was brought in front of the app. */
+		APP_BACKGROUNDED(Policy.RESTORE_FOREGROUND),
+		/** The device didn't answer a command before its deadline. */
+		DEVICE_STALL(Policy.RESTORE_FOREGROUND),
+		/** The WebView stopped answering, as when the app has crashed. */
+		APP_CRASH(Policy.RESTART_SESSION),
+		/** The session or the Selendroid server itself is gone. */
+		DEAD_SERVER(Policy.RESTART_SESSION),
+		/** A step that was given up on is still running and still owns the tester's state. */
+		RUNAWAY_STEP(Policy.RESTART_SESSION);
+
+		final Policy policy;
+
+		Failure(Policy policy) {this.policy = policy;}
+	}
+
+	private final SelendroidServerDriver serverDriver;
+	private int failuresInARow = 0;
+	private boolean targetsExtracted = false;
+
+	/**
+	 * Creates a recovery engine for the given driver.
+	 *
+	 * @param serverDriver - an instance of SelendroidServerDriver on the APK being tested
+	 */
+	RecoveryEngine(SelendroidServerDriver serverDriver) {
+		this.serverDriver = serverDriver;
+	}
+
+	/**
+	 * Records that a test step succeeded, so the next failure starts from its cheapest policy.
+	 */
+	void recordSuccess() {failuresInARow = 0;}
+
+	/**
+	 * Returns whether recovery has just extracted the targets of the current page, in
+	 * which case the next step can act on them without extracting them again. 
+	 * 
+	 * @return true once after a successful re-extraction else false
+	 */
+	boolean takeExtractedTargets() {
+		boolean extracted = targetsExtracted;
+		targetsExtracted = false;
+		return extracted;
+	}
+
+	/**
+	 * Recovers from the given failure of a test step.
+	 *
+	 * A step that outlived its deadline may still be running on its abandoned worker,
+	 * changing the tester's state and using the session, so recovery first waits for
+	 * it. If it is still running after the recovery deadline, recovery goes straight
+	 * to recoverFromRunawayStep.
+	 *
+	 * @param cause - what the step threw
+	 * @return true if testing can go on, or false if recovery failed and the run should be aborted
+	 */
+	boolean recover(Throwable cause) {
+		try {
+			if (!serverDriver.getWatchdog().awaitAbandoned(DeviceWatchdog.recoveryDeadlineMillis)) {return recoverFromRunawayStep();}
+			Failure failure = classify(cause);
+			Policy policy = failure.policy;
+			for (int i=failuresBeforeEscalation; i<=failuresInARow; i+=failuresBeforeEscalation) {policy = policy.escalate();}
+			failuresInARow++;
+			for (; policy != Policy.ABORT; policy = policy.escalate()) {
+				for (int attempt=0; attempt<attemptsPerPolicy; attempt++) {
+					if (attempt > 0) {AutomatedTester.sleep(backoffMillis << (attempt - 1));}
+					if (apply(policy)) {
+						System.out.println(String.format("Recovered from %s with %s", failure, policy));
+						serverDriver.getStatistics().recordRecovery(failure.name());
+						return true;
+					}
+				}
+			}
+			System.out.println(String.format("Could not recover from %s, aborting...", failure));
+			return false;
+		} catch (CancellationException e) {
+			System.out.println("Recovery cancelled...");
+			return true;
+		}
+	}
+
+	/**
+	 * Recovers while an abandoned step is still running. The page's extracted targets
+	 * and the tester's state belong to that step, so nothing that reads or changes them
+	 * is tried: the session is replaced, which also makes the step's remaining driver
+	 * calls fail fast so it finishes.
+	 *
+	 * @return true if a new session was started, or false if the run should be aborted
+	 */
+	boolean recoverFromRunawayStep() {
+		failuresInARow++;
+		try {
+			for (int attempt=0; attempt<attemptsPerPolicy; attempt++) {
+				if (attempt > 0) {AutomatedTester.sleep(backoffMillis << (attempt - 1));}
+				if (apply(Policy.RESTART_SESSION)) {
+					System.out.println(String.format("Recovered from %s with %s", Failure.RUNAWAY_STEP, Policy.RESTART_SESSION));
+					serverDriver.getStatistics().recordRecovery(Failure.RUNAWAY_STEP.name());
+					return true;
+				}
+			}
+			System.out.println(String.format("Could not recover from %s, aborting...", Failure.RUNAWAY_STEP));
+			return false;
+		} catch (CancellationException e) {
+			System.out.println("Recovery cancelled...");
+			return true;
+		}
+	}
+
+	/**
+	 * Classifies a failure by the exception thrown, or else by where the app was found
+	 * to be.
+	 *
+	 * @param cause - what the step threw
+	 * @return the class of the failure
+	 */
+	Failure classify(Throwable cause) {
+		if (cause instanceof StaleElementReferenceException || cause instanceof NoSuchElementException
+				|| cause instanceof InvalidElementStateException) {return Failure.STALE_ELEMENT;}
+		if (cause instanceof NoSuchWindowException) {return Failure.LOST_CONTEXT;}
+		if (cause instanceof TimeoutException) {return Failure.DEVICE_STALL;}
+		if (isDeadSession(cause)) {return Failure.DEAD_SERVER;}
+		AppState state;
+		try {state = serverDriver.getWatchdog().call("probeAppState", DeviceWatchdog.recoveryDeadlineMillis, serverDriver::probeAppState);}
+		catch (TimeoutException e) {return Failure.DEVICE_STALL;}
+		switch (state.getStatus()) {
+			case NATIVE_CONTEXT: return Failure.LOST_CONTEXT;
+			case EXTERNAL_PAGE: return Failure.LEFT_APP;
+			case BACKGROUND: return Failure.APP_BACKGROUNDED;
+			case UNREACHABLE: return Failure.APP_CRASH;
+			default: return Failure.TRANSIENT;
+		}
+	}
+
+	/**
+	 * Checks whether the given failure means the server session is gone. Selenium 2.48
+	 * has no exception of its own for an unknown session, so the remote error message
+	 * is checked for that case.
+	 *
+	 * @param cause - what the step threw
+	 * @return true if the session is dead else false
+	 */
+	private static boolean isDeadSession(Throwable cause) {
+		if (cause instanceof SessionNotCreatedException || cause instanceof UnreachableBrowserException) {return true;}
+		if (!(cause instanceof WebDriverException) || cause.getMessage() == null) {return false;}
+		String message = cause.getMessage().toLowerCase();
+		return message.contains("no such session") || message.contains("session id is null")
+				|| (message.contains("session") && message.contains("does not exist"));
+	}
+
+	/**
+	 * Applies a recovery policy once.
+	 *
+	 * @param policy - the policy to apply
+	 * @return true if the app was in the foreground afterwards else false
+	 */
+	private boolean apply(Policy policy) {
+		try {
+			switch (policy) {
+				case RE_EXTRACT:
+					targetsExtracted = reExtract();
+					return targetsExtracted;
+				case SWITCH_CONTEXT:
+					return isForegroundAfter(() -> {serverDriver.switchToWebView(); return null;});
+				case BACK:
+					return isForegroundAfter(() -> {serverDriver.webviewBack(); return null;});
+				case RESTORE_FOREGROUND:
+					return isForegroundAfter(serverDriver::restoreForeground);
+				case RESTART_SESSION:
+					serverDriver.resetSession();
+					return isForegroundAfter(() -> null);
+				default:
+					return false;
+			}
+		} catch (CancellationException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			System.out.println(String.format("%s failed: %s", policy, e));
+			return false;
+		}
+	}
+
+	/**
+	 * Extracts the targets of the current page again under the extraction deadline. 
+	 * The extraction reads every element, so it fails with a stale element if the page
+	 * is still changing under the driver.
+	 * 
+	 * @return true if the extraction completed with the app in the foreground else false
+	 */
+	private boolean reExtract() {
+		return serverDriver.getWatchdog().call("reExtract", DeviceWatchdog.extractDeadlineMillis, () -> {
+			serverDriver.extractElements();
+			return serverDriver.probeAppState().getStatus() == AppState.Status.FOREGROUND;
+		});
+	}
+
+	/**
+	 * Runs a recovery step under the recovery deadline, then probes whether the app
+	 * is back in the foreground.
+	 *
+	 * @param step - the recovery step
+	 * @return true if the app was in the foreground afterwards else false
+	 */
+	private boolean isForegroundAfter(Callable<?> step) {
+		return serverDriver.getWatchdog().call("recover", DeviceWatchdog.recoveryDeadlineMillis, () -> {
+			step.call();
+			return serverDriver.probeAppState().getStatus() == AppState.Status.FOREGROUND;
+		});
+	}
+}
@@ -0,0 +1,61 @@
+package testers;
+
+import java.util.List;
+
+/**
+ * A SequenceEvaluator runs candidate action sequences for EvolutionaryTester and
+ * reports what each one achieved. Sequences are lists of action strings as composed
+ * by LoggingAwareTester, starting from a given page.
+ *
+ * evaluate may be called from several threads at once, up to getParallelism() of them.
+ */
+public interface SequenceEvaluator {
+
+    /**
+     * What running one action sequence achieved.
+     */
+    final class Result {
+        private final int statesVisited;
+        private final int novelStates;
+        private final int crashes;
+        private final int steps;
+
+        /**
+         * @param statesVisited - the number of distinct pages the sequence passed through
+         * @param novelStates - the number of pages or actions the sequence reached that the state graph didn't know
+         * @param crashes - the number of actions that failed in a way not known before
+         * @param steps - the number of actions carried out
+         */
+        public Result(int statesVisited, int novelStates, int crashes, int steps) {
+            this.statesVisited = statesVisited;
+            this.novelStates = novelStates;
+            this.crashes = crashes;
+            this.steps = steps;
+        }
+
+        public int getStatesVisited() {return statesVisited;}
+
+        public int getNovelStates() {return novelStates;}
+
+        public int getCrashes() {return crashes;}
+
+        public int getSteps() {return steps;}
+    }
+
+    /**
+     * Runs the given sequence from the given page.
+     *
+     * @param start - the page the sequence starts on
+     * @param sequence - the action strings to carry out in order
+     * @return what the sequence achieved
+     * @throws Exception if the sequence could not be evaluated at all
+     */
+    Result evaluate(StateGraph.Node start, List<String> sequence) throws Exception;
+
+    /**
+     * Returns how many sequences this evaluator can run at the same time.
+     *
+     * @return the number of concurrent evaluations supported
+     */
+    int getParallelism();
+}
@@ -0,0 +1,181 @@
+package testers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * SpilledPageRecords is the on-disk tier of PageRecordStore.
+ * 
+ * Records are appended to a data file and found through a memory-mapped
+ * open-addressing index of fingerprint to data offset, so a lookup costs one
+ * probe sequence in the mapped index and one positional read. A record that 
+ * is spilled again is simply appended again and the index updated; the old
+ * copy is left behind as garbage, which keeps every write an append.
+ */
+final class SpilledPageRecords {
+    private static final int slotBytes = 16;
+    private static final int initialSlots = 1 << 12;
+
+    private File directory;
+    private File indexFile;
+    private RandomAccessFile indexAccess;
+    private MappedByteBuffer index;
+    private int slots;
+    private int size = 0;
+
+    private RandomAccessFile dataAccess;
+    private FileChannel data;
+    private long dataEnd = 0;
+
+    /**
+     * Creates the spill files in a new temporary directory, which is removed on exit.
+     */
+    SpilledPageRecords() {
+        try {
+            directory = java.nio.file.Files.createTempDirectory("hybrid-app-tester-pages").toFile();
+            directory.deleteOnExit();
+            File dataFile = new File(directory, "records.bin");
+            dataFile.deleteOnExit();
+            dataAccess = new RandomAccessFile(dataFile, "rw");
+            data = dataAccess.getChannel();
+            mapIndex(initialSlots);
+        } catch (IOException e) {throw new UncheckedIOException(e);}
+    }
+
+    /**
+     * Maps a new, empty index file with the given number of slots.
+     * 
+     * @param slotCount - the number of slots, a power of two
+     */
+    private void mapIndex(int slotCount) throws IOException {
+        indexFile = new File(directory, String.format("index.%s.bin", slotCount));
+        indexFile.deleteOnExit();
+        indexAccess = new RandomAccessFile(indexFile, "rw");
+        indexAccess.setLength((long) slotCount * slotBytes);
+        index = indexAccess.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long) slotCount * slotBytes);
+        slots = slotCount;
+    }
+
+    /**
+     * Returns the slot holding the given fingerprint, or the empty slot where it would go.
+     * A slot is empty when its stored offset is 0; offsets are stored plus one.
+     * 
+     * @param fingerprint - the fingerprint to look for
+     * @return the index of the slot
+     */
+    private int slotFor(long fingerprint) {
+        int mask = slots - 1;
+        int slot = (int) PageRecordStore.mix(fingerprint) & mask;
+        while (index.getLong(slot * slotBytes + 8) != 0 && index.getLong(slot * slotBytes) != fingerprint) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    boolean contains(long fingerprint) {
+        return index.getLong(slotFor(fingerprint) * slotBytes + 8) != 0;
+    }
+
+    /**
+     * Reads the record of the given page back from disk.
+     * 
+     * @param fingerprint - the fingerprint of the page
+     * @return the record, or null if the page was never spilled
+     */
+    PageRecord read(long fingerprint) {
+        long offset = index.getLong(slotFor(fingerprint) * slotBytes + 8) - 1;
+        if (offset < 0) {return null;}
+        try {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            data.read(header, offset + 4);
+            int targetCount = header.getInt(0);
+            ByteBuffer buffer = ByteBuffer.allocate(8 + ((targetCount + 63) >>> 6) * 8 + targetCount * 4);
+            while (buffer.hasRemaining()) {data.read(buffer, offset + buffer.position());}
+            buffer.flip();
+            return new PageRecord(buffer);
+        } catch (IOException e) {throw new UncheckedIOException(e);}
+    }
+
+    /**
+     * Appends the record of the given page and points the index at it.
+     * 
+     * @param fingerprint - the fingerprint of the page
+     * @param record - the record to write
+     */
+    void write(long fingerprint, PageRecord record) {
+        ByteBuffer buffer = ByteBuffer.allocate(record.serializedSize());
+        record.writeTo(buffer);
+        buffer.flip();
+        long offset = dataEnd;
+        try {
+            while (buffer.hasRemaining()) {dataEnd += data.write(buffer, dataEnd);}
+            int slot = slotFor(fingerprint);
+            if (index.getLong(slot * slotBytes + 8) == 0) {
+                if ((size + 1) * 2 > slots) {
+                    growIndex();
+                    slot = slotFor(fingerprint);
+                }
+                size++;
+            }
+            index.putLong(slot * slotBytes, fingerprint);
+            index.putLong(slot * slotBytes + 8, offset + 1);
+        } catch (IOException e) {throw new UncheckedIOException(e);}
+    }
+
+    /**
+     * Moves the index into a new mapped file with twice the slots.
+     */
+    private void growIndex() throws IOException {
+        MappedByteBuffer oldIndex = index;
+        RandomAccessFile oldAccess = indexAccess;
+        File oldFile = indexFile;
+        int oldSlots = slots;
+        mapIndex(slots * 2);
+        for (int i=0; i<oldSlots; i++) {
+            long offset = oldIndex.getLong(i * slotBytes + 8);
+            if (offset != 0) {
+                long fingerprint = oldIndex.getLong(i * slotBytes);
+                int slot = slotFor(fingerprint);
+                index.putLong(slot * slotBytes, fingerprint);
+                index.putLong(slot * slotBytes + 8, offset);
+            }
+        }
+        oldAccess.close();
+        if (unmap(oldIndex)) {oldFile.delete();}
+    }
+
+    /**
+     * Unmaps an index that is no longer used, so that its file can be deleted while the
+     * test runs instead of on exit. Java offers no public way to do so, so this goes 
+     * through Unsafe.invokeCleaner on Java 9 and later and the buffer's cleaner on Java 8.
+     * 
+     * @param buffer - the mapped index, which must not be used afterwards
+     * @return true if the buffer was unmapped else false
+     */
+    private static boolean unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            try {
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (NoSuchMethodException e) {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {return false;}
+    }
+
+    int size() {return size;}
+}
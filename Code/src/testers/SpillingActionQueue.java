@@ -0,0 +1,113 @@
+package testers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+
+/**
+ * SpillingActionQueue is a first-in first-out queue of planned actions whose
+ * heap usage is bounded.
+ * 
+ * New actions collect in an in-memory tail. Once the tail holds more than
+ * maxInMemoryActions, it is appended to a spill file. Actions are taken from
+ * an in-memory head which is refilled from the spill file a batch at a time,
+ * and from the tail once the file has been read through.
+ */
+final class SpillingActionQueue {
+    static int maxInMemoryActions = 10000;
+
+    private ArrayDeque<String> head = new ArrayDeque<>();
+    private ArrayDeque<String> tail = new ArrayDeque<>();
+    private RandomAccessFile spillFile = null;
+    private long readPosition = 0;
+    private long writePosition = 0;
+    private int spilledActions = 0;
+
+    /**
+     * Adds an action to the end of the queue.
+     * 
+     * @param action - the action to add
+     */
+    void add(String action) {
+        tail.addLast(action);
+        if (tail.size() > maxInMemoryActions) {spillTail();}
+    }
+
+    /**
+     * Returns the action at the front of the queue without removing it.
+     * 
+     * @return the next action, or null if the queue is empty
+     */
+    String peek() {
+        refillHead();
+        return head.peekFirst();
+    }
+
+    /**
+     * Removes and returns the action at the front of the queue.
+     * 
+     * @return the next action, or null if the queue is empty
+     */
+    String poll() {
+        refillHead();
+        return head.pollFirst();
+    }
+
+    boolean isEmpty() {return head.isEmpty() && spilledActions == 0 && tail.isEmpty();}
+
+    int size() {return head.size() + spilledActions + tail.size();}
+
+    /**
+     * Makes sure the head holds the next actions in order, if there are any.
+     */
+    private void refillHead() {
+        if (!head.isEmpty()) {return;}
+        if (spilledActions > 0) {readSpilledBatch();}
+        else {
+            ArrayDeque<String> emptied = head;
+            head = tail;
+            tail = emptied;
+        }
+    }
+
+    /**
+     * Appends every action in the tail to the spill file.
+     */
+    private void spillTail() {
+        try {
+            if (spillFile == null) {
+                File file = File.createTempFile("hybrid-app-tester-frontier", ".bin");
+                file.deleteOnExit();
+                spillFile = new RandomAccessFile(file, "rw");
+            }
+            spillFile.seek(writePosition);
+            while (!tail.isEmpty()) {
+                spillFile.writeUTF(tail.pollFirst());
+                spilledActions++;
+            }
+            writePosition = spillFile.getFilePointer();
+        } catch (IOException e) {throw new UncheckedIOException(e);}
+    }
+
+    /**
+     * Reads up to maxInMemoryActions actions from the spill file into the head,
+     * and empties the file once everything in it has been read.
+     */
+    private void readSpilledBatch() {
+        try {
+            spillFile.seek(readPosition);
+            for (int i=0; i<maxInMemoryActions && spilledActions > 0; i++) {
+                head.addLast(spillFile.readUTF());
+                spilledActions--;
+            }
+            readPosition = spillFile.getFilePointer();
+            if (spilledActions == 0) {
+                readPosition = 0;
+                writePosition = 0;
+                spillFile.setLength(0);
+            }
+        } catch (IOException e) {throw new UncheckedIOException(e);}
+    }
+}
@@ -4,7 +4,12 @@ import logger.LogFileGenerator;
 import org.openqa.selenium.WebElement;
 import serverDriver.SelendroidServerDriver;
 
+import java.io.DataInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
 import java.util.Stack;
 
 /**
@@ -15,9 +20,28 @@ import java.util.Stack;
 abstract class StackBasedTester extends LoggingTester {
     Stack<String> futureTargets;
     Stack<String> newFutureTargets;
-    private Stack<String> laterFutureTargets;
-    private Stack<String> tempStack;
+    private SpillingActionQueue laterFutureTargets;
     private ArrayList<String> pathFromStart;
+    // not bounded: one tree node per distinct path prefix and one map entry, around
+    // 70 bytes, per page left for the whole run, unlike the spilled laterFutureTargets
+    private PathTree pathTree;
+    private HashMap<Long, Integer> pathsFromStartByPage;
+    private HashMap<Long, Integer> navigationAttempts;
+    private HashSet<Long> pendingTeleports;
+    private HashSet<Long> unreliableTeleports;
+    private ArrayList<String> laterTargetsAddedSinceCheckpoint = new ArrayList<>();
+    private int laterTargetsPolledSinceCheckpoint = 0;
+    private ArrayList<Long> pathsAddedSinceCheckpoint = new ArrayList<>();
+    private int navigationStepsTaken = 0;
+    private int replayStepsAvoided = 0;
+    private final ArrayList<String> testStrings;
+    private final Random random = new Random();
+    private InputValueGenerator formValues;
+
+    private static String navigationMarkerPrefix = "navigateTo: ";
+    private static int maxNavigationAttempts = 3;
+    static boolean isolateBranches = true;
+    static final int unreachable = Integer.MAX_VALUE;
 
     /**
      * Creates an instance of StackBasedTester with the given log file
@@ -31,9 +55,15 @@ abstract class StackBasedTester extends LoggingTester {
         super(logFile, testStrings, driver);
         this.futureTargets = new Stack<>();
         this.newFutureTargets = new Stack<>();
-        this.laterFutureTargets = new Stack<>();
-        this.tempStack = new Stack<>();
+        this.laterFutureTargets = new SpillingActionQueue();
         this.pathFromStart = new ArrayList<>();
+        this.pathTree = new PathTree();
+        this.pathsFromStartByPage = new HashMap<>();
+        this.navigationAttempts = new HashMap<>();
+        this.pendingTeleports = new HashSet<>();
+        this.unreliableTeleports = new HashSet<>();
+        this.testStrings = testStrings;
+        this.formValues = new InputValueGenerator(testStrings, random);
     }
 
     /**
@@ -52,59 +82,373 @@ abstract class StackBasedTester extends LoggingTester {
     void moveFutureTargetsToIterator() {moveStackToIterator(newFutureTargets);}
 
     /**
-     * Moves later future target stack elements to the iterator. 
+     * Moves the next block of later future targets to the iterator, in the order they were saved.
+     * 
+     * Note: only one block (up to the following navigation marker) is moved at a time so
+     * that the rest of the saved targets can stay spilled to disk on very large apps.
      */
-    void moveLaterFutureTargetsToIterator() {moveStackToIterator(laterFutureTargets);}
+    void moveLaterFutureTargetsToIterator() {
+        Stack<String> block = new Stack<>();
+        if (!laterFutureTargets.isEmpty()) {block.push(laterFutureTargets.poll());}
+        while (!laterFutureTargets.isEmpty() && !isNavigationMarker(laterFutureTargets.peek())) {
+            block.push(laterFutureTargets.poll());
+        }
+        if (getCheckpointJournal() != null) {laterTargetsPolledSinceCheckpoint += block.size();}
+        moveStackToIterator(block);
+    }
 
     /**
-     * Store new targets in the later future targets stack. 
+     * Store new targets in the later future targets queue, in the order they were planned. 
      */
     void saveNewTargetsForLater() {
-        while (!newFutureTargets.isEmpty()) {tempStack.push(newFutureTargets.pop());}
-        while (!tempStack.isEmpty()) {laterFutureTargets.push(tempStack.pop());}
+        Stack<String> reversed = new Stack<>();
+        while (!newFutureTargets.isEmpty()) {reversed.push(newFutureTargets.pop());}
+        while (!reversed.isEmpty()) {
+            String action = reversed.pop();
+            laterFutureTargets.add(action);
+            if (getCheckpointJournal() != null) {laterTargetsAddedSinceCheckpoint.add(action);}
+        }
     }
 
     /**
      * Adds targets that are yet to be tested to the stack of new future targets.
      * 
-     * @param target -- the target to be added to the stack
+     * @param possibleTargets - the targets on the current page
      * @param targetIndex - the index of the target to be added to the stack
      */
-    void planActionForTarget(WebElement target, int targetIndex) {
-        newFutureTargets.push(composeActionForTarget(target, targetIndex));
+    void planActionForTarget(ArrayList<WebElement> possibleTargets, int targetIndex) {
+        newFutureTargets.push(composePlannedAction(possibleTargets, targetIndex));
+    }
+
+    /**
+     * Returns the action to plan for the given target. The inputs of a form are filled
+     * in with generated values and submitted together as a single action, so a target
+     * of a form stands for the whole form.
+     * 
+     * @param possibleTargets - the targets on the current page
+     * @param targetIndex - the index of the target
+     * @return the action string for the target
+     */
+    String composePlannedAction(ArrayList<WebElement> possibleTargets, int targetIndex) {
+        int[] form = getFormGroup(targetIndex);
+        if (form == null) {return composeActionForTarget(possibleTargets.get(targetIndex), targetIndex);}
+        ArrayList<String> values = new ArrayList<>();
+        for (int fieldIndex : form) {
+            WebElement field = possibleTargets.get(fieldIndex);
+            Long fieldId = getInputId(field);
+            if (fieldId != null) {values.add(formValues.nextValue(fieldId, () -> getInputAttributes(field)));}
+            else {values.add(testStrings.isEmpty() ? "" : testStrings.get(random.nextInt(testStrings.size())));}
+        }
+        return composeSubmitFormMessage(form, values);
     }
 
     /**
      * Performs the next action from the top of the future targets stack.
+     * Navigation markers are resolved into the actions needed to reach their page first.
      * 
      * @param possibleTargets - the list of potential targets to be interacted with
      */
     void doNextPlannedAction(ArrayList<WebElement> possibleTargets) {
         String action = futureTargets.pop();
+        while (isNavigationMarker(action)) {
+            planNavigation(Long.parseLong(action.substring(navigationMarkerPrefix.length())));
+            if (futureTargets.isEmpty()) {return;}
+            action = futureTargets.pop();
+        }
 
-        if (action.equals(composeWebviewBackMessage())) {pathFromStart.remove(pathFromStart.size()-1);}
-        else if (isClickButton(action) && !isInput(possibleTargets.get(0))) {pathFromStart.add(action);}
+        if (action.equals(composeWebviewBackMessage()) || isRestoreBranchPoint(action)) {
+            if (!pathFromStart.isEmpty()) {pathFromStart.remove(pathFromStart.size()-1);}
+        }
+        else if ((isClickButton(action) || isFormSubmit(action)) && !isInput(possibleTargets.get(0))) {pathFromStart.add(action);}
 
         doAction(action, possibleTargets);
     }
 
     /**
-     * Pushes all commands necessary to navigate to the current state from the starting page 
-     * to the new future targets stack. 
+     * Returns the action that comes back to the current page after exploring a branch
+     * from it. With isolateBranches set, and the page loadable from its URL, this 
+     * restores the page's web storage as well, so that no branch sees the storage 
+     * and cookies left behind by the one explored before it. Otherwise it is a webview back,
+     * or navigation back to the page once a restore has rewritten the WebView history.
+     * 
+     * @return the action returning to the current page
+     */
+    String composeReturnToCurrentPageMessage() {
+        long pageFingerprint = getPageFingerprint();
+        if (!isolateBranches || getTeleportUrl(pageFingerprint) == null) {
+            return isHistoryRewritten() ? composeNavigationMarker(pageFingerprint) : composeWebviewBackMessage();
+        }
+        snapshotBranchPoint(pageFingerprint);
+        return composeRestoreBranchPointMessage(pageFingerprint);
+    }
+
+    /**
+     * Returns true/false whether or not the given planned action is a navigation marker.
+     * 
+     * @param action - the planned action to be examined
+     * @return true if the action is a navigation marker else false
+     */
+    private boolean isNavigationMarker(String action) {return action.startsWith(navigationMarkerPrefix);}
+
+    /**
+     * Pushes the actions needed to get from the current page to the given page onto the 
+     * future targets stack, followed by a marker to check that the page was reached. 
+     * 
+     * Local pages with a recorded URL are loaded directly in one action. If that lands on a 
+     * different page, or the page has no usable URL, the shortest path through the state graph 
+     * is used when one is known, otherwise the tester goes back to the starting page and 
+     * replays the path that first led to the page. Once a restore has rewritten the WebView
+     * history, the starting page is loaded from its URL rather than gone back to. If the page cannot be reached after a few 
+     * attempts, the actions planned for it are dropped.
+     * 
+     * @param pageFingerprint - the fingerprint of the page to navigate to
      */
-    void addPathFromStart() {
-        for (String aPathFromStart : pathFromStart) {
-            newFutureTargets.push(aPathFromStart);
+    private void planNavigation(long pageFingerprint) {
+        long currentFingerprint = getPageFingerprint();
+        boolean teleported = pendingTeleports.remove(pageFingerprint);
+        if (currentFingerprint == pageFingerprint) {
+            navigationAttempts.remove(pageFingerprint);
+            if (teleported && pathsFromStartByPage.containsKey(pageFingerprint)) {
+                pathFromStart = pathTree.path(pathsFromStartByPage.get(pageFingerprint));
+            }
+            return;
         }
+        if (teleported) {
+            unreliableTeleports.add(pageFingerprint);
+            logComment("alert: \"Teleport landed on an unexpected page, falling back to path navigation...\",");
+        }
+        int attempts = navigationAttempts.getOrDefault(pageFingerprint, 0) + 1;
+        if (attempts > maxNavigationAttempts) {
+            navigationAttempts.remove(pageFingerprint);
+            logComment("alert: \"Could not navigate to planned page, skipping it...\",");
+            dropActionsUntilNextMarker();
+            return;
+        }
+        navigationAttempts.put(pageFingerprint, attempts);
+
+        Integer pathFromStartToPage = pathsFromStartByPage.get(pageFingerprint);
+        int replaySteps = pathFromStart.size() + (pathFromStartToPage == null ? 0 : pathTree.depth(pathFromStartToPage));
+        ArrayList<String> route = new ArrayList<>();
+        ArrayList<StateGraph.Edge> shortestPath = getStateGraph().shortestPath(currentFingerprint, pageFingerprint);
+        String teleportUrl = getTeleportUrl(pageFingerprint);
+        if (teleportUrl != null && (shortestPath == null || shortestPath.size() > 1)) {
+            route.add(composeTeleportMessage(teleportUrl));
+            pendingTeleports.add(pageFingerprint);
+        } else if (shortestPath != null) {
+            for (StateGraph.Edge edge : shortestPath) {route.add(edge.getAction());}
+        } else {
+            StateGraph.Node start = getStateGraph().getRoot();
+            String startUrl = isHistoryRewritten() && start != null ? getLocalUrl(start.getFingerprint()) : null;
+            if (startUrl != null) {
+                route.add(composeTeleportMessage(startUrl));
+                pathFromStart = new ArrayList<>();
+            } else {
+                for (int i=0; i<pathFromStart.size(); i++) {route.add(composeWebviewBackMessage());}
+            }
+            if (pathFromStartToPage != null) {route.addAll(pathTree.path(pathFromStartToPage));}
+        }
+
+        futureTargets.push(composeNavigationMarker(pageFingerprint));
+        for (int i=route.size()-1; i>=0; i--) {futureTargets.push(route.get(i));}
+        logNavigation(route.size(), replaySteps);
+    }
+
+    /**
+     * Returns the URL the given page can be loaded from directly, or null if it has to be navigated to.
+     * 
+     * @param pageFingerprint - the fingerprint of the page
+     * @return the URL of the page or null
+     */
+    private String getTeleportUrl(long pageFingerprint) {
+        StateGraph.Node node = getStateGraph().getNode(pageFingerprint);
+        if (node == null || unreliableTeleports.contains(pageFingerprint) || !isLocalUrl(node.getUrl())) {return null;}
+        return node.getUrl();
+    }
+
+    /**
+     * Discards planned actions until the next navigation marker, which is left on the stack.
+     */
+    private void dropActionsUntilNextMarker() {
+        while (!futureTargets.isEmpty() && !isNavigationMarker(futureTargets.peek())) {futureTargets.pop();}
+    }
+
+    /**
+     * Logs how many steps a navigation takes compared to replaying it from the starting page.
+     * 
+     * @param navigationSteps - the number of actions the planned route takes
+     * @param replaySteps - the number of actions going back to the start and replaying would take
+     */
+    private void logNavigation(int navigationSteps, int replaySteps) {
+        navigationStepsTaken += navigationSteps;
+        replayStepsAvoided += Math.max(0, replaySteps - navigationSteps);
+        logComment(String.format("navigationSteps: %s,", navigationSteps));
+        logComment(String.format("replayFromStartSteps: %s,", replaySteps));
+        logComment(String.format("totalNavigationSteps: %s,", navigationStepsTaken));
+        logComment(String.format("totalReplayStepsAvoided: %s,", replayStepsAvoided));
     }
 
     /**
-     * Pushes all commands necessary to navigate to the starting state from the current state
-     * to the new future targets stack. 
+     * Constructs a navigation marker for the given page.
+     * 
+     * @param pageFingerprint - the fingerprint of the page to navigate to
+     * @return the navigation marker
+     */
+    private static String composeNavigationMarker(long pageFingerprint) {
+        return String.format("%s%s", navigationMarkerPrefix, pageFingerprint);
+    }
+
+    /**
+     * Pushes a marker to the new future targets stack so that the tester navigates
+     * back to the current page before carrying out the actions planned after it. 
+     */
+    void addNavigationToCurrentPage() {
+        rememberPathToCurrentPage();
+        addNavigationToPage(getPageFingerprint());
+    }
+
+    /**
+     * Pushes a marker to the new future targets stack so that the tester navigates
+     * to the given page before carrying out the actions planned after it. 
+     * 
+     * @param pageFingerprint - the fingerprint of a page seen earlier in the test
+     */
+    void addNavigationToPage(long pageFingerprint) {
+        newFutureTargets.push(composeNavigationMarker(pageFingerprint));
+    }
+
+    /**
+     * Remembers the path from the starting page to the current page, so that the 
+     * page can still be navigated to when no shorter route is known.
+     */
+    void rememberPathToCurrentPage() {
+        long pageFingerprint = getPageFingerprint();
+        pathsFromStartByPage.put(pageFingerprint, pathTree.intern(pathFromStart));
+        if (getCheckpointJournal() != null) {pathsAddedSinceCheckpoint.add(pageFingerprint);}
+    }
+
+    /**
+     * Estimates how many actions navigating from the current page to the given page 
+     * would take, choosing between the same routes planNavigation does.
+     * 
+     * @param pageFingerprint - the fingerprint of the page to navigate to
+     * @param graphDistances - the state graph distances from the current page, as given by StateGraph.distancesFrom
+     * @return the estimated number of actions, or unreachable if no route is known
+     */
+    int estimateNavigationSteps(long pageFingerprint, HashMap<Long, Integer> graphDistances) {
+        if (pageFingerprint == getPageFingerprint()) {return 0;}
+        Integer distance = graphDistances.get(pageFingerprint);
+        if (getTeleportUrl(pageFingerprint) != null && (distance == null || distance > 1)) {return 1;}
+        if (distance != null) {return distance;}
+        Integer pathFromStartToPage = pathsFromStartByPage.get(pageFingerprint);
+        if (pathFromStartToPage == null) {return unreachable;}
+        return pathFromStart.size() + pathTree.depth(pathFromStartToPage);
+    }
+
+    /**
+     * Writes a list of strings as its size followed by its elements.
+     */
+    private static void writeStrings(java.io.DataOutputStream out, java.util.List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {out.writeUTF(string);}
+    }
+
+    /**
+     * Reads a list of strings written by writeStrings.
+     */
+    private static ArrayList<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        ArrayList<String> strings = new ArrayList<>(size);
+        for (int i=0; i<size; i++) {strings.add(in.readUTF());}
+        return strings;
+    }
+
+    /* (non-Javadoc)
+     * @see testers.Tester#writeCheckpoint(testers.CheckpointJournal)
+     */
+    void writeCheckpoint(CheckpointJournal journal) {
+        super.writeCheckpoint(journal);
+        if (!laterTargetsAddedSinceCheckpoint.isEmpty()) {
+            ArrayList<String> added = laterTargetsAddedSinceCheckpoint;
+            journal.record(CheckpointJournal.laterTargetsAdded, out -> writeStrings(out, added));
+            laterTargetsAddedSinceCheckpoint = new ArrayList<>();
+        }
+        if (laterTargetsPolledSinceCheckpoint > 0) {
+            int polled = laterTargetsPolledSinceCheckpoint;
+            journal.record(CheckpointJournal.laterTargetsPolled, out -> out.writeInt(polled));
+            laterTargetsPolledSinceCheckpoint = 0;
+        }
+        for (long pageFingerprint : pathsAddedSinceCheckpoint) {
+            ArrayList<String> path = pathTree.path(pathsFromStartByPage.get(pageFingerprint));
+            journal.record(CheckpointJournal.pathFromStartToPage, out -> {
+                out.writeLong(pageFingerprint);
+                writeStrings(out, path);
+            });
+        }
+        pathsAddedSinceCheckpoint.clear();
+        ArrayList<String> planned = new ArrayList<>(futureTargets);
+        ArrayList<String> path = new ArrayList<>(pathFromStart);
+        journal.record(CheckpointJournal.plannedTargets, out -> {
+            writeStrings(out, planned);
+            writeStrings(out, path);
+        });
+    }
+
+    /* (non-Javadoc)
+     * @see testers.Tester#restoreCheckpoint(int, java.io.DataInputStream)
+     */
+    void restoreCheckpoint(int type, DataInputStream in) throws IOException {
+        if (type == CheckpointJournal.laterTargetsAdded) {
+            for (String action : readStrings(in)) {laterFutureTargets.add(action);}
+        } else if (type == CheckpointJournal.laterTargetsPolled) {
+            for (int polled = in.readInt(); polled > 0; polled--) {laterFutureTargets.poll();}
+        } else if (type == CheckpointJournal.pathFromStartToPage) {
+            long pageFingerprint = in.readLong();
+            pathsFromStartByPage.put(pageFingerprint, pathTree.intern(readStrings(in)));
+        } else if (type == CheckpointJournal.plannedTargets) {
+            futureTargets.clear();
+            futureTargets.addAll(readStrings(in));
+            pathFromStart = readStrings(in);
+        } else {super.restoreCheckpoint(type, in);}
+    }
+
+    /* (non-Javadoc)
+     * Note: only the navigation knowledge is shared. Actions this tester planned before are
+     * dropped since the app is no longer on the page they were planned for, and so is the
+     * path to its old page when the other tester kept no path to the current one.
+     * @see testers.Tester#copyStateFrom(testers.Tester)
+     */
+    void copyStateFrom(Tester other) {
+        super.copyStateFrom(other);
+        futureTargets.clear();
+        newFutureTargets.clear();
+        if (!(other instanceof StackBasedTester)) {
+            pathFromStart = new ArrayList<>();
+            return;
+        }
+        StackBasedTester stackBased = (StackBasedTester) other;
+        pathFromStart = new ArrayList<>(stackBased.pathFromStart);
+        pathTree = stackBased.pathTree;
+        pathsFromStartByPage = stackBased.pathsFromStartByPage;
+        unreliableTeleports = stackBased.unreliableTeleports;
+        pathsAddedSinceCheckpoint = stackBased.pathsAddedSinceCheckpoint;
+        formValues = stackBased.formValues;
+    }
+
+    /* (non-Javadoc)
+     * Note: the app restarts on its starting page, so the tester first navigates back to the 
+     * page it was on at the checkpoint before carrying on with the actions it had planned there.
+     * @see testers.Tester#checkpointRestored()
      */
-    void addPathToStart() {
-        for (int i=0; i<pathFromStart.size(); i++) {
-            newFutureTargets.push(composeWebviewBackMessage());
+    void checkpointRestored() {
+        super.checkpointRestored();
+        StateGraph.Node checkpointPage = getStateGraph().getCurrent();
+        if (checkpointPage != null) {
+            long pageFingerprint = checkpointPage.getFingerprint();
+            if (!pathsFromStartByPage.containsKey(pageFingerprint)) {
+                pathsFromStartByPage.put(pageFingerprint, pathTree.intern(pathFromStart));
+            }
+            futureTargets.push(composeNavigationMarker(pageFingerprint));
         }
+        pathFromStart = new ArrayList<>();
     }
 }
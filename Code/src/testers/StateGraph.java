@@ -0,0 +1,474 @@
+package testers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * StateGraph is an in-memory model of the application under test which
+ * is built up incrementally as the testers explore it.
+ *
+ * Pages are nodes keyed by their fingerprint and every action taken on a
+ * page is an edge to the page that was observed after it. Each edge keeps
+ * the latency and outcome of the times it was taken so that navigation,
+ * prioritisation, and reporting can reuse what was already learned instead
+ * of re-discovering it on the device.
+ *
+ * The graph holds at most maxNodes pages. Beyond that, the pages observed least
+ * recently are evicted together with the edges from and to them, a quarter of
+ * the limit at a time. Evicted pages are still remembered as discovered, so they
+ * are not reported as new again, but routes through them are forgotten.
+ *
+ * Only the nodes and edges are bounded. The set of discovered fingerprints keeps one
+ * boxed entry, around 50 bytes, per page discovered for the whole run.
+ */
+public class StateGraph {
+    /** The number of pages held in memory, beyond which the least recently observed ones are evicted. */
+    public static int maxNodes = 50000;
+
+    /**
+     * The possible results of taking an action.
+     */
+    public enum Outcome {NEW_PAGE, KNOWN_PAGE, SAME_PAGE, FAILED}
+
+    /**
+     * A page of the application, identified by its fingerprint.
+     */
+    public static class Node {
+        private final long fingerprint;
+        private final int order;
+        private String url;
+        private int visits;
+        private int targetCount;
+        private long lastObserved;
+        private LinkedHashMap<String, Edge> edges = new LinkedHashMap<>();
+
+        Node(long fingerprint, int order) {
+            this.fingerprint = fingerprint;
+            this.order = order;
+        }
+
+        public long getFingerprint() {return fingerprint;}
+
+        /**
+         * Returns the order in which this page was discovered, starting at 0. A page
+         * observed again after being evicted is numbered as if newly discovered.
+         *
+         * @return the discovery order of the page
+         */
+        public int getOrder() {return order;}
+
+        /**
+         * Returns the URL the page was first seen at, or null if it isn't known.
+         *
+         * @return the URL of the page
+         */
+        public String getUrl() {return url;}
+
+        void setUrl(String url) {this.url = url;}
+
+        public int getVisits() {return visits;}
+
+        public int getTargetCount() {return targetCount;}
+
+        void setTargetCount(int targetCount) {this.targetCount = targetCount;}
+
+        /**
+         * Returns the edge for the given action, or null if it was never taken on this page.
+         *
+         * @param action - the action string as composed by LoggingAwareTester
+         * @return the edge for the action
+         */
+        public Edge getEdge(String action) {return edges.get(action);}
+
+        public Collection<Edge> getEdges() {return edges.values();}
+    }
+
+    /**
+     * An action taken on a page together with what was observed after it.
+     */
+    public static class Edge {
+        private final Node from;
+        private final String action;
+        private Node to;
+        private int traversals;
+        private int failures;
+        private long totalLatencyNanos;
+        private Outcome lastOutcome;
+
+        Edge(Node from, String action) {
+            this.from = from;
+            this.action = action;
+        }
+
+        public Node getFrom() {return from;}
+
+        /**
+         * Returns the page most recently observed after taking this edge.
+         *
+         * @return the destination page
+         */
+        public Node getTo() {return to;}
+
+        public String getAction() {return action;}
+
+        public int getTraversals() {return traversals;}
+
+        public int getFailures() {return failures;}
+
+        public Outcome getLastOutcome() {return lastOutcome;}
+
+        /**
+         * Returns the mean time the driver took to carry out this edge's action.
+         *
+         * @return the average latency in milliseconds
+         */
+        public double getAverageLatencyMillis() {
+            return traversals == 0 ? 0 : totalLatencyNanos / (traversals * 1e6);
+        }
+    }
+
+    private HashMap<Long, Node> nodes = new HashMap<>();
+    private HashSet<Long> discovered = new HashSet<>();
+    private int edgeCount = 0;
+    private long observations = 0;
+    private Node root;
+    private Node current;
+
+    private LinkedHashSet<Node> changedNodes = new LinkedHashSet<>();
+    private LinkedHashSet<Edge> changedEdges = new LinkedHashSet<>();
+
+    private Node pendingFrom;
+    private String pendingAction;
+    private long pendingLatencyNanos;
+    private boolean pendingFailed;
+
+    /**
+     * Records that the given page is now being shown, resolving the
+     * previously recorded action into an edge ending at this page.
+     *
+     * @param fingerprint - the fingerprint of the page being shown
+     * @return true if the page had never been observed before else false
+     */
+    boolean observePage(long fingerprint) {
+        boolean isNew = !discovered.contains(fingerprint);
+        Node node = getOrAddNode(fingerprint);
+        node.visits++;
+        node.lastObserved = ++observations;
+        changedNodes.add(node);
+        if (pendingAction != null) {resolvePendingAction(node, isNew);}
+        current = node;
+        if (nodes.size() > maxNodes) {evictLeastRecentlyObserved();}
+        return isNew;
+    }
+
+    /**
+     * Turns the pending action into an edge (or another traversal of an existing one).
+     *
+     * @param to - the page observed after the action
+     * @param isNew - whether the page observed was new
+     */
+    private void resolvePendingAction(Node to, boolean isNew) {
+        Edge edge = pendingFrom.edges.get(pendingAction);
+        if (edge == null) {
+            edge = new Edge(pendingFrom, pendingAction);
+            pendingFrom.edges.put(pendingAction, edge);
+            edgeCount++;
+        }
+        edge.to = to;
+        edge.traversals++;
+        edge.totalLatencyNanos += pendingLatencyNanos;
+        if (pendingFailed) {
+            edge.failures++;
+            edge.lastOutcome = Outcome.FAILED;
+        } else if (isNew) {edge.lastOutcome = Outcome.NEW_PAGE;}
+        else if (to == pendingFrom) {edge.lastOutcome = Outcome.SAME_PAGE;}
+        else {edge.lastOutcome = Outcome.KNOWN_PAGE;}
+        changedEdges.add(edge);
+        pendingAction = null;
+    }
+
+    /**
+     * Records an action taken on the current page. The edge is completed
+     * once the next page is observed. If several actions are taken before
+     * then, the last one names the edge and their latencies are summed.
+     *
+     * @param action - the action string as composed by LoggingAwareTester
+     * @param latencyNanos - how long the driver took to carry out the action
+     */
+    void recordAction(String action, long latencyNanos) {
+        if (current == null) {return;}
+        if (pendingAction == null) {
+            pendingFrom = current;
+            pendingLatencyNanos = 0;
+            pendingFailed = false;
+        }
+        pendingAction = action;
+        pendingLatencyNanos += latencyNanos;
+    }
+
+    /**
+     * Marks the pending action, if any, as having failed.
+     */
+    void recordFailure() {
+        if (pendingAction != null) {pendingFailed = true;}
+    }
+
+    /**
+     * Writes the nodes and edges that changed since the last checkpoint to the journal,
+     * followed by the current page.
+     * 
+     * @param journal - the journal to write to
+     */
+    void writeCheckpoint(CheckpointJournal journal) {
+        for (Node node : changedNodes) {
+            journal.record(CheckpointJournal.graphNode, out -> {
+                out.writeLong(node.fingerprint);
+                out.writeUTF(node.url == null ? "" : node.url);
+                out.writeInt(node.visits);
+                out.writeInt(node.targetCount);
+            });
+        }
+        for (Edge edge : changedEdges) {
+            journal.record(CheckpointJournal.graphEdge, out -> {
+                out.writeLong(edge.from.fingerprint);
+                out.writeUTF(edge.action);
+                out.writeLong(edge.to.fingerprint);
+                out.writeInt(edge.traversals);
+                out.writeInt(edge.failures);
+                out.writeLong(edge.totalLatencyNanos);
+                out.writeByte(edge.lastOutcome.ordinal());
+            });
+        }
+        changedNodes.clear();
+        changedEdges.clear();
+        if (current != null) {
+            long fingerprint = current.fingerprint;
+            journal.record(CheckpointJournal.position, out -> out.writeLong(fingerprint));
+        }
+    }
+
+    /**
+     * Returns the node for the given fingerprint, adding it if it doesn't exist yet.
+     * 
+     * @param fingerprint - the fingerprint of the page
+     * @return the node of the page
+     */
+    private Node getOrAddNode(long fingerprint) {
+        Node node = nodes.get(fingerprint);
+        if (node == null) {
+            node = new Node(fingerprint, discovered.size());
+            nodes.put(fingerprint, node);
+            discovered.add(fingerprint);
+            if (root == null) {root = node;}
+        }
+        return node;
+    }
+
+    /**
+     * Evicts the least recently observed pages until the graph holds three quarters
+     * of maxNodes, along with the edges from and to them. The root, the current page,
+     * and the page the pending action was taken on are kept.
+     */
+    private void evictLeastRecentlyObserved() {
+        ArrayList<Node> candidates = new ArrayList<>(nodes.values());
+        candidates.sort((a, b) -> Long.compare(a.lastObserved, b.lastObserved));
+        HashSet<Node> evicted = new HashSet<>();
+        int target = maxNodes - maxNodes / 4;
+        for (int i=0; i<candidates.size() && nodes.size() - evicted.size() > target; i++) {
+            Node node = candidates.get(i);
+            if (node != root && node != current && !(pendingAction != null && node == pendingFrom)) {evicted.add(node);}
+        }
+        for (Node node : evicted) {
+            nodes.remove(node.fingerprint);
+            changedNodes.remove(node);
+            edgeCount -= node.edges.size();
+            changedEdges.removeAll(node.edges.values());
+        }
+        for (Node node : nodes.values()) {
+            for (Iterator<Edge> edges = node.edges.values().iterator(); edges.hasNext();) {
+                Edge edge = edges.next();
+                if (evicted.contains(edge.to)) {
+                    edges.remove();
+                    changedEdges.remove(edge);
+                    edgeCount--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Restores a node written by writeCheckpoint.
+     * 
+     * @param in - the record's payload
+     */
+    void restoreNode(java.io.DataInput in) throws java.io.IOException {
+        Node node = getOrAddNode(in.readLong());
+        String url = in.readUTF();
+        node.url = url.isEmpty() ? null : url;
+        node.visits = in.readInt();
+        node.targetCount = in.readInt();
+    }
+
+    /**
+     * Restores an edge written by writeCheckpoint.
+     * 
+     * @param in - the record's payload
+     */
+    void restoreEdge(java.io.DataInput in) throws java.io.IOException {
+        Node from = getOrAddNode(in.readLong());
+        String action = in.readUTF();
+        Edge edge = from.edges.get(action);
+        if (edge == null) {
+            edge = new Edge(from, action);
+            from.edges.put(action, edge);
+            edgeCount++;
+        }
+        edge.to = getOrAddNode(in.readLong());
+        edge.traversals = in.readInt();
+        edge.failures = in.readInt();
+        edge.totalLatencyNanos = in.readLong();
+        edge.lastOutcome = Outcome.values()[in.readUnsignedByte()];
+    }
+
+    /**
+     * Restores the current page written by writeCheckpoint.
+     * 
+     * @param in - the record's payload
+     */
+    void restorePosition(java.io.DataInput in) throws java.io.IOException {
+        current = getOrAddNode(in.readLong());
+        pendingAction = null;
+    }
+
+    /**
+     * Finds the shortest known sequence of actions leading from one page to another.
+     * Only routable edges are used.
+     *
+     * @param from - the fingerprint of the starting page
+     * @param to - the fingerprint of the destination page
+     * @return the edges to take in order, or null if no path is known
+     */
+    ArrayList<Edge> shortestPath(long from, long to) {
+        Node start = nodes.get(from);
+        Node goal = nodes.get(to);
+        if (start == null || goal == null) {return null;}
+        if (start == goal) {return new ArrayList<>();}
+
+        HashMap<Node, Edge> reachedBy = new HashMap<>();
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        reachedBy.put(start, null);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            for (Edge edge : node.edges.values()) {
+                if (!isRoutable(edge) || reachedBy.containsKey(edge.to)) {continue;}
+                reachedBy.put(edge.to, edge);
+                if (edge.to == goal) {return tracePath(reachedBy, goal);}
+                queue.add(edge.to);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the number of actions on the shortest known path from one page to every
+     * page reachable from it. Only routable edges are used.
+     *
+     * @param from - the fingerprint of the starting page
+     * @return the distance to each reachable page by fingerprint, including 0 for the start
+     */
+    HashMap<Long, Integer> distancesFrom(long from) {
+        HashMap<Long, Integer> distances = new HashMap<>();
+        Node start = nodes.get(from);
+        if (start == null) {return distances;}
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        distances.put(from, 0);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            int distance = distances.get(node.fingerprint) + 1;
+            for (Edge edge : node.edges.values()) {
+                if (!isRoutable(edge) || distances.containsKey(edge.to.fingerprint)) {continue;}
+                distances.put(edge.to.fingerprint, distance);
+                queue.add(edge.to);
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Checks whether routes may go along the given edge. Edges whose last traversal
+     * failed are left out, and so are back actions, since the page they lead to
+     * depends on the history rather than on the page they were taken on.
+     *
+     * @param edge - the edge to check
+     * @return true if the edge can be used for routing else false
+     */
+    private static boolean isRoutable(Edge edge) {
+        return edge.to != null && edge.lastOutcome != Outcome.FAILED && !LoggingAwareTester.isBackAction(edge.action);
+    }
+
+    /**
+     * Walks the search tree built by shortestPath back from the goal.
+     *
+     * @param reachedBy - the edge each node was first reached by
+     * @param goal - the node the path should end at
+     * @return the edges from the start of the search to the goal in order
+     */
+    private static ArrayList<Edge> tracePath(HashMap<Node, Edge> reachedBy, Node goal) {
+        ArrayList<Edge> path = new ArrayList<>();
+        for (Edge edge = reachedBy.get(goal); edge != null; edge = reachedBy.get(edge.from)) {path.add(edge);}
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Returns the node for the given fingerprint, or null if it was never observed.
+     *
+     * @param fingerprint - the fingerprint of the page
+     * @return the node of the page
+     */
+    public Node getNode(long fingerprint) {return nodes.get(fingerprint);}
+
+    /**
+     * Returns the first page that was observed.
+     *
+     * @return the root node, or null before any page was observed
+     */
+    public Node getRoot() {return root;}
+
+    /**
+     * Returns the page that was most recently observed.
+     *
+     * @return the current node, or null before any page was observed
+     */
+    public Node getCurrent() {return current;}
+
+    /**
+     * Returns the pages held in memory, which leaves out any that were evicted.
+     *
+     * @return the nodes of the graph
+     */
+    public Collection<Node> getNodes() {return nodes.values();}
+
+    /**
+     * Returns the number of distinct pages observed, including any that were evicted.
+     *
+     * @return the number of pages discovered
+     */
+    public int getNodeCount() {return discovered.size();}
+
+    /**
+     * Returns the number of edges held in memory, which leaves out the edges of evicted pages.
+     *
+     * @return the number of edges
+     */
+    public int getEdgeCount() {return edgeCount;}
+}
@@ -1,10 +1,19 @@
 package testers;
 
+import java.io.DataInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.openqa.selenium.Keys;
 import org.openqa.selenium.WebElement;
+
+import logger.RunStatistics;
+import serverDriver.CoverageTracker;
 import serverDriver.SelendroidServerDriver;
 
 /**
@@ -21,11 +30,38 @@ abstract public class Tester {
     private static String tagNameForClick = "a";// why tho? is that what the buttons are tagged?
 
     private static int defaultDelay = 2000;//TODO should be whatever is set in settings?
+    static boolean interceptExternalLinks = false;
+    static int maxBranchSnapshots = 256;
 
     private SelendroidServerDriver driver;
 
     private ArrayList<String> testStrings;
 
+    private StateGraph stateGraph = new StateGraph();
+    private String currentPageSource = null;
+
+    static int checkpointInterval = 10;
+    private CheckpointJournal checkpointJournal = null;
+    private int stepsSinceCheckpoint = 0;
+    private int linksFoundCheckpointed = 0;
+    private int linksClickedCheckpointed = 0;
+    private int targetsFoundCheckpointed = 0;
+    private int targetsExercisedCheckpointed = 0;
+
+    private InertInputs inertInputs = new InertInputs();
+    private ArrayList<long[]> inertInputsSinceCheckpoint = new ArrayList<>();
+    private long observedPageFingerprint;
+    private long observedTargetSet;
+    private int typedInputIndex = -1;
+    private boolean typedInputDecisive = false;
+    private int inputAwaitingEffect = -1;
+    private boolean inputAwaitingEffectDecisive = false;
+    private boolean historyRewritten = false;
+    private LinkedHashMap<Long, String> branchSnapshots = new LinkedHashMap<Long, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {return size() > maxBranchSnapshots;}
+    };
+
 	/**
 	 * Creates an instance of Tester.
 	 * 
@@ -72,6 +108,54 @@ abstract public class Tester {
         return driver.getLinksFound();
     }
 
+    /**
+     * Returns the driver's record of which targets have been found and exercised.
+     * 
+     * @return - the coverage tracker
+     */
+    CoverageTracker getCoverageTracker() {
+        return driver.getCoverageTracker();
+    }
+
+    /**
+     * Returns the driver's registry of run statistics.
+     * 
+     * @return - the run statistics
+     */
+    RunStatistics getStatistics() {
+        return driver.getStatistics();
+    }
+
+    /**
+     * Returns the id the driver covers the given input target under.
+     * 
+     * @param target - the target to look up
+     * @return - the input id, or null if the target is not an input on the current page
+     */
+    Long getInputId(WebElement target) {
+        return driver.getInputId(target);
+    }
+
+    /**
+     * Returns the validation attributes of the given input target.
+     * 
+     * @param target - the input target to read
+     * @return - the target's type, pattern, length, range and required attributes by name
+     */
+    Map<String, String> getInputAttributes(WebElement target) {
+        return driver.getInputAttributes(target);
+    }
+
+    /**
+     * Returns the pattern the given href belongs to, with ids and query values collapsed.
+     * 
+     * @param href - the href to look up
+     * @return the href's pattern
+     */
+    String getHrefPattern(String href) {
+        return driver.getHrefPatterns().patternOf(href);
+    }
+
     /**
      * Inserts text at the given target located at the given index with the given input string. 
      * 
@@ -110,7 +194,14 @@ abstract public class Tester {
      * @param inputString - the string to be used in text-input interaction
      */
     void doAction(WebElement target, int targetIndex, String inputString) {
-        if (isInput(target)) {insertText(target, targetIndex, inputString);}
+        if (isInput(target)) {
+            driver.setInputAsExercised(target);
+            insertText(target, targetIndex, inputString);
+            if (!isBackspace(inputString)) {
+                typedInputIndex = targetIndex;
+                typedInputDecisive = inputString.indexOf('\n') >= 0 || driver.hasInputListeners(target);
+            }
+        }
         else if (isClickable(target)) {
         	driver.setPageAsVisited(target.getAttribute("href"));
             if (isExternalLink(target)) {followExternalLinkAndReturn(target, targetIndex);}
@@ -118,6 +209,34 @@ abstract public class Tester {
         }
     }
 
+    /**
+     * Fills in the given inputs of a form with the given values and submits the form, 
+     * all as a single action. 
+     * 
+     * @param possibleTargets - the targets extracted from the current page
+     * @param targetIndices - the indices of the form's inputs to fill
+     * @param values - the value for each input, in the same order
+     */
+    void submitForm(ArrayList<WebElement> possibleTargets, int[] targetIndices, List<String> values) {
+        ArrayList<WebElement> fields = new ArrayList<>();
+        for (int targetIndex : targetIndices) {
+            WebElement field = possibleTargets.get(targetIndex);
+            driver.setInputAsExercised(field);
+            fields.add(field);
+        }
+        driver.submitForm(fields, values);
+    }
+
+    /**
+     * Returns the indices of the fillable inputs of the form the given target belongs to.
+     * 
+     * @param targetIndex - the index of a target on the current page
+     * @return - the indices of the form's inputs, or null if the target isn't one of them
+     */
+    int[] getFormGroup(int targetIndex) {
+        return driver.getFormGroup(targetIndex);
+    }
+
     /**
      * Sends a hardware back signal to the driver
      */
@@ -125,6 +244,74 @@ abstract public class Tester {
         driver.hardwareBack();
     }
 
+    /**
+     * Loads the given local page directly instead of navigating to it through the app.
+     * 
+     * @param url - the URL of the page to load
+     */
+    void teleport(String url) {
+        driver.navigateTo(url);
+    }
+
+    /**
+     * Captures the web storage and URL of the current page the first time it becomes
+     * a branch point, so that every branch explored from it can start from the same state.
+     * 
+     * @param pageFingerprint - the fingerprint of the current page
+     */
+    void snapshotBranchPoint(long pageFingerprint) {
+        if (!branchSnapshots.containsKey(pageFingerprint)) {branchSnapshots.put(pageFingerprint, driver.snapshotWebStorage());}
+    }
+
+    /**
+     * Returns to the given branch point with its web storage as it was when the page
+     * was first captured, in one script call. Without a snapshot of the page, which is
+     * the case after resuming from a checkpoint or once the snapshot was evicted to keep
+     * at most maxBranchSnapshots, this falls back to a webview back, which is carried
+     * out and recorded like any other. Once a restore has rewritten the WebView history
+     * going back is no longer reliable, so the page is loaded from its URL instead,
+     * as long as the state graph knows it.
+     * 
+     * @param pageFingerprint - the fingerprint of the branch point to return to
+     */
+    void restoreBranchPoint(long pageFingerprint) {
+        String snapshot = branchSnapshots.get(pageFingerprint);
+        if (snapshot != null) {restoreBranchSnapshot(pageFingerprint, snapshot);}
+        else if (historyRewritten && getLocalUrl(pageFingerprint) != null) {teleport(getLocalUrl(pageFingerprint));}
+        else {webviewBack();}
+    }
+
+    /**
+     * Returns the URL of the given page if it is a local page whose URL is known.
+     * 
+     * @param pageFingerprint - the fingerprint of the page
+     * @return the URL of the page or null
+     */
+    String getLocalUrl(long pageFingerprint) {
+        StateGraph.Node node = stateGraph.getNode(pageFingerprint);
+        return node != null && isLocalUrl(node.getUrl()) ? node.getUrl() : null;
+    }
+
+    /**
+     * Returns true once a branch restore has rewritten the WebView history, after which
+     * going back no longer retraces the path the tester recorded.
+     * 
+     * @return true if the history was rewritten else false
+     */
+    boolean isHistoryRewritten() {
+        return historyRewritten;
+    }
+
+    /**
+     * Puts back the snapshot captured at the given branch point.
+     * 
+     * @param pageFingerprint - the fingerprint of the branch point to return to
+     * @param snapshot - the snapshot captured there
+     */
+    void restoreBranchSnapshot(long pageFingerprint, String snapshot) {
+        if (driver.restoreWebStorage(snapshot)) {historyRewritten = true;}
+    }
+
     /**
      * Sends a webview back signal to the driver
      * 
@@ -161,8 +348,14 @@ abstract public class Tester {
     }
 
     /**the driver will die if we try to go back once it's already on an external page,
-     * so we need to do this as one command*/
+     * so we need to do this as one command. With interceptExternalLinks set, the app
+     * never leaves the WebView: the click is intercepted in the page and the URLs it
+     * tried to open are recorded instead*/
     void followExternalLinkAndReturn(WebElement target, int targetIndex) {
+        if (interceptExternalLinks) {
+            for (String url : driver.interceptExternalLink(target)) {recordInterceptedLink(url);}
+            return;
+        }
         if (!target.getAttribute("href").startsWith("sms")) {
             if (target.getAttribute("href").startsWith("http")) {
             	this.delay();
@@ -176,6 +369,17 @@ abstract public class Tester {
         }
     }
 
+    /**
+     * Records an external URL the app tried to open while its navigation was intercepted,
+     * counting it as found and visited.
+     * 
+     * @param url - the external URL
+     */
+    void recordInterceptedLink(String url) {
+        driver.setLinkAsFound(url);
+        driver.setPageAsVisited(url);
+    }
+
     /**
      * Checks whether the given target is an input widget
      * 
@@ -223,7 +427,17 @@ abstract public class Tester {
      * @return - true if the given link is external else false
      */
     boolean isExternalLink(WebElement target) {
-        return (!target.getAttribute("href").startsWith("file://"));
+        return !isLocalUrl(target.getAttribute("href"));
+    }
+
+    /**
+     * Checks whether the given URL addresses a page bundled with the app.
+     * 
+     * @param url - the URL to check
+     * @return - true if the URL is local else false
+     */
+    boolean isLocalUrl(String url) {
+        return url != null && url.startsWith("file://");
     }
 
     /**
@@ -237,16 +451,44 @@ abstract public class Tester {
     }
 
     /**
-     * Checks whether the only possible element on the page is an input box. 
+     * Checks whether typing into the given input on the current page was already found
+     * to change neither the page nor its targets. 
+     * 
+     * @param targetIndex - the index of the input on the current page
+     * @return - true if the input is a dead end else false
+     */
+    boolean isDeadendInputSearch(int targetIndex) {
+        return isInertInput(getPageFingerprint(), targetIndex);
+    }
+
+    /**
+     * Checks whether typing into the given input on the given page was found to change
+     * neither the page nor its targets. Planners skip such inputs.
      * 
-     * @param inputTarget - the target to be checked; its length must be something other than 0
-     * @param possibleTargetsOnPage - the collection of targets on the page
-     * @return - true if the only target on the page is an input box else false
+     * @param pageFingerprint - the fingerprint of the page the input is on
+     * @param targetIndex - the index of the input on the page
+     * @return - true if the input is a dead end else false
      */
-    boolean isDeadendInputSearch(WebElement inputTarget, int possibleTargetsOnPage) {
-        // This does not seem like a reliable way to check this
-        // Maybe check the difference between the possibleTargets when no text is entered vs. when text is? if they're the same, it's a deadend.
-        return possibleTargetsOnPage<=1 && getLengthInInput(inputTarget)!=0;
+    boolean isInertInput(long pageFingerprint, int targetIndex) {
+        return inertInputs.isInert(pageFingerprint, targetIndex);
+    }
+
+    /**
+     * Records whether the input typed into on the previous step had an effect, by 
+     * comparing the page fingerprint and target set from before and after it. See
+     * InertInputs for when that makes the input a dead end.
+     * 
+     * @param pageFingerprint - the fingerprint of the page shown now
+     * @param targetSet - the signature of the targets shown now
+     */
+    private void recordInputEffect(long pageFingerprint, long targetSet) {
+        int targetIndex = inputAwaitingEffect;
+        inputAwaitingEffect = -1;
+        boolean changed = pageFingerprint != observedPageFingerprint || targetSet != observedTargetSet;
+        if (inertInputs.record(observedPageFingerprint, observedTargetSet, targetIndex, changed, inputAwaitingEffectDecisive)
+                && checkpointJournal != null) {
+            inertInputsSinceCheckpoint.add(new long[] {observedPageFingerprint, observedTargetSet, targetIndex, changed ? 0 : 1});
+        }
     }
 
     /**
@@ -259,12 +501,258 @@ abstract public class Tester {
         return getLengthInInput(inputTarget)==0;
     }
 
+    /**
+     * Returns the page source of the current page.
+     * 
+     * The source is fetched from the driver at most once between two actions,
+     * since the page cannot change while a tester is only planning.
+     * 
+     * @return the page source
+     */
+    private String getPageSource() {
+        if (currentPageSource == null) {currentPageSource = driver.extractPageSource();}
+        return currentPageSource;
+    }
+
     /**
      * Returns a hash of the entire page's source. 
      *  
      * @return the hashed page source
      */
     int getPageHash() {
-        return driver.extractPageSource().hashCode();
+        return getPageSource().hashCode();
+    }
+
+    /**
+     * Returns a 64-bit fingerprint of the entire page's source.
+     * 
+     * @return the fingerprint of the page
+     */
+    long getPageFingerprint() {
+        return fingerprint(getPageSource());
+    }
+
+    /**
+     * Returns a similarity hash of the current page's structure, which is close
+     * for pages built from the same template.
+     * 
+     * @return the structural hash of the page
+     */
+    long getPageStructureHash() {
+        return PageSimilarity.structureHash(getPageSource());
+    }
+
+    /**
+     * Computes the 64-bit FNV-1a hash of the given string.
+     * 
+     * @param string - the string to hash
+     * @return the hash of the string
+     */
+    static long fingerprint(String string) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i=0; i<string.length(); i++) {
+            hash ^= string.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the state graph this tester has built so far.
+     * 
+     * @return the state graph
+     */
+    public StateGraph getStateGraph() {
+        return stateGraph;
+    }
+
+    /**
+     * Records the current page in the state graph. This is called once per
+     * test step, before the tester decides on its next action.
+     * 
+     * @param possibleTargets - the targets extracted from the current page
+     */
+    void observePage(ArrayList<WebElement> possibleTargets) {
+        currentPageSource = null;
+        long pageFingerprint = getPageFingerprint();
+        long targetSet = driver.getTargetSetSignature();
+        if (inputAwaitingEffect >= 0) {recordInputEffect(pageFingerprint, targetSet);}
+        inertInputs.expire(pageFingerprint, targetSet);
+        observedPageFingerprint = pageFingerprint;
+        observedTargetSet = targetSet;
+        if (stateGraph.observePage(pageFingerprint)) {
+            driver.getStatistics().recordPageDiscovered();
+            stateGraph.getCurrent().setUrl(driver.getCurrentUrl());
+            stateGraph.getCurrent().setTargetCount(possibleTargets.size());
+        }
+    }
+
+    /**
+     * Records an action that was just carried out on the current page.
+     * 
+     * @param action - the action string as composed by LoggingAwareTester
+     * @param kind - the kind of action for the run statistics
+     * @param startNanos - the value of System.nanoTime() before the action started
+     */
+    void recordAction(String action, RunStatistics.Action kind, long startNanos) {
+        long latencyNanos = System.nanoTime() - startNanos;
+        currentPageSource = null;
+        inputAwaitingEffect = kind == RunStatistics.Action.INPUT ? typedInputIndex : -1;
+        inputAwaitingEffectDecisive = typedInputDecisive;
+        typedInputIndex = -1;
+        typedInputDecisive = false;
+        stateGraph.recordAction(action, latencyNanos);
+        driver.getStatistics().recordAction(kind, latencyNanos);
+    }
+
+    /**
+     * Records that the action just recorded did not complete normally. This is only
+     * called for an exception thrown by the action itself, never for a failure 
+     * elsewhere in a test step, so that a successful action is never marked failed.
+     */
+    void recordActionFailure() {
+        currentPageSource = null;
+        stateGraph.recordFailure();
+    }
+
+    /**
+     * Sets the journal this tester checkpoints its exploration state to.
+     * 
+     * @param journal - the journal to write to, or null to stop checkpointing
+     */
+    public void setCheckpointJournal(CheckpointJournal journal) {
+        this.checkpointJournal = journal;
+    }
+
+    public CheckpointJournal getCheckpointJournal() {
+        return checkpointJournal;
+    }
+
+    /**
+     * Writes a checkpoint once every checkpointInterval test steps.
+     * This is called at the end of each test step.
+     */
+    void checkpointIfDue() {
+        if (checkpointJournal == null || ++stepsSinceCheckpoint < checkpointInterval) {return;}
+        stepsSinceCheckpoint = 0;
+        checkpointJournal.checkpoint(this);
+    }
+
+    /**
+     * Writes a checkpoint right away, if checkpointing is enabled.
+     */
+    void checkpointNow() {
+        if (checkpointJournal == null) {return;}
+        stepsSinceCheckpoint = 0;
+        checkpointJournal.checkpoint(this);
+    }
+
+    /**
+     * Writes the changes made to this tester's state since the last checkpoint.
+     * Subclasses with more state extend this.
+     * 
+     * @param journal - the journal to write to
+     */
+    void writeCheckpoint(CheckpointJournal journal) {
+        stateGraph.writeCheckpoint(journal);
+        for (String href : driver.getLinksFoundSince(linksFoundCheckpointed)) {
+            journal.record(CheckpointJournal.linkFound, out -> out.writeUTF(href));
+            linksFoundCheckpointed++;
+        }
+        for (String href : driver.getLinksClickedSince(linksClickedCheckpointed)) {
+            journal.record(CheckpointJournal.linkClicked, out -> out.writeUTF(href));
+            linksClickedCheckpointed++;
+        }
+        CoverageTracker coverage = driver.getCoverageTracker();
+        for (; targetsFoundCheckpointed < coverage.getTargetsFound(); targetsFoundCheckpointed++) {
+            if (coverage.getFoundKind(targetsFoundCheckpointed) != CoverageTracker.Kind.INPUT) {continue;}
+            long id = coverage.getFoundId(targetsFoundCheckpointed);
+            journal.record(CheckpointJournal.inputFound, out -> out.writeLong(id));
+        }
+        for (; targetsExercisedCheckpointed < coverage.getTargetsExercised(); targetsExercisedCheckpointed++) {
+            if (coverage.getExercisedKind(targetsExercisedCheckpointed) != CoverageTracker.Kind.INPUT) {continue;}
+            long id = coverage.getExercisedId(targetsExercisedCheckpointed);
+            journal.record(CheckpointJournal.inputExercised, out -> out.writeLong(id));
+        }
+        for (long[] input : inertInputsSinceCheckpoint) {
+            journal.record(CheckpointJournal.inertInput, out -> {
+                out.writeLong(input[0]);
+                out.writeLong(input[1]);
+                out.writeInt((int) input[2]);
+                out.writeBoolean(input[3] != 0);
+            });
+        }
+        inertInputsSinceCheckpoint.clear();
+    }
+
+    /**
+     * Applies one record written by writeCheckpoint. Subclasses with more state
+     * handle their own record types and pass the rest on to this.
+     * 
+     * @param type - the record type
+     * @param in - the record's payload
+     */
+    void restoreCheckpoint(int type, DataInputStream in) throws IOException {
+        if (type == CheckpointJournal.graphNode) {stateGraph.restoreNode(in);}
+        else if (type == CheckpointJournal.graphEdge) {stateGraph.restoreEdge(in);}
+        else if (type == CheckpointJournal.position) {stateGraph.restorePosition(in);}
+        else if (type == CheckpointJournal.linkFound) {driver.setLinkAsFound(in.readUTF());}
+        else if (type == CheckpointJournal.linkClicked) {driver.setPageAsVisited(in.readUTF());}
+        else if (type == CheckpointJournal.inputFound) {driver.getCoverageTracker().found(in.readLong(), CoverageTracker.Kind.INPUT);}
+        else if (type == CheckpointJournal.inputExercised) {driver.getCoverageTracker().exercised(in.readLong(), CoverageTracker.Kind.INPUT);}
+        else if (type == CheckpointJournal.inertInput) {inertInputs.restore(in.readLong(), in.readLong(), in.readInt(), in.readBoolean());}
+    }
+
+    /**
+     * Makes this tester carry on from where the given tester left off, sharing its
+     * state graph and everything else both testers keep, so that switching testers
+     * doesn't re-explore what was already explored.
+     * 
+     * @param previous - the tester that was in use until now
+     */
+    void adoptStateFrom(Tester previous) {
+        copyStateFrom(previous.getStateOwner());
+    }
+
+    /**
+     * Returns the tester whose state should be adopted in place of this one's.
+     * 
+     * @return the tester holding this tester's state
+     */
+    Tester getStateOwner() {
+        return this;
+    }
+
+    /**
+     * Shares the given tester's state with this one. Subclasses with more state
+     * extend this, sharing whatever the other tester also keeps.
+     * 
+     * @param other - the tester to share state with
+     */
+    void copyStateFrom(Tester other) {
+        stateGraph = other.stateGraph;
+        inertInputs = other.inertInputs;
+        inertInputsSinceCheckpoint = other.inertInputsSinceCheckpoint;
+        branchSnapshots = other.branchSnapshots;
+        observedPageFingerprint = other.observedPageFingerprint;
+        observedTargetSet = other.observedTargetSet;
+        inputAwaitingEffect = other.inputAwaitingEffect;
+        inputAwaitingEffectDecisive = other.inputAwaitingEffectDecisive;
+        historyRewritten = other.historyRewritten;
+        currentPageSource = null;
+        linksFoundCheckpointed = other.linksFoundCheckpointed;
+        linksClickedCheckpointed = other.linksClickedCheckpointed;
+        targetsFoundCheckpointed = other.targetsFoundCheckpointed;
+        targetsExercisedCheckpointed = other.targetsExercisedCheckpointed;
+    }
+
+    /**
+     * Called once all checkpoints have been restored, before testing continues.
+     */
+    void checkpointRestored() {
+        linksFoundCheckpointed = driver.getLinksFoundSince(0).size();
+        linksClickedCheckpointed = driver.getLinksClickedSince(0).size();
+        targetsFoundCheckpointed = driver.getCoverageTracker().getTargetsFound();
+        targetsExercisedCheckpointed = driver.getCoverageTracker().getTargetsExercised();
     }
 }
@@ -34,6 +34,7 @@ abstract class TreeInspiredTester extends HistoryAwareTester {
     public boolean test(ArrayList<WebElement> possibleTargets) {
     		logBracket(true);
         logPagesVisited();
+        logStatesDiscovered();
         logPossibleTargetsData(possibleTargets);
         this.possibleTargets = possibleTargets;
         if (possibleTargets.size()!=0) {planNextMoves(this.possibleTargets);}
@@ -62,6 +63,6 @@ abstract class TreeInspiredTester extends HistoryAwareTester {
      * @param targetIndex
      */
     void planActionForTarget(int targetIndex) {
-        super.planActionForTarget(possibleTargets.get(targetIndex), targetIndex);
+        super.planActionForTarget(possibleTargets, targetIndex);
     }
 }
@@ -0,0 +1,73 @@
+package testers;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks how BanditTester's per-page arms choose a target with UCB1, without a device.
+ */
+public class BanditTesterTest {
+	private double defaultExplorationWeight;
+
+	@Before
+	public void setup() {
+		defaultExplorationWeight = BanditTester.explorationWeight;
+	}
+
+	@After
+	public void teardown() {
+		BanditTester.explorationWeight = defaultExplorationWeight;
+	}
+
+	/**
+	 * Returns arms whose targets were pulled and rewarded the given totals.
+	 */
+	private static BanditTester.PageArms arms(int[] pulls, double[] rewards) {
+		BanditTester.PageArms arms = new BanditTester.PageArms(pulls.length);
+		for (int i=0; i<pulls.length; i++) {
+			for (int pull=0; pull<pulls[i]; pull++) {arms.pull(i);}
+			arms.rewards[i] = rewards[i];
+		}
+		return arms;
+	}
+
+	@Test
+	public void testTriesEveryTargetOnce() {
+		BanditTester.PageArms arms = new BanditTester.PageArms(5);
+		HashSet<Integer> tried = new HashSet<>();
+		for (int i=0; i<5; i++) {
+			int target = arms.chooseUntried();
+			assertTrue(tried.add(target));
+			arms.pull(target);
+		}
+		assertEquals(5, tried.size());
+		assertEquals(-1, arms.chooseUntried());
+		assertEquals(5, arms.totalPulls);
+	}
+
+	@Test
+	public void testPrefersHigherMeanReward() {
+		BanditTester.PageArms arms = arms(new int[] {10, 10, 10}, new double[] {1, 8, 3});
+		assertEquals(1, arms.chooseBest(i -> false));
+	}
+
+	@Test
+	public void testExploresRarelyTakenTargets() {
+		BanditTester.PageArms arms = arms(new int[] {100, 1}, new double[] {50, 0});
+		assertEquals(1, arms.chooseBest(i -> false));
+		BanditTester.explorationWeight = 0;
+		assertEquals(0, arms.chooseBest(i -> false));
+	}
+
+	@Test
+	public void testSkipsExcludedTargets() {
+		BanditTester.PageArms arms = arms(new int[] {10, 10, 10}, new double[] {1, 8, 3});
+		assertEquals(2, arms.chooseBest(i -> i == 1));
+		assertEquals(0, arms.chooseBest(i -> true));
+	}
+}
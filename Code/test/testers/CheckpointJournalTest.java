@@ -0,0 +1,124 @@
+package testers;
+
+import static org.junit.Assert.*;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Checks that CheckpointJournal only replays batches whose commit record is intact
+ * and cuts off a torn or corrupt tail, without a device.
+ */
+public class CheckpointJournalTest {
+
+	/**
+	 * A tester that journals the numbers it is given and remembers the ones replayed into it.
+	 */
+	private static final class NumberTester extends Tester {
+		private ArrayList<Integer> unsaved = new ArrayList<>();
+		private ArrayList<Integer> restored = new ArrayList<>();
+		private boolean wasRestored = false;
+
+		NumberTester() {super(null, new ArrayList<>());}
+
+		boolean test(ArrayList<WebElement> possibleTargets) {return false;}
+
+		void writeCheckpoint(CheckpointJournal journal) {
+			for (int number : unsaved) {journal.record(CheckpointJournal.position, out -> out.writeInt(number));}
+			unsaved.clear();
+		}
+
+		void restoreCheckpoint(int type, DataInputStream in) throws IOException {restored.add(in.readInt());}
+
+		void checkpointRestored() {wasRestored = true;}
+	}
+
+	private File file;
+
+	@Before
+	public void setup() throws IOException {
+		file = File.createTempFile("journal", CheckpointJournal.defaultExtension);
+		file.delete();
+	}
+
+	@After
+	public void teardown() {
+		file.delete();
+	}
+
+	/**
+	 * Writes one checkpoint per batch of numbers and returns the length of the file after each.
+	 */
+	private long[] writeBatches(int[]... batches) {
+		CheckpointJournal journal = new CheckpointJournal(file);
+		NumberTester tester = new NumberTester();
+		long[] lengths = new long[batches.length];
+		for (int i=0; i<batches.length; i++) {
+			for (int number : batches[i]) {tester.unsaved.add(number);}
+			journal.checkpoint(tester);
+			lengths[i] = file.length();
+		}
+		journal.close();
+		return lengths;
+	}
+
+	private NumberTester replay(int expectedCheckpoints) throws IOException {
+		NumberTester tester = new NumberTester();
+		assertEquals(expectedCheckpoints, new CheckpointJournal(file).replayInto(tester));
+		return tester;
+	}
+
+	@Test
+	public void testReplaysEveryCommittedBatch() throws IOException {
+		writeBatches(new int[] {1, 2}, new int[] {3});
+		NumberTester tester = replay(2);
+		assertEquals(Arrays.asList(1, 2, 3), tester.restored);
+		assertTrue(tester.wasRestored);
+	}
+
+	@Test
+	public void testTornTailIsCutOff() throws IOException {
+		long[] lengths = writeBatches(new int[] {1, 2}, new int[] {3});
+		try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {access.setLength(lengths[1] - 3);}
+		assertEquals(Arrays.asList(1, 2), replay(1).restored);
+		assertEquals(lengths[0], file.length());
+	}
+
+	@Test
+	public void testCorruptRecordEndsReplay() throws IOException {
+		long[] lengths = writeBatches(new int[] {1}, new int[] {2}, new int[] {3});
+		try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+			access.seek(lengths[1] - 1);
+			int last = access.read();
+			access.seek(lengths[1] - 1);
+			access.write(last ^ 0xff);
+		}
+		assertEquals(Arrays.asList(1), replay(1).restored);
+		assertEquals(lengths[0], file.length());
+	}
+
+	@Test
+	public void testAppendsAfterCutOff() throws IOException {
+		long[] lengths = writeBatches(new int[] {1}, new int[] {2});
+		try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {access.setLength(lengths[1] - 1);}
+		replay(1);
+		writeBatches(new int[] {4});
+		assertEquals(Arrays.asList(1, 4), replay(2).restored);
+	}
+
+	@Test
+	public void testNothingToReplay() throws IOException {
+		NumberTester tester = replay(0);
+		assertEquals(0, tester.restored.size());
+		assertFalse(tester.wasRestored);
+	}
+}
@@ -0,0 +1,106 @@
+package testers;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that EvolutionaryTester's crossover and mutation only produce sequences
+ * that can be carried out on the recorded state graph, without a device.
+ */
+public class EvolutionaryTesterTest {
+	private static int samples = 200;
+	private double defaultExploreRate;
+	private EvolutionaryTester tester;
+	private StateGraph graph;
+
+	/**
+	 * Records taking the given action on one page and observing another after it.
+	 */
+	private void step(long from, String action, long to) {
+		graph.observePage(from);
+		graph.recordAction(action, 1000);
+		graph.observePage(to);
+	}
+
+	private static ArrayList<String> sequence(String... actions) {return new ArrayList<>(Arrays.asList(actions));}
+
+	/**
+	 * Checks that every action of the sequence follows a recorded edge from the page before it.
+	 */
+	private void assertExecutable(ArrayList<String> actions) {
+		assertEquals(actions.toString(), actions.size(), GraphSequenceEvaluator.trace(graph.getNode(1), actions).size());
+	}
+
+	@Before
+	public void setup() {
+		defaultExploreRate = EvolutionaryTester.exploreRate;
+		EvolutionaryTester.exploreRate = 0;
+		tester = new EvolutionaryTester(null, new ArrayList<>(), null);
+		graph = tester.getStateGraph();
+		// 1 -a-> 2 -b-> 3 -c-> 4 -f-> 1, 1 -d-> 3 -e-> 5 -g-> 1, and 1 -loop-> 1
+		step(1, "a", 2);
+		step(2, "b", 3);
+		step(3, "c", 4);
+		step(4, "f", 1);
+		step(1, "d", 3);
+		step(3, "e", 5);
+		step(5, "g", 1);
+		step(1, "loop", 1);
+		// walks only follow recorded edges while the device is on some other page
+		graph.observePage(6);
+	}
+
+	@After
+	public void teardown() {
+		EvolutionaryTester.exploreRate = defaultExploreRate;
+	}
+
+	@Test
+	public void testCrossoverJoinsAtSharedPages() {
+		HashSet<ArrayList<String>> children = new HashSet<>();
+		for (int i=0; i<samples; i++) {
+			ArrayList<String> child = tester.crossover(graph.getNode(1), sequence("a", "b", "c"), sequence("d", "e"));
+			assertExecutable(child);
+			children.add(child);
+		}
+		assertEquals(new HashSet<>(Arrays.asList(sequence("d", "e"), sequence("a", "b", "e"))), children);
+	}
+
+	@Test
+	public void testCrossoverRespectsMaxLength() {
+		ArrayList<String> longSequence = new ArrayList<>();
+		for (int i=0; i<EvolutionaryTester.maxSequenceLength; i++) {longSequence.add("loop");}
+		longSequence.add("a");
+		for (int i=0; i<samples; i++) {
+			assertTrue(tester.crossover(graph.getNode(1), longSequence, longSequence).size() <= EvolutionaryTester.maxSequenceLength);
+		}
+	}
+
+	@Test
+	public void testMutationStaysExecutable() {
+		for (int i=0; i<samples; i++) {
+			ArrayList<String> mutated = tester.mutate(graph.getNode(1), new ArrayList<>(), sequence("a", "b", "e"));
+			assertFalse(mutated.isEmpty());
+			assertTrue(mutated.size() <= EvolutionaryTester.maxSequenceLength);
+			assertExecutable(mutated);
+		}
+	}
+
+	@Test
+	public void testMutationCanDropSelfLoops() {
+		boolean dropped = false;
+		for (int i=0; i<samples && !dropped; i++) {
+			ArrayList<String> mutated = tester.mutate(graph.getNode(1), new ArrayList<>(), sequence("loop", "a"));
+			assertExecutable(mutated);
+			dropped = mutated.equals(sequence("a"));
+		}
+		assertTrue(dropped);
+	}
+}
@@ -0,0 +1,104 @@
+package testers;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that InputSaturation groups the strings typed into a field by the page they
+ * led to and saturates the field once new strings stop finding new pages.
+ */
+public class InputSaturationTest {
+	private int defaultMaxFields;
+	private int defaultMaxInputsPerField;
+	private InputSaturation saturation;
+
+	@Before
+	public void setup() {
+		defaultMaxFields = InputSaturation.maxFields;
+		defaultMaxInputsPerField = InputSaturation.maxInputsPerField;
+		saturation = new InputSaturation();
+	}
+
+	@After
+	public void teardown() {
+		InputSaturation.maxFields = defaultMaxFields;
+		InputSaturation.maxInputsPerField = defaultMaxInputsPerField;
+	}
+
+	/**
+	 * Types saturationThreshold new strings into the field, each leading to the given page.
+	 */
+	private void typeRepeatingResult(long fieldId, String prefix, long resultFingerprint) {
+		for (int i=0; i<InputSaturation.saturationThreshold; i++) {saturation.recordResult(fieldId, prefix + i, resultFingerprint);}
+	}
+
+	@Test
+	public void testSaturatesAfterThresholdWithoutNewResult() {
+		assertFalse(saturation.recordResult(1, "first", 100));
+		for (int i=1; i<InputSaturation.saturationThreshold; i++) {
+			assertFalse(saturation.recordResult(1, "same" + i, 100));
+			assertFalse(saturation.isSaturated(1));
+		}
+		assertTrue(saturation.recordResult(1, "last", 100));
+		assertTrue(saturation.isSaturated(1));
+		assertEquals(1, saturation.getSaturatedFieldCount());
+		assertEquals(1, saturation.getClassCount(1));
+	}
+
+	@Test
+	public void testNewResultResetsTheCount() {
+		saturation.recordResult(1, "first", 100);
+		for (int i=1; i<InputSaturation.saturationThreshold; i++) {saturation.recordResult(1, "same" + i, 100);}
+		assertFalse(saturation.recordResult(1, "other", 200));
+		assertFalse(saturation.isSaturated(1));
+		assertEquals(2, saturation.getClassCount(1));
+		typeRepeatingResult(1, "again", 200);
+		assertTrue(saturation.isSaturated(1));
+	}
+
+	@Test
+	public void testRepeatedInputIsNotCounted() {
+		saturation.recordResult(1, "first", 100);
+		for (int i=0; i<InputSaturation.saturationThreshold * 2; i++) {assertFalse(saturation.recordResult(1, "first", 100));}
+		assertFalse(saturation.isSaturated(1));
+		assertTrue(saturation.isKnownInput(1, "first"));
+		assertFalse(saturation.isKnownInput(1, "second"));
+		assertFalse(saturation.isKnownInput(2, "first"));
+	}
+
+	@Test
+	public void testFieldsAreIndependent() {
+		saturation.recordResult(1, "first", 100);
+		typeRepeatingResult(1, "same", 100);
+		assertTrue(saturation.isSaturated(1));
+		assertFalse(saturation.isSaturated(2));
+		assertEquals(0, saturation.getClassCount(2));
+	}
+
+	@Test
+	public void testEvictedFieldsLeaveTheSaturatedCount() {
+		InputSaturation.maxFields = 2;
+		saturation = new InputSaturation();
+		typeRepeatingResult(1, "same", 100);
+		typeRepeatingResult(1, "more", 100);
+		assertEquals(1, saturation.getSaturatedFieldCount());
+		saturation.recordResult(2, "first", 100);
+		saturation.recordResult(3, "first", 100);
+		assertFalse(saturation.isSaturated(1));
+		assertEquals(0, saturation.getSaturatedFieldCount());
+	}
+
+	@Test
+	public void testForgottenInputCountsAsNew() {
+		InputSaturation.maxInputsPerField = 2;
+		saturation = new InputSaturation();
+		saturation.recordResult(1, "a", 100);
+		saturation.recordResult(1, "b", 100);
+		saturation.recordResult(1, "c", 100);
+		assertFalse(saturation.isKnownInput(1, "a"));
+		assertTrue(saturation.isKnownInput(1, "c"));
+	}
+}
@@ -0,0 +1,75 @@
+package testers;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Checks the values InputValueGenerator builds from a field's attributes, and the
+ * strings RegexSampler builds from a pattern attribute, without a device.
+ */
+public class InputValueGeneratorTest {
+	private static int samples = 200;
+
+	private static HashMap<String, String> attributes(String... namesAndValues) {
+		HashMap<String, String> attributes = new HashMap<>();
+		for (int i=0; i<namesAndValues.length; i+=2) {attributes.put(namesAndValues[i], namesAndValues[i + 1]);}
+		return attributes;
+	}
+
+	@Test
+	public void testSamplesMatchSupportedPatterns() {
+		Random random = new Random(7);
+		for (String regex : Arrays.asList("\\d{3}-\\d{4}", "[A-Z][a-z]+", "(cat|dog)s?", "[^0-9]{2,4}", "a.c", "^(?:ab)*$", "[\\w.]+@[a-z]+\\.com")) {
+			for (int i=0; i<samples; i++) {
+				String value = InputValueGenerator.RegexSampler.sample(regex, random);
+				assertNotNull(regex, value);
+				assertTrue(regex + " gave " + value, Pattern.matches(regex, value));
+			}
+		}
+	}
+
+	@Test
+	public void testUnsupportedPatternsGiveNull() {
+		Random random = new Random(7);
+		for (String regex : Arrays.asList("(?=a)a", "(a)\\1", "*a", "[a-z", "(ab")) {
+			assertNull(regex, InputValueGenerator.RegexSampler.sample(regex, random));
+		}
+	}
+
+	@Test
+	public void testBoundaryValuesOfANumberField() {
+		InputValueGenerator generator = new InputValueGenerator(new ArrayList<>(Arrays.asList("word")), new Random(7));
+		InputValueGenerator.Constraints constraints = new InputValueGenerator.Constraints(
+				attributes("type", "number", "min", "0", "max", "10", "step", "3", "required", ""));
+		assertEquals("[0, 9, 3, 6]", generator.boundaryValues(constraints).toString());
+	}
+
+	@Test
+	public void testValuesRespectThePattern() {
+		InputValueGenerator generator = new InputValueGenerator(new ArrayList<>(Arrays.asList("word")), new Random(7));
+		HashMap<String, String> zipCode = attributes("pattern", "[0-9]{5}", "required", "");
+		for (int i=0; i<samples; i++) {
+			assertTrue(Pattern.matches("[0-9]{5}", generator.nextValue(1, () -> zipCode)));
+		}
+	}
+
+	@Test
+	public void testOptionalFieldsAreLeftEmptyOnce() {
+		InputValueGenerator generator = new InputValueGenerator(new ArrayList<>(Arrays.asList("word")), new Random(7));
+		HashMap<String, String> optional = attributes("type", "text", "maxlength", "4");
+		int empty = 0;
+		for (int i=0; i<samples; i++) {
+			String value = generator.nextValue(1, () -> optional);
+			assertTrue(value.length() <= 4);
+			if (value.isEmpty()) {empty++;}
+		}
+		assertEquals(1, empty);
+	}
+}
@@ -0,0 +1,68 @@
+package testers;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that PageRecordStore finds every record again after records were spilled
+ * to disk, which empties hot slots by shifting back the rest of their probe sequence.
+ * Enough pages are spilled for the on-disk index to grow as well.
+ */
+public class PageRecordStoreTest {
+	private static int pages = 3000;
+	private int defaultMaxHotRecords;
+	private PageRecordStore store;
+
+	@Before
+	public void setup() {
+		defaultMaxHotRecords = PageRecordStore.maxHotRecords;
+		PageRecordStore.maxHotRecords = 16;
+		store = new PageRecordStore();
+	}
+
+	@After
+	public void teardown() {
+		PageRecordStore.maxHotRecords = defaultMaxHotRecords;
+	}
+
+	private static long fingerprint(int page) {return Tester.fingerprint("page" + page);}
+
+	@Test
+	public void testRecordsSurviveSpilling() {
+		for (int page=0; page<pages; page++) {store.put(fingerprint(page), new PageRecord(new int[] {-1, page, page + 1}));}
+		assertEquals(pages, store.size());
+		for (int page=0; page<pages; page++) {
+			assertTrue(store.contains(fingerprint(page)));
+			PageRecord record = store.get(fingerprint(page));
+			assertNotNull(record);
+			assertEquals("[-1, " + page + ", " + (page + 1) + "]", Arrays.toString(record.hrefIds));
+		}
+		assertFalse(store.contains(fingerprint(pages)));
+		assertNull(store.get(fingerprint(pages)));
+	}
+
+	@Test
+	public void testSpilledRecordKeepsItsProgress() {
+		PageRecord record = new PageRecord(new int[] {-1, 1, 2, 3});
+		record.takeNextTarget();
+		store.put(fingerprint(0), record);
+		for (int page=1; page<pages; page++) {store.put(fingerprint(page), new PageRecord(new int[] {-1, page}));}
+		PageRecord restored = store.get(fingerprint(0));
+		assertTrue(restored.wasTargetVisited(1));
+		assertFalse(restored.wasTargetVisited(2));
+		assertEquals(2, restored.takeNextTarget());
+	}
+
+	@Test
+	public void testReplaceCountsNewPagesOnly() {
+		store.replace(fingerprint(0), new PageRecord(new int[] {-1}));
+		store.replace(fingerprint(0), new PageRecord(new int[] {-1, 7}));
+		assertEquals(1, store.size());
+		assertEquals(2, store.get(fingerprint(0)).getTargetCount());
+	}
+}
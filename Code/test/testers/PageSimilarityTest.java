@@ -0,0 +1,54 @@
+package testers;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Checks that PageSimilarity groups pages by their markup rather than their text.
+ */
+public class PageSimilarityTest {
+	private static String detailPage(String name, String id) {
+		return String.format("<html><body><div class=\"header\"><a href=\"#back\">Back</a></div>"
+				+ "<h1>%s</h1><ul class=\"details\"><li><a href=\"tel:%s\">Call</a></li>"
+				+ "<li><a href=\"mailto:%s@example.com\">Email</a></li></ul></body></html>", name, id, name);
+	}
+
+	private static String formPage() {
+		return "<html><body><form id=\"search\"><input type=\"text\" name=\"q\"><select name=\"kind\"><option>a</option>"
+				+ "</select><button type=\"submit\">Go</button></form><table><tr><td>1</td></tr></table></body></html>";
+	}
+
+	@Test
+	public void testTextDoesNotChangeTheHash() {
+		assertEquals(PageSimilarity.structureHash(detailPage("Ada", "1")), PageSimilarity.structureHash(detailPage("Grace", "2")));
+	}
+
+	@Test
+	public void testStructureChangesTheHash() {
+		long detail = PageSimilarity.structureHash(detailPage("Ada", "1"));
+		long form = PageSimilarity.structureHash(formPage());
+		assertTrue(Long.bitCount(detail ^ form) > PageSimilarity.maxDistance);
+	}
+
+	@Test
+	public void testNearDuplicatesShareAGroup() {
+		PageSimilarity similarity = new PageSimilarity();
+		long hash = PageSimilarity.structureHash(detailPage("Ada", "1"));
+		assertEquals(0, similarity.addPage(hash));
+		assertEquals(1, similarity.addPage(hash ^ 0b101));
+		assertEquals(0, similarity.addPage(PageSimilarity.structureHash(formPage())));
+		assertEquals(2, similarity.getGroupCount());
+	}
+
+	@Test
+	public void testCollapsesBeyondTheLimit() {
+		PageSimilarity similarity = new PageSimilarity();
+		long hash = PageSimilarity.structureHash(detailPage("Ada", "1"));
+		for (int page=0; page<PageSimilarity.nearDuplicateLimit; page++) {
+			assertFalse(similarity.shouldCollapse(similarity.addPage(hash)));
+		}
+		assertTrue(similarity.shouldCollapse(similarity.addPage(hash)));
+		assertEquals(1, similarity.getPagesCollapsed());
+	}
+}
@@ -0,0 +1,43 @@
+package testers;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Checks that PathTree gives back the paths interned into it and shares their prefixes.
+ */
+public class PathTreeTest {
+
+	@Test
+	public void testPathsComeBackInOrder() {
+		PathTree tree = new PathTree();
+		int first = tree.intern(Arrays.asList("a", "b", "c"));
+		int second = tree.intern(Arrays.asList("a", "b", "d"));
+		assertEquals("[a, b, c]", tree.path(first).toString());
+		assertEquals("[a, b, d]", tree.path(second).toString());
+		assertEquals(3, tree.depth(second));
+	}
+
+	@Test
+	public void testEqualPathsShareAnId() {
+		PathTree tree = new PathTree();
+		int path = tree.intern(Arrays.asList("a", "b"));
+		tree.intern(Arrays.asList("a", "b", "c"));
+		assertEquals(path, tree.intern(Arrays.asList("a", "b")));
+		assertEquals(PathTree.root, tree.intern(Arrays.asList()));
+		assertEquals(0, tree.path(PathTree.root).size());
+	}
+
+	@Test
+	public void testDeepPaths() {
+		PathTree tree = new PathTree();
+		String[] actions = new String[500];
+		Arrays.fill(actions, "next");
+		int path = tree.intern(Arrays.asList(actions));
+		assertEquals(500, tree.depth(path));
+		assertEquals(500, tree.path(path).size());
+	}
+}
@@ -0,0 +1,104 @@
+package testers;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the routing of StateGraph on a small hand-built graph, without a device.
+ */
+public class StateGraphTest {
+	private StateGraph graph;
+
+	/**
+	 * Records taking the given action on one page and observing another after it.
+	 */
+	private void step(long from, String action, long to) {
+		graph.observePage(from);
+		graph.recordAction(action, 1000);
+		graph.observePage(to);
+	}
+
+	private static ArrayList<String> actions(ArrayList<StateGraph.Edge> path) {
+		ArrayList<String> actions = new ArrayList<>();
+		for (StateGraph.Edge edge : path) {actions.add(edge.getAction());}
+		return actions;
+	}
+
+	@Before
+	public void setup() {
+		graph = new StateGraph();
+		// 1 -a-> 2 -b-> 3 -c-> 4, with a shortcut 1 -d-> 3
+		step(1, "a", 2);
+		step(2, "b", 3);
+		step(3, "c", 4);
+		step(1, "d", 3);
+	}
+
+	@Test
+	public void testShortestPathTakesFewestActions() {
+		ArrayList<StateGraph.Edge> path = graph.shortestPath(1, 4);
+		assertNotNull(path);
+		assertEquals("[d, c]", actions(path).toString());
+	}
+
+	@Test
+	public void testShortestPathToSamePageIsEmpty() {
+		assertEquals(0, graph.shortestPath(2, 2).size());
+	}
+
+	@Test
+	public void testShortestPathIsNullWithoutRoute() {
+		assertNull(graph.shortestPath(4, 1));
+		assertNull(graph.shortestPath(1, 99));
+	}
+
+	@Test
+	public void testShortestPathAvoidsFailedEdges() {
+		graph.observePage(1);
+		graph.recordAction("d", 1000);
+		graph.recordFailure();
+		graph.observePage(3);
+		assertEquals("[a, b, c]", actions(graph.shortestPath(1, 4)).toString());
+	}
+
+	@Test
+	public void testBackActionsAreNotRouted() {
+		// 4 was last reached from 3, but going back from it depends on the history
+		step(4, LoggingAwareTester.composeWebviewBackMessage(), 3);
+		step(4, LoggingAwareTester.composeHardwareBackMessage(), 2);
+		assertNull(graph.shortestPath(4, 3));
+		assertNull(graph.shortestPath(4, 2));
+		assertEquals(1, graph.distancesFrom(4).size());
+		assertEquals("[d, c]", actions(graph.shortestPath(1, 4)).toString());
+	}
+
+	@Test
+	public void testEvictionKeepsDiscoveredPagesKnown() {
+		int defaultMaxNodes = StateGraph.maxNodes;
+		StateGraph.maxNodes = 8;
+		try {
+			for (long page=10; page<30; page++) {step(page, "next", page + 1);}
+			assertTrue(graph.getNodes().size() <= 8);
+			assertEquals(25, graph.getNodeCount());
+			assertNotNull(graph.getNode(1));
+			assertNull(graph.getNode(2));
+			assertFalse(graph.observePage(2));
+			assertNull(graph.shortestPath(1, 4));
+		} finally {StateGraph.maxNodes = defaultMaxNodes;}
+	}
+
+	@Test
+	public void testDistancesFrom() {
+		HashMap<Long, Integer> distances = graph.distancesFrom(1);
+		assertEquals(Integer.valueOf(0), distances.get(1L));
+		assertEquals(Integer.valueOf(1), distances.get(2L));
+		assertEquals(Integer.valueOf(1), distances.get(3L));
+		assertEquals(Integer.valueOf(2), distances.get(4L));
+		assertEquals(1, graph.distancesFrom(4).size());
+	}
+}